@@ -0,0 +1,121 @@
+package com.github.lexakimov.collections;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * Data sets of benchmarks.
+ * <p>
+ * Names are taken from {@code 500_000_random_names.csv} on classpath, the data set of
+ * {@link MultiIndexIndexedCollectionLoadTest}, and repeated up to requested size. If data set is absent, names are
+ * generated with frequencies close to real ones: name number k occurs with probability proportional to 1 / k.
+ */
+final class BenchmarkData {
+
+    private static final String DATA_SET = "500_000_random_names.csv";
+
+    private static final int DATA_SET_SIZE = 500_000;
+
+    private static final long SEED = 42;
+
+    /**
+     * How many elements match searched key.
+     */
+    enum Selectivity {
+        /**
+         * The most frequent key.
+         */
+        COMMON,
+        /**
+         * Key of median frequency.
+         */
+        MEDIAN,
+        /**
+         * The least frequent key.
+         */
+        RARE
+    }
+
+    private BenchmarkData() {
+    }
+
+    static List<Person> persons(int size) {
+        var names = names();
+        var random = new Random(SEED);
+        var persons = new ArrayList<Person>(size);
+        for (int i = 0; i < size; i++) {
+            var name = names.get(i % names.size());
+            persons.add(new Person(name[0], name[1], random.nextInt(100)));
+        }
+        return persons;
+    }
+
+    static String lastName(List<Person> persons, Selectivity selectivity) {
+        var counts = new HashMap<String, Integer>();
+        for (Person person : persons) {
+            counts.merge(person.lastName(), 1, Integer::sum);
+        }
+        var byFrequency = counts.entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                .map(Map.Entry::getKey)
+                .toList();
+        return switch (selectivity) {
+            case COMMON -> byFrequency.get(0);
+            case MEDIAN -> byFrequency.get(byFrequency.size() / 2);
+            case RARE -> byFrequency.get(byFrequency.size() - 1);
+        };
+    }
+
+    /**
+     * Hand-rolled index that benchmarks compare collection with.
+     */
+    static <K> Map<K, List<Person>> hashMapIndex(List<Person> persons, Function<Person, K> func) {
+        var index = new HashMap<K, List<Person>>();
+        for (Person person : persons) {
+            index.computeIfAbsent(func.apply(person), k -> new ArrayList<>()).add(person);
+        }
+        return index;
+    }
+
+    private static List<String[]> names() {
+        var resource = BenchmarkData.class.getClassLoader().getResourceAsStream(DATA_SET);
+        if (resource == null) {
+            return syntheticNames();
+        }
+        try (var reader = new BufferedReader(new InputStreamReader(resource, StandardCharsets.UTF_8))) {
+            return reader.lines()
+                    .map(name -> {
+                        var spaceIndex = name.indexOf(' ');
+                        return new String[]{name.substring(0, spaceIndex), name.substring(spaceIndex + 1)};
+                    })
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<String[]> syntheticNames() {
+        var random = new Random(SEED);
+        var names = new ArrayList<String[]>(DATA_SET_SIZE);
+        for (int i = 0; i < DATA_SET_SIZE; i++) {
+            names.add(new String[]{"First" + zipf(random, 1_000), "Last" + zipf(random, 5_000)});
+        }
+        return names;
+    }
+
+    /**
+     * @return number from 1 to n, distributed with density proportional to 1 / k
+     */
+    private static int zipf(Random random, int n) {
+        return (int) Math.pow(n, random.nextDouble());
+    }
+}
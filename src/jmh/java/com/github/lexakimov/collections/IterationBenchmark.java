@@ -0,0 +1,75 @@
+package com.github.lexakimov.collections;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import static com.github.lexakimov.collections.PersonIndex.AGE;
+
+/**
+ * Iteration over all elements in insertion order and in order of ordered index.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@State(Scope.Benchmark)
+public class IterationBenchmark {
+
+    @Param({"500000", "5000000"})
+    private int size;
+
+    private List<Person> persons;
+
+    private MultiIndexIndexedCollection<Person> collection;
+
+    @Setup
+    public void setUp() {
+        persons = BenchmarkData.persons(size);
+        collection = new MultiIndexIndexedCollection<>(PersonIndex.class);
+        collection.addAll(persons);
+    }
+
+    @Benchmark
+    public long iterator() {
+        long sum = 0;
+        for (var iterator = collection.iterator(); iterator.hasNext(); ) {
+            sum += iterator.next().age();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long stream() {
+        return collection.stream().mapToLong(Person::age).sum();
+    }
+
+    @Benchmark
+    public long parallelStream() {
+        return collection.stream().parallel().mapToLong(Person::age).sum();
+    }
+
+    @Benchmark
+    public long streamInIndexOrder() {
+        return collection.stream(AGE).mapToLong(Person::age).sum();
+    }
+
+    @Benchmark
+    public long arrayListBaseline() {
+        long sum = 0;
+        for (Person person : persons) {
+            sum += person.age();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,72 @@
+package com.github.lexakimov.collections;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building of collection from scratch. With {@code -prof gc} the {@code gc.alloc.rate.norm} metric divided by size
+ * estimates memory allocated per element.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@State(Scope.Benchmark)
+public class LoadBenchmark {
+
+    @Param({"500000", "2000000"})
+    private int size;
+
+    private List<Person> persons;
+
+    @Setup
+    public void setUp() {
+        persons = BenchmarkData.persons(size);
+    }
+
+    @Benchmark
+    public MultiIndexIndexedCollection<Person> add() {
+        var collection = new MultiIndexIndexedCollection<>(PersonIndex.class);
+        for (Person person : persons) {
+            collection.add(person);
+        }
+        return collection;
+    }
+
+    @Benchmark
+    public MultiIndexIndexedCollection<Person> addAll() {
+        var collection = new MultiIndexIndexedCollection<>(PersonIndex.class);
+        collection.addAll(persons);
+        return collection;
+    }
+
+    @Benchmark
+    public FrozenMultiIndexIndexedCollection<Person> addAllAndFreeze() {
+        var collection = new MultiIndexIndexedCollection<>(PersonIndex.class);
+        collection.addAll(persons);
+        return collection.freeze();
+    }
+
+    /**
+     * Baseline: one {@code HashMap<K, List<E>>} per property of {@link PersonIndex}.
+     */
+    @Benchmark
+    public void hashMapBaseline(Blackhole blackhole) {
+        blackhole.consume(BenchmarkData.hashMapIndex(persons, Person::firstName));
+        blackhole.consume(BenchmarkData.hashMapIndex(persons, Person::lastName));
+        blackhole.consume(BenchmarkData.hashMapIndex(persons, Person::age));
+    }
+}
@@ -0,0 +1,68 @@
+package com.github.lexakimov.collections;
+
+import com.github.lexakimov.collections.BenchmarkData.Selectivity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import static com.github.lexakimov.collections.PersonIndex.LAST_NAME;
+
+/**
+ * Removal by key of different selectivity. Every measurement needs fresh collection, so each one is a single shot.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@State(Scope.Benchmark)
+public class RemoveBenchmark {
+
+    @Param({"500000", "2000000"})
+    private int size;
+
+    @Param({"COMMON", "MEDIAN", "RARE"})
+    private Selectivity selectivity;
+
+    private List<Person> persons;
+
+    private String lastName;
+
+    private MultiIndexIndexedCollection<Person> collection;
+
+    private List<Person> list;
+
+    @Setup
+    public void setUp() {
+        persons = BenchmarkData.persons(size);
+        lastName = BenchmarkData.lastName(persons, selectivity);
+    }
+
+    @Setup(Level.Iteration)
+    public void fill() {
+        collection = new MultiIndexIndexedCollection<>(PersonIndex.class);
+        collection.addAll(persons);
+        list = new ArrayList<>(persons);
+    }
+
+    @Benchmark
+    public boolean remove() {
+        return collection.remove(LAST_NAME, lastName);
+    }
+
+    @Benchmark
+    public boolean linearRemoveBaseline() {
+        return list.removeIf(person -> lastName.equals(person.lastName()));
+    }
+}
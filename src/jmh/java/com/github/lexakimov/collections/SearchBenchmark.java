@@ -0,0 +1,104 @@
+package com.github.lexakimov.collections;
+
+import com.github.lexakimov.collections.BenchmarkData.Selectivity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import static com.github.lexakimov.collections.PersonIndex.AGE;
+import static com.github.lexakimov.collections.PersonIndex.LAST_NAME;
+
+/**
+ * Searches by keys of different selectivity compared with linear filter and hand-rolled hash map index.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"500000", "5000000"})
+    private int size;
+
+    @Param({"COMMON", "MEDIAN", "RARE"})
+    private Selectivity selectivity;
+
+    private List<Person> persons;
+
+    private MultiIndexIndexedCollection<Person> collection;
+
+    private FrozenMultiIndexIndexedCollection<Person> frozen;
+
+    private Map<String, List<Person>> hashMap;
+
+    private String lastName;
+
+    private Query<Person> query;
+
+    @Setup
+    public void setUp() {
+        persons = BenchmarkData.persons(size);
+        collection = new MultiIndexIndexedCollection<>(PersonIndex.class);
+        collection.addAll(persons);
+        frozen = collection.freeze();
+        hashMap = BenchmarkData.hashMapIndex(persons, Person::lastName);
+        lastName = BenchmarkData.lastName(persons, selectivity);
+        query = Query.and(Query.eq(LAST_NAME, lastName), Query.eq(AGE, 30));
+    }
+
+    @Benchmark
+    public List<Person> searchByProperty() {
+        return collection.searchByProperty(LAST_NAME, lastName);
+    }
+
+    @Benchmark
+    public List<Person> searchByPropertyFrozen() {
+        return frozen.searchByProperty(LAST_NAME, lastName);
+    }
+
+    @Benchmark
+    public List<Person> searchFirstPage() {
+        var result = collection.search(LAST_NAME, lastName);
+        return new ArrayList<>(result.subList(0, Math.min(PAGE_SIZE, result.size())));
+    }
+
+    @Benchmark
+    public boolean contains() {
+        return collection.contains(LAST_NAME, lastName);
+    }
+
+    @Benchmark
+    public int countQuery() {
+        return collection.count(query);
+    }
+
+    @Benchmark
+    public List<Person> linearFilterBaseline() {
+        return persons.stream().filter(person -> lastName.equals(person.lastName())).toList();
+    }
+
+    @Benchmark
+    public List<Person> hashMapBaseline() {
+        return new ArrayList<>(hashMap.getOrDefault(lastName, List.of()));
+    }
+
+    @Benchmark
+    public boolean containsHashMapBaseline() {
+        return hashMap.containsKey(lastName);
+    }
+}
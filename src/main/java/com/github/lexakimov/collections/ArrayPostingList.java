@@ -0,0 +1,322 @@
+package com.github.lexakimov.collections;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.IntConsumer;
+
+/**
+ * Posting list stored as sorted array of positions.
+ * <p>
+ * Removed positions are not shifted out immediately: they are marked in place as {@code ~position} (always negative),
+ * so the list stays sorted by absolute value and removal is a binary search. Marked entries are skipped by every
+ * read and purged on removal once they take more than 1/{@value #PURGE_DIVISOR} of entries, which keeps them rare
+ * for reads by index and costs O(1) amortized per removal.
+ */
+final class ArrayPostingList extends PostingList {
+
+    /**
+     * Minimal size of list that may be converted to bitmap.
+     */
+    private static final int CONVERSION_MIN_SIZE = 1024;
+
+    /**
+     * Minimal average number of positions per chunk of 65536 positions, above which bitmap takes less memory than
+     * array.
+     */
+    private static final int CONVERSION_MIN_DENSITY = 16;
+
+    /**
+     * Removed entries are purged once their number multiplied by this value exceeds the number of all entries.
+     */
+    private static final int PURGE_DIVISOR = 8;
+
+    private final IntArrayList positions;
+
+    private final boolean convertible;
+
+    private int removed;
+
+    /**
+     * @param convertible whether list is converted to {@link BitmapPostingList} once it becomes large and dense
+     */
+    ArrayPostingList(boolean convertible) {
+        this.positions = new IntArrayList();
+        this.convertible = convertible;
+    }
+
+    @Override
+    PostingList add(int position) {
+        var last = positions.size() - 1;
+        if (last >= 0 && absolute(positions.getInt(last)) >= position) {
+            insert(position);
+            return this;
+        }
+        positions.add(position);
+        var total = positions.size();
+        // density is checked only when size reaches power of two, so check costs O(1) amortized
+        if (convertible && total >= CONVERSION_MIN_SIZE && (total & (total - 1)) == 0 && isDense()) {
+            var bitmap = new BitmapPostingList();
+            forEach(bitmap::add);
+            return bitmap;
+        }
+        return this;
+    }
+
+    private boolean isDense() {
+        var firstChunk = absolute(positions.getInt(0)) >>> 16;
+        var lastChunk = absolute(positions.getInt(positions.size() - 1)) >>> 16;
+        return size() >= (lastChunk - firstChunk + 1) * CONVERSION_MIN_DENSITY;
+    }
+
+    /**
+     * Inserts position that is not greater than the last one: revives removed entry of position or shifts greater
+     * entries, so costs O(n).
+     */
+    private void insert(int position) {
+        var array = positions.elements();
+        var index = advance(array, positions.size(), 0, position);
+        if (absolute(array[index]) != position) {
+            positions.add(index, position);
+        } else if (array[index] < 0) {
+            array[index] = position;
+            removed--;
+        }
+    }
+
+    @Override
+    boolean remove(int position) {
+        var index = indexOf(position);
+        if (index < 0) {
+            return false;
+        }
+        var array = positions.elements();
+        array[index] = ~position;
+        removed++;
+        if ((long) removed * PURGE_DIVISOR > positions.size()) {
+            purge();
+        }
+        return true;
+    }
+
+    @Override
+    int size() {
+        return positions.size() - removed;
+    }
+
+    @Override
+    void forEach(IntConsumer action) {
+        var array = positions.elements();
+        var total = positions.size();
+        for (int i = 0; i < total; i++) {
+            var position = array[i];
+            if (position >= 0) {
+                action.accept(position);
+            }
+        }
+    }
+
+    @Override
+    int first() {
+        var array = positions.elements();
+        for (int i = 0, total = positions.size(); i < total; i++) {
+            if (array[i] >= 0) {
+                return array[i];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Costs O(1) unless list has removed entries, which are not purged yet: they are skipped by linear scan from the
+     * nearer end of list.
+     */
+    @Override
+    int get(int index) {
+        var size = size();
+        Objects.checkIndex(index, size);
+        if (removed == 0) {
+            return positions.getInt(index);
+        }
+        var array = positions.elements();
+        if (index < size / 2) {
+            var live = -1;
+            for (int i = 0; ; i++) {
+                if (array[i] >= 0 && ++live == index) {
+                    return array[i];
+                }
+            }
+        }
+        var live = size;
+        for (int i = positions.size() - 1; ; i--) {
+            if (array[i] >= 0 && --live == index) {
+                return array[i];
+            }
+        }
+    }
+
+    @Override
+    IntIterator iterator() {
+        return new IntIterator() {
+            private int cursor = nextLive(0);
+
+            @Override
+            public boolean hasNext() {
+                return cursor < positions.size();
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                var position = positions.getInt(cursor);
+                cursor = nextLive(cursor + 1);
+                return position;
+            }
+
+            private int nextLive(int from) {
+                var index = from;
+                while (index < positions.size() && positions.getInt(index) < 0) {
+                    index++;
+                }
+                return index;
+            }
+        };
+    }
+
+    /**
+     * Uses galloping search, so costs O(c * log(n / c)) for c candidates.
+     */
+    @Override
+    void retainIn(IntArrayList candidates) {
+        candidates.size(filter(candidates, true, false));
+    }
+
+    @Override
+    int countContained(IntArrayList candidates) {
+        return filter(candidates, true, true);
+    }
+
+    @Override
+    void removeFrom(IntArrayList candidates) {
+        candidates.size(filter(candidates, false, false));
+    }
+
+    /**
+     * @param countOnly whether to leave candidates as they are and only count those that pass
+     * @return number of candidates that pass, they are moved to the beginning of candidates unless only counted
+     */
+    private int filter(IntArrayList candidates, boolean retainContained, boolean countOnly) {
+        var array = positions.elements();
+        var total = positions.size();
+        var candidatesArray = candidates.elements();
+        var candidatesSize = candidates.size();
+        var cursor = 0;
+        var j = 0;
+        for (int i = 0; i < candidatesSize; i++) {
+            var candidate = candidatesArray[i];
+            cursor = advance(array, total, cursor, candidate);
+            var contained = cursor < total && array[cursor] == candidate;
+            if (contained == retainContained) {
+                if (!countOnly) {
+                    candidatesArray[j] = candidate;
+                }
+                j++;
+            }
+        }
+        return j;
+    }
+
+    /**
+     * Galloping search: probes entries from, from + 1, from + 3, from + 7... and then binary searches the last
+     * interval.
+     *
+     * @return index of first entry (live or removed) whose absolute position is not less than target
+     */
+    static int advance(int[] array, int total, int from, int target) {
+        var step = 1;
+        var low = from;
+        var high = from;
+        while (high < total && absolute(array[high]) < target) {
+            low = high + 1;
+            high += step;
+            step <<= 1;
+        }
+        high = Math.min(high, total);
+        while (low < high) {
+            var mid = (low + high) >>> 1;
+            if (absolute(array[mid]) < target) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int absolute(int value) {
+        return value < 0 ? ~value : value;
+    }
+
+    @Override
+    long estimatedBytes() {
+        // this list, IntArrayList and its array
+        return MemoryLayout.object(MemoryLayout.REFERENCE + 1 + Integer.BYTES)
+                + MemoryLayout.object(MemoryLayout.REFERENCE + Integer.BYTES)
+                + MemoryLayout.array(positions.elements().length, Integer.BYTES);
+    }
+
+    @Override
+    void remap(int[] newPositions) {
+        var array = positions.elements();
+        var total = positions.size();
+        var j = 0;
+        for (int i = 0; i < total; i++) {
+            var position = array[i];
+            if (position >= 0) {
+                array[j++] = newPositions[position];
+            }
+        }
+        positions.size(j);
+        removed = 0;
+    }
+
+    private void purge() {
+        var array = positions.elements();
+        var total = positions.size();
+        var j = 0;
+        for (int i = 0; i < total; i++) {
+            if (array[i] >= 0) {
+                array[j++] = array[i];
+            }
+        }
+        positions.size(j);
+        positions.trim();
+        removed = 0;
+    }
+
+    /**
+     * Binary search over live and removed entries.
+     *
+     * @return index of live entry with given position or -1
+     */
+    private int indexOf(int position) {
+        var array = positions.elements();
+        int low = 0;
+        int high = positions.size() - 1;
+        while (low <= high) {
+            var mid = (low + high) >>> 1;
+            var value = array[mid];
+            if (absolute(value) < position) {
+                low = mid + 1;
+            } else if (absolute(value) > position) {
+                high = mid - 1;
+            } else {
+                return value < 0 ? -1 : mid;
+            }
+        }
+        return -1;
+    }
+}
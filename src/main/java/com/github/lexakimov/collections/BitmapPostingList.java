@@ -0,0 +1,561 @@
+package com.github.lexakimov.collections;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.IntConsumer;
+
+/**
+ * Posting list stored as compressed bitmap in the style of Roaring: positions are split into chunks by their high
+ * 16 bits, and each chunk keeps its low 16 bits either in sorted char array (up to {@value #ARRAY_CONTAINER_MAX_SIZE}
+ * values, 2 bytes per value) or in bitmap of 1024 words (8 KB, when chunk is dense).
+ */
+final class BitmapPostingList extends PostingList {
+
+    private static final int ARRAY_CONTAINER_MAX_SIZE = 4096;
+
+    private static final int BITMAP_WORDS = 1024;
+
+    /**
+     * High 16 bits of positions stored in corresponding containers, ascending.
+     */
+    private char[] keys = new char[1];
+
+    private Container[] containers = new Container[1];
+
+    private int containerCount;
+
+    private int cardinality;
+
+    @Override
+    PostingList add(int position) {
+        var key = (char) (position >>> 16);
+        int index;
+        if (containerCount > 0 && keys[containerCount - 1] == key) {
+            index = containerCount - 1;
+        } else {
+            index = indexOfKey(key);
+            if (index < 0) {
+                index = ~index;
+                insertContainer(index, key, new ArrayContainer());
+            }
+        }
+        var container = containers[index];
+        if (container.add((char) position)) {
+            cardinality++;
+            if (container instanceof ArrayContainer array && array.size > ARRAY_CONTAINER_MAX_SIZE) {
+                containers[index] = array.toBitmap();
+            }
+        }
+        return this;
+    }
+
+    @Override
+    boolean remove(int position) {
+        var index = indexOfKey((char) (position >>> 16));
+        if (index < 0) {
+            return false;
+        }
+        var container = containers[index];
+        if (!container.remove((char) position)) {
+            return false;
+        }
+        cardinality--;
+        if (container.cardinality() == 0) {
+            removeContainer(index);
+        } else if (container instanceof BitmapContainer bitmap
+                && bitmap.cardinality <= ARRAY_CONTAINER_MAX_SIZE / 2) {
+            // converted back with hysteresis, so alternating add and remove do not convert chunk every time
+            containers[index] = bitmap.toArray();
+        }
+        return true;
+    }
+
+    @Override
+    int size() {
+        return cardinality;
+    }
+
+    @Override
+    void forEach(IntConsumer action) {
+        for (int i = 0; i < containerCount; i++) {
+            containers[i].forEach(keys[i] << 16, action);
+        }
+    }
+
+    @Override
+    int first() {
+        return containerCount == 0 ? -1 : keys[0] << 16 | containers[0].next(0);
+    }
+
+    /**
+     * Skips whole containers by their cardinality, so costs O(number of containers + 1024).
+     */
+    @Override
+    int get(int index) {
+        Objects.checkIndex(index, cardinality);
+        var rank = index;
+        var i = 0;
+        while (rank >= containers[i].cardinality()) {
+            rank -= containers[i++].cardinality();
+        }
+        return keys[i] << 16 | containers[i].select(rank);
+    }
+
+    @Override
+    IntIterator iterator() {
+        return new IntIterator() {
+            private int containerIndex;
+
+            private int next = seek(0, 0);
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                var result = next;
+                var low = result & 0xFFFF;
+                next = low == 0xFFFF ? seek(containerIndex + 1, 0) : seek(containerIndex, low + 1);
+                return result;
+            }
+
+            private int seek(int fromContainer, int fromValue) {
+                for (int i = fromContainer; i < containerCount; i++, fromValue = 0) {
+                    var value = containers[i].next(fromValue);
+                    if (value >= 0) {
+                        containerIndex = i;
+                        return keys[i] << 16 | value;
+                    }
+                }
+                containerIndex = containerCount;
+                return -1;
+            }
+        };
+    }
+
+    @Override
+    void retainIn(IntArrayList candidates) {
+        candidates.size(filter(candidates, true, false));
+    }
+
+    @Override
+    int countContained(IntArrayList candidates) {
+        return filter(candidates, true, true);
+    }
+
+    @Override
+    void removeFrom(IntArrayList candidates) {
+        candidates.size(filter(candidates, false, false));
+    }
+
+    /**
+     * @param countOnly whether to leave candidates as they are and only count those that pass
+     * @return number of candidates that pass, they are moved to the beginning of candidates unless only counted
+     */
+    private int filter(IntArrayList candidates, boolean retainContained, boolean countOnly) {
+        var candidatesArray = candidates.elements();
+        var candidatesSize = candidates.size();
+        var cursor = 0;
+        var j = 0;
+        for (int i = 0; i < candidatesSize; i++) {
+            var candidate = candidatesArray[i];
+            var key = (char) (candidate >>> 16);
+            while (cursor < containerCount && keys[cursor] < key) {
+                cursor++;
+            }
+            var contained = cursor < containerCount && keys[cursor] == key
+                    && containers[cursor].contains((char) candidate);
+            if (contained == retainContained) {
+                if (!countOnly) {
+                    candidatesArray[j] = candidate;
+                }
+                j++;
+            }
+        }
+        return j;
+    }
+
+    @Override
+    long estimatedBytes() {
+        var result = MemoryLayout.object(2 * MemoryLayout.REFERENCE + 2 * Integer.BYTES)
+                + MemoryLayout.array(keys.length, Character.BYTES)
+                + MemoryLayout.array(containers.length, MemoryLayout.REFERENCE);
+        for (int i = 0; i < containerCount; i++) {
+            result += containers[i].estimatedBytes();
+        }
+        return result;
+    }
+
+    @Override
+    void remap(int[] newPositions) {
+        var remapped = new BitmapPostingList();
+        forEach(position -> remapped.add(newPositions[position]));
+        keys = remapped.keys;
+        containers = remapped.containers;
+        containerCount = remapped.containerCount;
+        cardinality = remapped.cardinality;
+    }
+
+    /**
+     * Intersects bitmaps chunk by chunk. Chunks that are dense in every bitmap are intersected word by word, other
+     * chunks by probing values of the smallest one.
+     *
+     * @return positions contained in all bitmaps, ascending
+     */
+    static IntArrayList intersect(List<BitmapPostingList> bitmaps) {
+        var smallest = bitmaps.get(0);
+        for (BitmapPostingList bitmap : bitmaps) {
+            if (bitmap.containerCount < smallest.containerCount) {
+                smallest = bitmap;
+            }
+        }
+
+        var result = new IntArrayList();
+        var chunk = new Container[bitmaps.size()];
+        var words = new long[BITMAP_WORDS];
+        nextChunk:
+        for (int i = 0; i < smallest.containerCount; i++) {
+            var key = smallest.keys[i];
+            ArrayContainer pivot = null;
+            for (int j = 0; j < chunk.length; j++) {
+                var bitmap = bitmaps.get(j);
+                var index = bitmap.indexOfKey(key);
+                if (index < 0) {
+                    continue nextChunk;
+                }
+                chunk[j] = bitmap.containers[index];
+                if (chunk[j] instanceof ArrayContainer array && (pivot == null || array.size < pivot.size)) {
+                    pivot = array;
+                }
+            }
+
+            var high = key << 16;
+            if (pivot != null) {
+                nextValue:
+                for (int v = 0; v < pivot.size; v++) {
+                    var value = pivot.values[v];
+                    for (Container container : chunk) {
+                        if (container != pivot && !container.contains(value)) {
+                            continue nextValue;
+                        }
+                    }
+                    result.add(high | value);
+                }
+            } else {
+                System.arraycopy(((BitmapContainer) chunk[0]).words, 0, words, 0, BITMAP_WORDS);
+                for (int j = 1; j < chunk.length; j++) {
+                    var other = ((BitmapContainer) chunk[j]).words;
+                    for (int w = 0; w < BITMAP_WORDS; w++) {
+                        words[w] &= other[w];
+                    }
+                }
+                drainInto(words, high, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Unites bitmaps chunk by chunk, word by word.
+     *
+     * @return positions contained in any of bitmaps, ascending
+     */
+    static IntArrayList union(List<BitmapPostingList> bitmaps) {
+        var result = new IntArrayList();
+        var cursors = new int[bitmaps.size()];
+        var words = new long[BITMAP_WORDS];
+        while (true) {
+            var key = -1;
+            for (int j = 0; j < cursors.length; j++) {
+                var bitmap = bitmaps.get(j);
+                if (cursors[j] < bitmap.containerCount && (key < 0 || bitmap.keys[cursors[j]] < key)) {
+                    key = bitmap.keys[cursors[j]];
+                }
+            }
+            if (key < 0) {
+                return result;
+            }
+            for (int j = 0; j < cursors.length; j++) {
+                var bitmap = bitmaps.get(j);
+                if (cursors[j] < bitmap.containerCount && bitmap.keys[cursors[j]] == key) {
+                    bitmap.containers[cursors[j]++].orInto(words);
+                }
+            }
+            drainInto(words, key << 16, result);
+        }
+    }
+
+    /**
+     * Appends positions of set bits to result and clears words.
+     */
+    private static void drainInto(long[] words, int high, IntArrayList result) {
+        for (int w = 0; w < BITMAP_WORDS; w++) {
+            var word = words[w];
+            while (word != 0) {
+                result.add(high | (w << 6) + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+            words[w] = 0;
+        }
+    }
+
+    /**
+     * @return index of container with key or {@code ~insertionPoint} if there is no such container
+     */
+    private int indexOfKey(char key) {
+        // binarySearch returns -insertionPoint - 1, that is ~insertionPoint
+        return Arrays.binarySearch(keys, 0, containerCount, key);
+    }
+
+    private void insertContainer(int index, char key, Container container) {
+        if (containerCount == keys.length) {
+            keys = Arrays.copyOf(keys, containerCount * 2);
+            containers = Arrays.copyOf(containers, containerCount * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, containerCount - index);
+        System.arraycopy(containers, index, containers, index + 1, containerCount - index);
+        keys[index] = key;
+        containers[index] = container;
+        containerCount++;
+    }
+
+    private void removeContainer(int index) {
+        System.arraycopy(keys, index + 1, keys, index, containerCount - index - 1);
+        System.arraycopy(containers, index + 1, containers, index, containerCount - index - 1);
+        containers[--containerCount] = null;
+    }
+
+    /**
+     * Set of low 16 bits of positions in one chunk.
+     */
+    private abstract static class Container {
+
+        abstract boolean add(char value);
+
+        abstract boolean remove(char value);
+
+        abstract boolean contains(char value);
+
+        abstract int cardinality();
+
+        /**
+         * @return the smallest value not less than fromValue or -1
+         */
+        abstract int next(int fromValue);
+
+        /**
+         * @return value with given rank in ascending order, rank must be less than cardinality
+         */
+        abstract int select(int rank);
+
+        abstract void forEach(int high, IntConsumer action);
+
+        abstract void orInto(long[] words);
+
+        abstract long estimatedBytes();
+    }
+
+    private static final class ArrayContainer extends Container {
+
+        private char[] values = new char[4];
+
+        private int size;
+
+        @Override
+        boolean add(char value) {
+            int index;
+            if (size == 0 || values[size - 1] < value) {
+                index = size;
+            } else {
+                index = Arrays.binarySearch(values, 0, size, value);
+                if (index >= 0) {
+                    return false;
+                }
+                index = -index - 1;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            System.arraycopy(values, index, values, index + 1, size - index);
+            values[index] = value;
+            size++;
+            return true;
+        }
+
+        @Override
+        boolean remove(char value) {
+            var index = Arrays.binarySearch(values, 0, size, value);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(values, index + 1, values, index, size - index - 1);
+            size--;
+            return true;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, size, value) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return size;
+        }
+
+        @Override
+        int next(int fromValue) {
+            if (fromValue > Character.MAX_VALUE) {
+                return -1;
+            }
+            var index = Arrays.binarySearch(values, 0, size, (char) fromValue);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            return index < size ? values[index] : -1;
+        }
+
+        @Override
+        int select(int rank) {
+            return values[rank];
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int i = 0; i < size; i++) {
+                action.accept(high | values[i]);
+            }
+        }
+
+        @Override
+        void orInto(long[] words) {
+            for (int i = 0; i < size; i++) {
+                words[values[i] >>> 6] |= 1L << values[i];
+            }
+        }
+
+        @Override
+        long estimatedBytes() {
+            return MemoryLayout.object(MemoryLayout.REFERENCE + Integer.BYTES)
+                    + MemoryLayout.array(values.length, Character.BYTES);
+        }
+
+        BitmapContainer toBitmap() {
+            var bitmap = new BitmapContainer();
+            orInto(bitmap.words);
+            bitmap.cardinality = size;
+            return bitmap;
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+
+        private final long[] words = new long[BITMAP_WORDS];
+
+        private int cardinality;
+
+        @Override
+        boolean add(char value) {
+            var index = value >>> 6;
+            var before = words[index];
+            words[index] = before | 1L << value;
+            if (before == words[index]) {
+                return false;
+            }
+            cardinality++;
+            return true;
+        }
+
+        @Override
+        boolean remove(char value) {
+            var index = value >>> 6;
+            var before = words[index];
+            words[index] = before & ~(1L << value);
+            if (before == words[index]) {
+                return false;
+            }
+            cardinality--;
+            return true;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & 1L << value) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        int next(int fromValue) {
+            if (fromValue > Character.MAX_VALUE) {
+                return -1;
+            }
+            var index = fromValue >>> 6;
+            var word = words[index] & -1L << fromValue;
+            while (word == 0) {
+                if (++index == BITMAP_WORDS) {
+                    return -1;
+                }
+                word = words[index];
+            }
+            return (index << 6) + Long.numberOfTrailingZeros(word);
+        }
+
+        @Override
+        int select(int rank) {
+            var remaining = rank;
+            var index = 0;
+            while (remaining >= Long.bitCount(words[index])) {
+                remaining -= Long.bitCount(words[index++]);
+            }
+            var word = words[index];
+            for (; remaining > 0; remaining--) {
+                word &= word - 1;
+            }
+            return (index << 6) + Long.numberOfTrailingZeros(word);
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                var word = words[w];
+                while (word != 0) {
+                    action.accept(high | (w << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        @Override
+        void orInto(long[] words) {
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                words[w] |= this.words[w];
+            }
+        }
+
+        @Override
+        long estimatedBytes() {
+            return MemoryLayout.object(MemoryLayout.REFERENCE + Integer.BYTES)
+                    + MemoryLayout.array(BITMAP_WORDS, Long.BYTES);
+        }
+
+        ArrayContainer toArray() {
+            var array = new ArrayContainer();
+            array.values = new char[cardinality];
+            forEach(0, value -> array.values[array.size++] = (char) value);
+            return array;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.github.lexakimov.collections;
+
+import java.util.Map;
+
+/**
+ * Snapshot of statistics of {@link MultiIndexIndexedCollection}, see
+ * {@link MultiIndexIndexedCollection#statistics()}.
+ *
+ * @param size    number of elements
+ * @param indices statistics of every index in order of declaration of properties
+ * @param adds    latency of {@code add} and {@code addAll} calls
+ * @param queries latency of searches and counts by {@link Query}, see also {@link IndexStatistics#lookupLatency()}
+ */
+public record CollectionStatistics<E>(int size, Map<IndexDefinition<E>, IndexStatistics> indices,
+                                      LatencyStatistics adds, LatencyStatistics queries) {
+
+    /**
+     * @return estimated memory occupied by all indices, except key objects
+     */
+    public long estimatedIndicesBytes() {
+        return indices.values().stream().mapToLong(IndexStatistics::estimatedBytes).sum();
+    }
+}
@@ -0,0 +1,318 @@
+package com.github.lexakimov.collections;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Thread-safe variant of {@link MultiIndexIndexedCollection} whose reads take no locks and do not wait for writers.
+ * <p>
+ * Collection keeps two replicas of elements and indices (elements themselves are shared) and follows Left-Right
+ * concurrency control: readers always work with the replica which is not being modified, while writer applies
+ * mutation to the other replica, switches readers to it, waits until readers of the previous replica leave and then
+ * repeats mutation there. Readers only increment striped counters of arrivals and departures, so searches scale
+ * across cores and are not delayed by ingest, while writer may wait for slow readers. The price is doubled memory
+ * of indices and every mutation being applied twice. Writers are serialized by a single lock.
+ * <p>
+ * All returned lists are independent copies.
+ */
+public class ConcurrentMultiIndexIndexedCollection<E> {
+
+    /**
+     * Number of busy-wait iterations before writer starts parking while it waits for readers.
+     */
+    private static final int MAX_SPINS = 100;
+
+    private static final long PARK_NANOS = 10_000;
+
+    private final List<MultiIndexIndexedCollection<E>> replicas;
+
+    private final ReadIndicator[] readIndicators = {new ReadIndicator(), new ReadIndicator()};
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    /**
+     * Index of replica that readers use.
+     */
+    private volatile int readReplica;
+
+    /**
+     * Index of read indicator that arriving readers increment.
+     */
+    private volatile int readIndicator;
+
+    public ConcurrentMultiIndexIndexedCollection(Class<? extends IndexDefinition<E>> searchablePropertyEnumClass) {
+        this.replicas = List.of(
+                new MultiIndexIndexedCollection<>(searchablePropertyEnumClass),
+                new MultiIndexIndexedCollection<>(searchablePropertyEnumClass));
+        // queries must not modify replicas, so lazy indices are built at once
+        replicas.forEach(MultiIndexIndexedCollection::buildIndices);
+    }
+
+    public boolean add(E element) {
+        return write(replica -> replica.add(element));
+    }
+
+    public boolean addAll(Collection<? extends E> elements) {
+        var batch = List.<E>copyOf(elements);
+        return write(replica -> replica.addAll(batch));
+    }
+
+    public boolean remove(IndexDefinition<E> property, Object value) {
+        return write(replica -> replica.remove(property, value));
+    }
+
+    /**
+     * @see MultiIndexIndexedCollection#update(Object, Object)
+     */
+    public boolean update(E oldElement, E newElement) {
+        return write(replica -> replica.update(oldElement, newElement));
+    }
+
+    /**
+     * @see MultiIndexIndexedCollection#replace(IndexDefinition, Object, Object)
+     */
+    public boolean replace(IndexDefinition<E> property, Object value, E newElement) {
+        return write(replica -> replica.replace(property, value, newElement));
+    }
+
+    /**
+     * Registers index of property, lazy index is built at once as well.
+     *
+     * @see MultiIndexIndexedCollection#addIndex(IndexDefinition)
+     */
+    public void addIndex(IndexDefinition<E> property) {
+        write(replica -> {
+            replica.addIndex(property);
+            replica.buildIndices();
+            return null;
+        });
+    }
+
+    /**
+     * @see MultiIndexIndexedCollection#dropIndex(IndexDefinition)
+     */
+    public boolean dropIndex(IndexDefinition<E> property) {
+        return write(replica -> replica.dropIndex(property));
+    }
+
+    public void compact() {
+        write(replica -> {
+            replica.compact();
+            return null;
+        });
+    }
+
+    public void clear() {
+        write(replica -> {
+            replica.clear();
+            return null;
+        });
+    }
+
+    public boolean contains(E o) {
+        return read(replica -> replica.contains(o));
+    }
+
+    public boolean contains(IndexDefinition<E> property, Object value) {
+        return read(replica -> replica.contains(property, value));
+    }
+
+    public boolean contains(IndexDefinition<E> property, int value) {
+        return read(replica -> replica.contains(property, value));
+    }
+
+    public boolean contains(IndexDefinition<E> property, long value) {
+        return read(replica -> replica.contains(property, value));
+    }
+
+    public List<E> searchByProperty(IndexDefinition<E> property, Object value) {
+        return read(replica -> replica.searchByProperty(property, value));
+    }
+
+    public List<E> searchByProperty(IndexDefinition<E> property, int value) {
+        return read(replica -> replica.searchByProperty(property, value));
+    }
+
+    public List<E> searchByProperty(IndexDefinition<E> property, long value) {
+        return read(replica -> replica.searchByProperty(property, value));
+    }
+
+    public List<E> searchByProperty(IndexDefinition<E> property, Object value, int offset, int limit) {
+        return read(replica -> replica.searchByProperty(property, value, offset, limit));
+    }
+
+    public List<E> search(Query<E> query) {
+        return read(replica -> replica.search(query));
+    }
+
+    public List<E> search(Query<E> query, int offset, int limit) {
+        return read(replica -> replica.search(query, offset, limit));
+    }
+
+    public List<E> search(Query<E> query, Comparator<? super E> comparator, int offset, int limit) {
+        return read(replica -> replica.search(query, comparator, offset, limit));
+    }
+
+    public int count(Query<E> query) {
+        return read(replica -> replica.count(query));
+    }
+
+    public List<E> searchRange(IndexDefinition<E> property, Object from, boolean fromInclusive,
+                               Object to, boolean toInclusive) {
+        return read(replica -> replica.searchRange(property, from, fromInclusive, to, toInclusive));
+    }
+
+    public List<E> searchPrefix(IndexDefinition<E> property, Object... values) {
+        return read(replica -> replica.searchPrefix(property, values));
+    }
+
+    public List<E> searchStartsWith(IndexDefinition<E> property, String prefix) {
+        return read(replica -> replica.searchStartsWith(property, prefix));
+    }
+
+    public List<E> searchStartsWith(IndexDefinition<E> property, String prefix, int limit) {
+        return read(replica -> replica.searchStartsWith(property, prefix, limit));
+    }
+
+    public List<E> searchGreaterThan(IndexDefinition<E> property, Object value, boolean inclusive) {
+        return read(replica -> replica.searchGreaterThan(property, value, inclusive));
+    }
+
+    public List<E> searchLessThan(IndexDefinition<E> property, Object value, boolean inclusive) {
+        return read(replica -> replica.searchLessThan(property, value, inclusive));
+    }
+
+    public Optional<E> min(IndexDefinition<E> property) {
+        return read(replica -> replica.min(property));
+    }
+
+    public Optional<E> max(IndexDefinition<E> property) {
+        return read(replica -> replica.max(property));
+    }
+
+    /**
+     * @return copy of elements
+     */
+    public List<E> list() {
+        return read(replica -> {
+            var result = new ArrayList<E>(replica.size());
+            replica.iterator().forEachRemaining(result::add);
+            return result;
+        });
+    }
+
+    /**
+     * @return copy of elements in order of ordered index
+     */
+    public List<E> list(IndexDefinition<E> property) {
+        return read(replica -> new ArrayList<>(replica.list(property)));
+    }
+
+    public Map<Object, Integer> countBy(IndexDefinition<E> property) {
+        return read(replica -> replica.countBy(property));
+    }
+
+    public Map<Object, Integer> countBy(IndexDefinition<E> property, Query<E> filter) {
+        return read(replica -> replica.countBy(property, filter));
+    }
+
+    public Set<Object> distinctValues(IndexDefinition<E> property) {
+        return read(replica -> replica.distinctValues(property));
+    }
+
+    public List<Map.Entry<Object, Integer>> mostFrequentValues(IndexDefinition<E> property, int limit) {
+        return read(replica -> replica.mostFrequentValues(property, limit));
+    }
+
+    public List<E> list(IndexDefinition<E> property, int offset, int limit) {
+        return read(replica -> replica.list(property, offset, limit));
+    }
+
+    public boolean isEmpty() {
+        return read(MultiIndexIndexedCollection::isEmpty);
+    }
+
+    public int size() {
+        return read(MultiIndexIndexedCollection::size);
+    }
+
+    public int size(IndexDefinition<E> property, Object value) {
+        return read(replica -> replica.size(property, value));
+    }
+
+    private <R> R read(Function<MultiIndexIndexedCollection<E>, R> action) {
+        var indicator = readIndicators[readIndicator];
+        indicator.ingress.increment();
+        try {
+            return action.apply(replicas.get(readReplica));
+        } finally {
+            indicator.egress.increment();
+        }
+    }
+
+    private <R> R write(Function<MultiIndexIndexedCollection<E>, R> action) {
+        writeLock.lock();
+        try {
+            var writeReplica = 1 - readReplica;
+            var result = action.apply(replicas.get(writeReplica));
+            readReplica = writeReplica;
+            waitForReaders();
+            action.apply(replicas.get(1 - writeReplica));
+            return result;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Waits until all readers which could see previous value of {@link #readReplica} are gone. Arriving readers are
+     * redirected to the other indicator first, so both waits are finite.
+     */
+    private void waitForReaders() {
+        var previous = readIndicator;
+        var next = 1 - previous;
+        awaitEmpty(readIndicators[next]);
+        readIndicator = next;
+        awaitEmpty(readIndicators[previous]);
+    }
+
+    private static void awaitEmpty(ReadIndicator indicator) {
+        for (int spins = 0; !indicator.isEmpty(); spins++) {
+            if (spins < MAX_SPINS) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Counts readers of replica by two monotonic counters, arrivals and departures. Sum of one {@link LongAdder} is
+     * not an atomic snapshot, so single counter incremented and decremented by readers may look zero while a reader
+     * is inside.
+     */
+    private static final class ReadIndicator {
+
+        private final LongAdder ingress = new LongAdder();
+
+        private final LongAdder egress = new LongAdder();
+
+        /**
+         * Departures are summed before arrivals: sum of departures can only lag behind, sum of arrivals can only run
+         * ahead, so equal sums mean that every reader arrived before the check has departed.
+         */
+        boolean isEmpty() {
+            var departed = egress.sum();
+            return ingress.sum() == departed;
+        }
+    }
+}
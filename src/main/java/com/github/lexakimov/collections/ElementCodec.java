@@ -0,0 +1,22 @@
+package com.github.lexakimov.collections;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Serializer of elements stored off heap, see
+ * {@link MultiIndexIndexedCollection#MultiIndexIndexedCollection(Class, ElementCodec)}.
+ */
+public interface ElementCodec<E> {
+
+    /**
+     * Writes element starting from current position of buffer.
+     *
+     * @throws java.nio.BufferOverflowException if buffer is too small, then encoding is retried with a larger one
+     */
+    void encode(E element, ByteBuffer buffer);
+
+    /**
+     * @param buffer read-only buffer that holds exactly one encoded element between its position and limit
+     */
+    E decode(ByteBuffer buffer);
+}
@@ -0,0 +1,33 @@
+package com.github.lexakimov.collections;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes elements by {@link ElementCodec} into reused buffer, which grows until encoded element fits.
+ */
+final class ElementEncoder<E> {
+
+    private final ElementCodec<E> codec;
+
+    private ByteBuffer scratch = ByteBuffer.allocate(256);
+
+    ElementEncoder(ElementCodec<E> codec) {
+        this.codec = codec;
+    }
+
+    /**
+     * @return encoded element between position and limit of buffer, valid until the next call
+     */
+    ByteBuffer encode(E element) {
+        while (true) {
+            scratch.clear();
+            try {
+                codec.encode(element, scratch);
+                return scratch.flip();
+            } catch (BufferOverflowException e) {
+                scratch = ByteBuffer.allocate(scratch.capacity() * 2);
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.github.lexakimov.collections;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Storage of elements of {@link MultiIndexIndexedCollection} addressed by position. Only appending and replacing
+ * are supported: removed element is replaced with {@code null} (tombstone), so positions of other elements stay
+ * stable until {@link #compact()}.
+ */
+abstract class ElementStore<E> extends AbstractList<E> implements RandomAccess {
+
+    static <E> ElementStore<E> onHeap() {
+        return new HeapElementStore<>();
+    }
+
+    static <E> ElementStore<E> offHeap(ElementCodec<E> codec) {
+        return new OffHeapElementStore<>(codec);
+    }
+
+    @Override
+    public void add(int index, E element) {
+        if (index != size()) {
+            throw new UnsupportedOperationException("elements can only be appended");
+        }
+        add(element);
+    }
+
+    @Override
+    public abstract boolean add(E element);
+
+    @Override
+    public abstract void clear();
+
+    /**
+     * Drops elements appended from given position on, to roll back append that failed.
+     */
+    abstract void truncate(int size);
+
+    /**
+     * @return {@code false} if position holds tombstone, element is not decoded
+     */
+    abstract boolean isLive(int position);
+
+    /**
+     * Drops tombstones and moves remaining elements to the beginning of storage keeping their order.
+     *
+     * @return new position of each remaining element by its old position
+     */
+    abstract int[] compact();
+
+    /**
+     * @return share of occupied space wasted by replaced and removed elements until {@link #compact()}
+     */
+    double garbageShare() {
+        return 0;
+    }
+
+    /**
+     * @return estimated number of bytes occupied by storage, except element objects on heap
+     */
+    abstract long estimatedBytes();
+}
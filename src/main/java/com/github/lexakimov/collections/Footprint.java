@@ -0,0 +1,18 @@
+package com.github.lexakimov.collections;
+
+/**
+ * Estimated heap occupied by collection, see {@link MultiIndexIndexedCollection#footprint()}. Sizes assume 64-bit JVM
+ * with compressed references, so they are approximate.
+ *
+ * @param elements     bytes of elements storage, including encoded elements stored off heap, but not element objects
+ *                     on heap
+ * @param maps         bytes of index structures that map keys to posting lists, including pool of interned keys
+ * @param keys         bytes of distinct key objects, every instance counted once even if it is shared by indices
+ * @param postingLists bytes of posting lists
+ */
+public record Footprint(long elements, long maps, long keys, long postingLists) {
+
+    public long total() {
+        return elements + maps + keys + postingLists;
+    }
+}
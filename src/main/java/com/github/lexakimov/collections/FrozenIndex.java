@@ -0,0 +1,390 @@
+package com.github.lexakimov.collections;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Immutable index of {@link FrozenMultiIndexIndexedCollection} in compressed sparse row layout: keys are numbered,
+ * and positions of key number {@code i} occupy {@code positions[offsets[i]]} up to {@code positions[offsets[i + 1]]}
+ * (exclusive) of one array shared by all keys. So whole index is a few arrays instead of map entry and posting list
+ * per key. Positions may also be a buffer of memory-mapped file, see {@link SnapshotFile}.
+ */
+abstract class FrozenIndex<E> {
+
+    private final int[] offsets;
+
+    private final IntBuffer positions;
+
+    FrozenIndex(int[] offsets, IntBuffer positions) {
+        this.offsets = offsets;
+        this.positions = positions;
+    }
+
+    static <E> FrozenIndex<E> hashed(Object[] keys, List<PostingList> postingLists) {
+        return new HashedIndex<>(keys, offsets(postingLists), positions(postingLists));
+    }
+
+    /**
+     * @param keys ascending by comparator
+     */
+    static <E> FrozenIndex<E> sorted(Object[] keys, Comparator<Object> comparator, List<PostingList> postingLists) {
+        return new SortedIndex<>(keys, comparator, offsets(postingLists), positions(postingLists));
+    }
+
+    /**
+     * @param keys ascending
+     */
+    static <E> FrozenIndex<E> ofInts(int[] keys, List<PostingList> postingLists) {
+        return new IntKeysIndex<>(keys, offsets(postingLists), positions(postingLists));
+    }
+
+    /**
+     * @param keys ascending
+     */
+    static <E> FrozenIndex<E> ofLongs(long[] keys, List<PostingList> postingLists) {
+        return new LongKeysIndex<>(keys, offsets(postingLists), positions(postingLists));
+    }
+
+    /**
+     * Restores index of definition from its parts, the same kind of index as {@link Index#create(IndexDefinition)}
+     * creates for definition.
+     *
+     * @param keys array of keys returned by {@link #keys()}
+     * @throws IllegalArgumentException if type of keys does not match definition
+     */
+    static <E> FrozenIndex<E> of(IndexDefinition<E> definition, Object keys, int[] offsets, IntBuffer positions) {
+        if (definition.isOrdered()) {
+            if (keys instanceof Object[] objects) {
+                return new SortedIndex<>(objects, OrderedIndex.comparator(definition), offsets, positions);
+            }
+        } else if (definition.isMultiValued()) {
+            if (keys instanceof Object[] objects) {
+                return new HashedIndex<>(objects, offsets, positions);
+            }
+        } else if (definition.getIntFunc() != null) {
+            if (keys instanceof int[] ints) {
+                return new IntKeysIndex<>(ints, offsets, positions);
+            }
+        } else if (definition.getLongFunc() != null) {
+            if (keys instanceof long[] longs) {
+                return new LongKeysIndex<>(longs, offsets, positions);
+            }
+        } else if (keys instanceof Object[] objects) {
+            return new HashedIndex<>(objects, offsets, positions);
+        }
+        throw new IllegalArgumentException("keys of %s do not match its definition".formatted(definition));
+    }
+
+    private static int[] offsets(List<PostingList> postingLists) {
+        var offsets = new int[postingLists.size() + 1];
+        for (int i = 0; i < postingLists.size(); i++) {
+            offsets[i + 1] = offsets[i] + postingLists.get(i).size();
+        }
+        return offsets;
+    }
+
+    private static IntBuffer positions(List<PostingList> postingLists) {
+        var total = 0;
+        for (PostingList postingList : postingLists) {
+            total += postingList.size();
+        }
+        var positions = new int[total];
+        var cursor = 0;
+        for (PostingList postingList : postingLists) {
+            for (var iterator = postingList.iterator(); iterator.hasNext(); ) {
+                positions[cursor++] = iterator.nextInt();
+            }
+        }
+        return IntBuffer.wrap(positions);
+    }
+
+    /**
+     * @return keys in order of key numbers: {@code Object[]}, {@code int[]} or {@code long[]}, must not be modified
+     */
+    abstract Object keys();
+
+    /**
+     * @return number of key or -1 if there are no elements with such key
+     */
+    abstract int keyNumber(Object key);
+
+    int keyNumber(int key) {
+        return keyNumber((Object) key);
+    }
+
+    int keyNumber(long key) {
+        return keyNumber((Object) key);
+    }
+
+    /**
+     * @return posting list of key or {@code null} if there are no elements with such key
+     */
+    PostingList get(Object key) {
+        return postingList(keyNumber(key));
+    }
+
+    PostingList get(int key) {
+        return postingList(keyNumber(key));
+    }
+
+    PostingList get(long key) {
+        return postingList(keyNumber(key));
+    }
+
+    private PostingList postingList(int keyNumber) {
+        return keyNumber < 0 ? null : new FrozenPostingList(positions, offsets[keyNumber], offsets[keyNumber + 1]);
+    }
+
+    int keyCount() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * @return index in {@link #positions} of the first position of key number, or total number of positions for
+     * {@link #keyCount()}
+     */
+    int offset(int keyNumber) {
+        return offsets[keyNumber];
+    }
+
+    int position(int offset) {
+        return positions.get(offset);
+    }
+
+    /**
+     * @return offsets of keys in order of key numbers followed by total number of positions, must not be modified
+     */
+    int[] offsets() {
+        return offsets;
+    }
+
+    /**
+     * @return read-only view of positions of all keys in order of key numbers
+     */
+    IntBuffer positions() {
+        return positions.asReadOnlyBuffer();
+    }
+
+    /**
+     * @return estimated size of keys arrays and offsets, except key objects
+     */
+    long mapBytes() {
+        return MemoryLayout.array(offsets.length, Integer.BYTES);
+    }
+
+    long postingListsBytes() {
+        return MemoryLayout.array(positions.capacity(), Integer.BYTES);
+    }
+
+    /**
+     * @return key objects stored by index, empty for indices of unboxed keys
+     */
+    Collection<?> keyObjects() {
+        return List.of();
+    }
+
+    /**
+     * Keys are looked up in open-addressing table of key numbers with linear probing.
+     */
+    private static final class HashedIndex<E> extends FrozenIndex<E> {
+
+        private final Object[] keys;
+
+        /**
+         * Key number + 1 in slot of each key, 0 in free slots.
+         */
+        private final int[] table;
+
+        private final int mask;
+
+        HashedIndex(Object[] keys, int[] offsets, IntBuffer positions) {
+            super(offsets, positions);
+            this.keys = keys;
+            this.table = new int[HashCommon.arraySize(keys.length, 0.5f)];
+            this.mask = table.length - 1;
+            for (int i = 0; i < keys.length; i++) {
+                var slot = slot(keys[i]);
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = i + 1;
+            }
+        }
+
+        private int slot(Object key) {
+            return HashCommon.mix(Objects.hashCode(key)) & mask;
+        }
+
+        @Override
+        int keyNumber(Object key) {
+            for (int slot = slot(key); table[slot] != 0; slot = (slot + 1) & mask) {
+                var keyNumber = table[slot] - 1;
+                if (Objects.equals(keys[keyNumber], key)) {
+                    return keyNumber;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        Object keys() {
+            return keys;
+        }
+
+        @Override
+        long mapBytes() {
+            return super.mapBytes() + MemoryLayout.array(keys.length, MemoryLayout.REFERENCE)
+                    + MemoryLayout.array(table.length, Integer.BYTES);
+        }
+
+        @Override
+        Collection<?> keyObjects() {
+            return Arrays.asList(keys);
+        }
+    }
+
+    /**
+     * Keys are sorted, so positions of keys in any range are contiguous in positions array.
+     */
+    static final class SortedIndex<E> extends FrozenIndex<E> {
+
+        private final Object[] keys;
+
+        private final Comparator<Object> comparator;
+
+        SortedIndex(Object[] keys, Comparator<Object> comparator, int[] offsets, IntBuffer positions) {
+            super(offsets, positions);
+            this.keys = keys;
+            this.comparator = comparator;
+        }
+
+        @Override
+        int keyNumber(Object key) {
+            var keyNumber = bound(key, false);
+            return keyNumber < keys.length && comparator.compare(keys[keyNumber], key) == 0 ? keyNumber : -1;
+        }
+
+        /**
+         * @return number of the first key in range that starts with given key
+         */
+        int lowerBound(Object from, boolean inclusive) {
+            return bound(from, !inclusive);
+        }
+
+        /**
+         * @return number of the first key after range that ends with given key
+         */
+        int upperBound(Object to, boolean inclusive) {
+            return bound(to, inclusive);
+        }
+
+        /**
+         * @throws IllegalArgumentException if from is greater than to
+         */
+        void checkRange(Object from, Object to) {
+            if (comparator.compare(from, to) > 0) {
+                throw new IllegalArgumentException("fromKey > toKey");
+            }
+        }
+
+        /**
+         * @return number of the first key greater than given one if strict, otherwise not less than given one
+         */
+        private int bound(Object key, boolean strict) {
+            int low = 0;
+            int high = keys.length;
+            while (low < high) {
+                var mid = (low + high) >>> 1;
+                var comparison = comparator.compare(keys[mid], key);
+                if (comparison < 0 || strict && comparison == 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        @Override
+        Object keys() {
+            return keys;
+        }
+
+        @Override
+        long mapBytes() {
+            return super.mapBytes() + MemoryLayout.array(keys.length, MemoryLayout.REFERENCE);
+        }
+
+        @Override
+        Collection<?> keyObjects() {
+            return Arrays.asList(keys);
+        }
+    }
+
+    private static final class IntKeysIndex<E> extends FrozenIndex<E> {
+
+        private final int[] keys;
+
+        IntKeysIndex(int[] keys, int[] offsets, IntBuffer positions) {
+            super(offsets, positions);
+            this.keys = keys;
+        }
+
+        @Override
+        int keyNumber(Object key) {
+            return key instanceof Integer value ? keyNumber(value.intValue()) : -1;
+        }
+
+        @Override
+        int keyNumber(int key) {
+            var keyNumber = Arrays.binarySearch(keys, key);
+            return Math.max(keyNumber, -1);
+        }
+
+        @Override
+        Object keys() {
+            return keys;
+        }
+
+        @Override
+        long mapBytes() {
+            return super.mapBytes() + MemoryLayout.array(keys.length, Integer.BYTES);
+        }
+    }
+
+    private static final class LongKeysIndex<E> extends FrozenIndex<E> {
+
+        private final long[] keys;
+
+        LongKeysIndex(long[] keys, int[] offsets, IntBuffer positions) {
+            super(offsets, positions);
+            this.keys = keys;
+        }
+
+        @Override
+        int keyNumber(Object key) {
+            return key instanceof Long value ? keyNumber(value.longValue()) : -1;
+        }
+
+        @Override
+        int keyNumber(long key) {
+            var keyNumber = Arrays.binarySearch(keys, key);
+            return Math.max(keyNumber, -1);
+        }
+
+        @Override
+        Object keys() {
+            return keys;
+        }
+
+        @Override
+        long mapBytes() {
+            return super.mapBytes() + MemoryLayout.array(keys.length, Long.BYTES);
+        }
+    }
+}
@@ -0,0 +1,407 @@
+package com.github.lexakimov.collections;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Immutable snapshot of {@link MultiIndexIndexedCollection} built by {@link MultiIndexIndexedCollection#freeze()}.
+ * <p>
+ * Every index is stored in compact layout: keys (sorted array or open-addressing table) and two int arrays with
+ * offsets of keys and concatenated positions of elements, see {@link FrozenIndex}. Snapshot has no per-key objects,
+ * so it takes a fraction of memory of modifiable collection. All fields are final and never modified, so snapshot may
+ * be shared between threads without locking.
+ */
+public final class FrozenMultiIndexIndexedCollection<E> {
+
+    private final List<E> elements;
+
+    private final List<IndexDefinition<E>> propertyEnumConstants;
+
+    private final Map<IndexDefinition<E>, FrozenIndex<E>> indicesByProperty;
+
+    private final QueryEvaluator<E> queryEvaluator = new QueryEvaluator<>() {
+        @Override
+        PostingList postingList(IndexDefinition<E> property, Object value) {
+            var index = indicesByProperty.get(property);
+            return index == null ? null : index.get(value);
+        }
+
+        @Override
+        IntArrayList livePositions() {
+            var result = new IntArrayList(elements.size());
+            for (int i = 0; i < elements.size(); i++) {
+                result.add(i);
+            }
+            return result;
+        }
+
+        @Override
+        int size() {
+            return elements.size();
+        }
+    };
+
+    /**
+     * @param elements unmodifiable elements without tombstones, positions in indices refer to them
+     */
+    FrozenMultiIndexIndexedCollection(List<E> elements, List<IndexDefinition<E>> propertyEnumConstants,
+                                      Map<IndexDefinition<E>, FrozenIndex<E>> indicesByProperty) {
+        this.elements = elements;
+        this.propertyEnumConstants = List.copyOf(propertyEnumConstants);
+        this.indicesByProperty = Map.copyOf(indicesByProperty);
+    }
+
+    public boolean contains(E o) {
+        return o != null && elements.contains(o);
+    }
+
+    public boolean contains(IndexDefinition<E> property, Object value) {
+        Objects.requireNonNull(property);
+        var index = indicesByProperty.get(property);
+        return index != null && index.keyNumber(value) >= 0;
+    }
+
+    public boolean contains(IndexDefinition<E> property, int value) {
+        Objects.requireNonNull(property);
+        var index = indicesByProperty.get(property);
+        return index != null && index.keyNumber(value) >= 0;
+    }
+
+    public boolean contains(IndexDefinition<E> property, long value) {
+        Objects.requireNonNull(property);
+        var index = indicesByProperty.get(property);
+        return index != null && index.keyNumber(value) >= 0;
+    }
+
+    public List<E> searchByProperty(IndexDefinition<E> property, Object value) {
+        Objects.requireNonNull(property);
+        var index = indicesByProperty.get(property);
+        return index == null ? Collections.emptyList() : collect(index, index.keyNumber(value));
+    }
+
+    public List<E> searchByProperty(IndexDefinition<E> property, int value) {
+        Objects.requireNonNull(property);
+        var index = indicesByProperty.get(property);
+        return index == null ? Collections.emptyList() : collect(index, index.keyNumber(value));
+    }
+
+    public List<E> searchByProperty(IndexDefinition<E> property, long value) {
+        Objects.requireNonNull(property);
+        var index = indicesByProperty.get(property);
+        return index == null ? Collections.emptyList() : collect(index, index.keyNumber(value));
+    }
+
+    private List<E> collect(FrozenIndex<E> index, int keyNumber) {
+        return keyNumber < 0 ? Collections.emptyList() : collect(index, keyNumber, keyNumber + 1);
+    }
+
+    /**
+     * @return elements of keys with numbers from fromKey (inclusive) to toKey (exclusive)
+     */
+    private List<E> collect(FrozenIndex<E> index, int fromKey, int toKey) {
+        var from = index.offset(fromKey);
+        var to = index.offset(toKey);
+        var result = new ArrayList<E>(to - from);
+        for (int i = from; i < to; i++) {
+            result.add(elements.get(index.position(i)));
+        }
+        return result;
+    }
+
+    /**
+     * @see MultiIndexIndexedCollection#searchRange(IndexDefinition, Object, boolean, Object, boolean)
+     */
+    public List<E> searchRange(IndexDefinition<E> property, Object from, boolean fromInclusive,
+                               Object to, boolean toInclusive) {
+        Objects.requireNonNull(property);
+        var index = sortedIndex(property);
+        index.checkRange(from, to);
+        var fromKey = index.lowerBound(from, fromInclusive);
+        var toKey = Math.max(fromKey, index.upperBound(to, toInclusive));
+        return collect(index, fromKey, toKey);
+    }
+
+    /**
+     * @see MultiIndexIndexedCollection#searchPrefix(IndexDefinition, Object...)
+     */
+    public List<E> searchPrefix(IndexDefinition<E> property, Object... values) {
+        Objects.requireNonNull(property);
+        var index = sortedIndex(property);
+        var prefix = Tuple.of(values);
+        return collect(index, index.lowerBound(prefix, true), index.upperBound(prefix.prefixEnd(), false));
+    }
+
+    /**
+     * @see MultiIndexIndexedCollection#searchStartsWith(IndexDefinition, String, int)
+     */
+    public List<E> searchStartsWith(IndexDefinition<E> property, String prefix) {
+        return searchStartsWith(property, prefix, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Binary searches range of keys starting with prefix in sorted keys of index.
+     *
+     * @see MultiIndexIndexedCollection#searchStartsWith(IndexDefinition, String, int)
+     */
+    public List<E> searchStartsWith(IndexDefinition<E> property, String prefix, int limit) {
+        Objects.requireNonNull(property);
+        Objects.requireNonNull(prefix);
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must not be negative");
+        }
+        var index = sortedIndex(property);
+        var fromKey = index.lowerBound(prefix, true);
+        var toKey = index.upperBound(OrderedIndex.prefixEnd(prefix), false);
+        var from = index.offset(fromKey);
+        var to = (int) Math.min(index.offset(toKey), (long) from + limit);
+        var result = new ArrayList<E>(to - from);
+        for (int i = from; i < to; i++) {
+            result.add(elements.get(index.position(i)));
+        }
+        return result;
+    }
+
+    public List<E> searchGreaterThan(IndexDefinition<E> property, Object value, boolean inclusive) {
+        Objects.requireNonNull(property);
+        var index = sortedIndex(property);
+        return collect(index, index.lowerBound(value, inclusive), index.keyCount());
+    }
+
+    public List<E> searchLessThan(IndexDefinition<E> property, Object value, boolean inclusive) {
+        Objects.requireNonNull(property);
+        var index = sortedIndex(property);
+        return collect(index, 0, index.upperBound(value, inclusive));
+    }
+
+    /**
+     * @return first added element among elements with the smallest value of ordered property
+     */
+    public Optional<E> min(IndexDefinition<E> property) {
+        Objects.requireNonNull(property);
+        var index = sortedIndex(property);
+        return index.keyCount() == 0 ? Optional.empty() : Optional.of(elements.get(index.position(0)));
+    }
+
+    /**
+     * @return first added element among elements with the greatest value of ordered property
+     */
+    public Optional<E> max(IndexDefinition<E> property) {
+        Objects.requireNonNull(property);
+        var index = sortedIndex(property);
+        var lastKey = index.keyCount() - 1;
+        return lastKey < 0 ? Optional.empty() : Optional.of(elements.get(index.position(index.offset(lastKey))));
+    }
+
+    private FrozenIndex.SortedIndex<E> sortedIndex(IndexDefinition<E> property) {
+        if (indicesByProperty.get(property) instanceof FrozenIndex.SortedIndex<E> sortedIndex) {
+            return sortedIndex;
+        }
+        throw new IllegalArgumentException("%s is not an ordered index of collection".formatted(property));
+    }
+
+    /**
+     * @see MultiIndexIndexedCollection#search(Query)
+     */
+    public List<E> search(Query<E> query) {
+        Objects.requireNonNull(query);
+        var elementsIndices = queryEvaluator.evaluate(query);
+        var result = new ArrayList<E>(elementsIndices.size());
+        elementsIndices.forEach(i -> result.add(elements.get(i)));
+        return result;
+    }
+
+    public int count(Query<E> query) {
+        Objects.requireNonNull(query);
+        return queryEvaluator.evaluate(query).size();
+    }
+
+    public Iterator<E> iterator() {
+        return elements.iterator();
+    }
+
+    /**
+     * @return sequential stream of elements in insertion order, sized and evenly splittable
+     */
+    public Stream<E> stream() {
+        var spliterator = new PositionsSpliterator<>(elements::get, null, 0, elements.size(),
+                Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+        return StreamSupport.stream(spliterator, false);
+    }
+
+    /**
+     * @return iterator over elements in order of ordered index
+     * @throws IllegalArgumentException if property is not an ordered index of this collection
+     */
+    public Iterator<E> iterator(IndexDefinition<E> property) {
+        Objects.requireNonNull(property);
+        var index = sortedIndex(property);
+        var total = index.offset(index.keyCount());
+        return new Iterator<>() {
+            private int cursor;
+
+            @Override
+            public boolean hasNext() {
+                return cursor < total;
+            }
+
+            @Override
+            public E next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return elements.get(index.position(cursor++));
+            }
+        };
+    }
+
+    /**
+     * @return sequential stream of elements in order of ordered index
+     * @throws IllegalArgumentException if property is not an ordered index of this collection
+     */
+    public Stream<E> stream(IndexDefinition<E> property) {
+        Objects.requireNonNull(property);
+        var index = sortedIndex(property);
+        var spliterator = new PositionsSpliterator<>(offset -> elements.get(index.position(offset)), null, 0,
+                index.offset(index.keyCount()), Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+        return StreamSupport.stream(spliterator, false);
+    }
+
+    /**
+     * @return unmodifiable list of elements in insertion order
+     */
+    public List<E> list() {
+        return elements;
+    }
+
+    /**
+     * @return unmodifiable list of elements in order of ordered index
+     * @throws IllegalArgumentException if property is not an ordered index of this collection
+     */
+    public List<E> list(IndexDefinition<E> property) {
+        Objects.requireNonNull(property);
+        var index = sortedIndex(property);
+        return Collections.unmodifiableList(collect(index, 0, index.keyCount()));
+    }
+
+    /**
+     * Estimates heap occupied by snapshot, key objects shared by several indices are counted once.
+     *
+     * @see MultiIndexIndexedCollection#footprint()
+     */
+    public Footprint footprint() {
+        var maps = 0L;
+        var postingLists = 0L;
+        var keys = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (FrozenIndex<E> index : indicesByProperty.values()) {
+            maps += index.mapBytes();
+            postingLists += index.postingListsBytes();
+            keys.addAll(index.keyObjects());
+        }
+        var keysBytes = keys.stream().mapToLong(MemoryLayout::value).sum();
+        var elementsBytes = elements instanceof SnapshotFile.MappedElements<E> mappedElements
+                ? mappedElements.estimatedBytes()
+                : MemoryLayout.object(MemoryLayout.REFERENCE + 1) + MemoryLayout.array(elements.size(),
+                MemoryLayout.REFERENCE);
+        return new Footprint(elementsBytes, maps, keysBytes, postingLists);
+    }
+
+    /**
+     * Writes snapshot to file that {@link #open(Path, Class, ElementCodec)} maps to memory, replacing existing file.
+     *
+     * @param codec serializer of elements
+     * @throws IllegalArgumentException if a key is neither {@code null}, string nor boxed primitive, or encoded
+     *                                  elements exceed 2 GB
+     */
+    public void save(Path path, ElementCodec<E> codec) throws IOException {
+        Objects.requireNonNull(path);
+        Objects.requireNonNull(codec);
+        var indices = new ArrayList<FrozenIndex<E>>(propertyEnumConstants.size());
+        for (IndexDefinition<E> propertyEnumConstant : propertyEnumConstants) {
+            indices.add(indicesByProperty.get(propertyEnumConstant));
+        }
+        SnapshotFile.write(path, elements, propertyEnumConstants, indices, codec);
+    }
+
+    /**
+     * Maps snapshot written by {@link #save(Path, ElementCodec)} to memory and queries it in place: elements are
+     * decoded on access and positions of indices are read from disk on demand, only keys are loaded to heap. So
+     * opening takes time proportional to the number of distinct keys rather than elements.
+     *
+     * @param searchablePropertyEnumClass enum of indices that snapshot was saved with
+     * @param codec                       serializer of elements that snapshot was saved with
+     * @throws IllegalArgumentException if snapshot was saved with other indices
+     * @throws IOException              if file is not a snapshot or cannot be read
+     */
+    public static <E> FrozenMultiIndexIndexedCollection<E> open(
+            Path path, Class<? extends IndexDefinition<E>> searchablePropertyEnumClass, ElementCodec<E> codec)
+            throws IOException {
+        Objects.requireNonNull(path);
+        Objects.requireNonNull(searchablePropertyEnumClass);
+        Objects.requireNonNull(codec);
+        if (!searchablePropertyEnumClass.isEnum()) {
+            var message = "%s must be enum that extends %s".formatted(searchablePropertyEnumClass,
+                    IndexDefinition.class.getName());
+            throw new IllegalArgumentException(message);
+        }
+        return SnapshotFile.open(path, List.of(searchablePropertyEnumClass.getEnumConstants()), codec);
+    }
+
+    public boolean isEmpty() {
+        return elements.isEmpty();
+    }
+
+    public int size() {
+        return elements.size();
+    }
+
+    public int size(IndexDefinition<E> property, Object value) {
+        Objects.requireNonNull(property);
+        var index = indicesByProperty.get(property);
+        return index == null ? 0 : size(index, index.keyNumber(value));
+    }
+
+    public int size(IndexDefinition<E> property, int value) {
+        Objects.requireNonNull(property);
+        var index = indicesByProperty.get(property);
+        return index == null ? 0 : size(index, index.keyNumber(value));
+    }
+
+    public int size(IndexDefinition<E> property, long value) {
+        Objects.requireNonNull(property);
+        var index = indicesByProperty.get(property);
+        return index == null ? 0 : size(index, index.keyNumber(value));
+    }
+
+    private int size(FrozenIndex<E> index, int keyNumber) {
+        return keyNumber < 0 ? 0 : index.offset(keyNumber + 1) - index.offset(keyNumber);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        FrozenMultiIndexIndexedCollection<?> that = (FrozenMultiIndexIndexedCollection<?>) o;
+
+        // indices are derived from elements
+        return elements.equals(that.elements) && propertyEnumConstants.equals(that.propertyEnumConstants);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(elements, propertyEnumConstants);
+    }
+}
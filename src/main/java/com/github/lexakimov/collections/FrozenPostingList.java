@@ -0,0 +1,164 @@
+package com.github.lexakimov.collections;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import java.nio.IntBuffer;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.IntConsumer;
+
+/**
+ * Read-only view of ascending positions of one key of {@link FrozenIndex}: a slice of buffer shared by all keys of
+ * index, which wraps array on heap or memory-mapped file.
+ */
+final class FrozenPostingList extends PostingList {
+
+    private final IntBuffer positions;
+
+    private final int from;
+
+    private final int to;
+
+    FrozenPostingList(IntBuffer positions, int from, int to) {
+        this.positions = positions;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    PostingList add(int position) {
+        throw new UnsupportedOperationException("posting list of frozen index is immutable");
+    }
+
+    @Override
+    boolean remove(int position) {
+        throw new UnsupportedOperationException("posting list of frozen index is immutable");
+    }
+
+    @Override
+    int size() {
+        return to - from;
+    }
+
+    @Override
+    void forEach(IntConsumer action) {
+        for (int i = from; i < to; i++) {
+            action.accept(positions.get(i));
+        }
+    }
+
+    @Override
+    int first() {
+        return from < to ? positions.get(from) : -1;
+    }
+
+    @Override
+    int get(int index) {
+        Objects.checkIndex(index, size());
+        return positions.get(from + index);
+    }
+
+    @Override
+    IntIterator iterator() {
+        return new IntIterator() {
+            private int cursor = from;
+
+            @Override
+            public boolean hasNext() {
+                return cursor < to;
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return positions.get(cursor++);
+            }
+        };
+    }
+
+    @Override
+    IntArrayList toPositions() {
+        var result = new int[size()];
+        positions.get(from, result);
+        return IntArrayList.wrap(result);
+    }
+
+    @Override
+    void retainIn(IntArrayList candidates) {
+        candidates.size(filter(candidates, true, false));
+    }
+
+    @Override
+    int countContained(IntArrayList candidates) {
+        return filter(candidates, true, true);
+    }
+
+    @Override
+    void removeFrom(IntArrayList candidates) {
+        candidates.size(filter(candidates, false, false));
+    }
+
+    /**
+     * @param countOnly whether to leave candidates as they are and only count those that pass
+     * @return number of candidates that pass, they are moved to the beginning of candidates unless only counted
+     */
+    private int filter(IntArrayList candidates, boolean retainContained, boolean countOnly) {
+        var candidatesArray = candidates.elements();
+        var candidatesSize = candidates.size();
+        var cursor = from;
+        var j = 0;
+        for (int i = 0; i < candidatesSize; i++) {
+            var candidate = candidatesArray[i];
+            cursor = advance(cursor, candidate);
+            var contained = cursor < to && positions.get(cursor) == candidate;
+            if (contained == retainContained) {
+                if (!countOnly) {
+                    candidatesArray[j] = candidate;
+                }
+                j++;
+            }
+        }
+        return j;
+    }
+
+    /**
+     * Galloping search, see {@link ArrayPostingList#advance(int[], int, int, int)}.
+     *
+     * @return index of the first position not less than target, starting from given index
+     */
+    private int advance(int start, int target) {
+        var step = 1;
+        var low = start;
+        var high = start;
+        while (high < to && positions.get(high) < target) {
+            low = high + 1;
+            high += step;
+            step <<= 1;
+        }
+        high = Math.min(high, to);
+        while (low < high) {
+            var mid = (low + high) >>> 1;
+            if (positions.get(mid) < target) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return size of view itself, positions belong to {@link FrozenIndex}
+     */
+    @Override
+    long estimatedBytes() {
+        return MemoryLayout.object(MemoryLayout.REFERENCE + 2 * Integer.BYTES);
+    }
+
+    @Override
+    void remap(int[] newPositions) {
+        throw new UnsupportedOperationException("posting list of frozen index is immutable");
+    }
+}
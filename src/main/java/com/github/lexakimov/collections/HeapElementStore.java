@@ -0,0 +1,78 @@
+package com.github.lexakimov.collections;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * Storage of element objects in {@link ArrayList}.
+ */
+final class HeapElementStore<E> extends ElementStore<E> {
+
+    private final ArrayList<E> elements = new ArrayList<>();
+
+    @Override
+    public E get(int index) {
+        return elements.get(index);
+    }
+
+    @Override
+    public E set(int index, E element) {
+        return elements.set(index, element);
+    }
+
+    @Override
+    public boolean add(E element) {
+        return elements.add(element);
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends E> c) {
+        return elements.addAll(c);
+    }
+
+    @Override
+    public int size() {
+        return elements.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return elements.contains(o);
+    }
+
+    @Override
+    public void clear() {
+        elements.clear();
+    }
+
+    @Override
+    void truncate(int size) {
+        elements.subList(size, elements.size()).clear();
+    }
+
+    @Override
+    boolean isLive(int position) {
+        return elements.get(position) != null;
+    }
+
+    @Override
+    int[] compact() {
+        var newPositions = new int[elements.size()];
+        var j = 0;
+        for (int i = 0; i < elements.size(); i++) {
+            var element = elements.get(i);
+            if (element != null) {
+                elements.set(j, element);
+                newPositions[i] = j++;
+            }
+        }
+        elements.subList(j, elements.size()).clear();
+        return newPositions;
+    }
+
+    @Override
+    long estimatedBytes() {
+        return MemoryLayout.object(MemoryLayout.REFERENCE + 2 * Integer.BYTES)
+                + MemoryLayout.array(elements.size(), MemoryLayout.REFERENCE);
+    }
+}
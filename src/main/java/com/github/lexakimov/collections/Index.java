@@ -0,0 +1,163 @@
+package com.github.lexakimov.collections;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Storage of one {@link IndexDefinition}: maps keys extracted from elements to posting lists of their positions.
+ */
+abstract class Index<E> {
+
+    protected final IndexDefinition<E> definition;
+
+    private final PostingListType postingListType;
+
+    Index(IndexDefinition<E> definition) {
+        this.definition = definition;
+        this.postingListType = definition.getPostingListType();
+    }
+
+    static <E> Index<E> create(IndexDefinition<E> definition) {
+        if (definition.isOrdered()) {
+            return new OrderedIndex<>(definition);
+        }
+        if (definition.isMultiValued()) {
+            return new MapIndex<>(definition);
+        }
+        if (definition.getIntFunc() != null) {
+            return new IntIndex<>(definition);
+        }
+        if (definition.getLongFunc() != null) {
+            return new LongIndex<>(definition);
+        }
+        return new MapIndex<>(definition);
+    }
+
+    IndexDefinition<E> definition() {
+        return definition;
+    }
+
+    protected PostingList newPostingList() {
+        return PostingList.create(postingListType);
+    }
+
+    abstract void add(E element, int position);
+
+    /**
+     * Adds positions of other index of the same definition, all of them greater than positions in this index. Posting
+     * list of every key of other index is appended by one lookup, or taken as is if key is new.
+     */
+    abstract void append(Index<E> other);
+
+    /**
+     * Marks position of element as removed in posting list of its key.
+     */
+    abstract void remove(E element, int position);
+
+    /**
+     * Moves position of element from posting list of its old key to posting list of new key, if key changed.
+     *
+     * @return {@code true} if key changed
+     */
+    abstract boolean update(E oldElement, E newElement, int position);
+
+    /**
+     * @return posting list of key or {@code null} if there are no elements with such key
+     */
+    abstract PostingList get(Object key);
+
+    /**
+     * @return posting list of key of element or {@code null} if there are no elements with such key
+     */
+    abstract PostingList postingListOf(E element);
+
+    /**
+     * @return key of element, primitive keys are boxed
+     */
+    abstract Object key(E element);
+
+    /**
+     * Passes every key that element is posted under to action.
+     */
+    void forEachKey(E element, Consumer<Object> action) {
+        action.accept(key(element));
+    }
+
+    /**
+     * @return empty map that considers keys equal the same way as this index
+     */
+    <V> Map<Object, V> newKeyMap() {
+        return new HashMap<>();
+    }
+
+    PostingList get(int key) {
+        return get((Object) key);
+    }
+
+    PostingList get(long key) {
+        return get((Object) key);
+    }
+
+    /**
+     * Detaches posting list of key from index.
+     *
+     * @return detached posting list or {@code null} if there are no elements with such key
+     */
+    abstract PostingList removeKey(Object key);
+
+    abstract Collection<PostingList> postingLists();
+
+    /**
+     * Passes every key, primitive keys boxed, with its posting list to action in iteration order of index.
+     */
+    abstract void forEach(BiConsumer<Object, PostingList> action);
+
+    abstract void clear();
+
+    /**
+     * @return estimated number of bytes occupied by index, except key objects, which are usually shared with elements
+     */
+    long estimatedBytes() {
+        return mapBytes() + postingListsBytes();
+    }
+
+    long mapBytes() {
+        return (long) postingLists().size() * entryBytes();
+    }
+
+    long postingListsBytes() {
+        var result = 0L;
+        for (PostingList postingList : postingLists()) {
+            result += postingList.estimatedBytes();
+        }
+        return result;
+    }
+
+    /**
+     * @return estimated overhead of storing one key in index
+     */
+    abstract int entryBytes();
+
+    /**
+     * @return key objects stored by index, empty for indices of unboxed keys
+     */
+    Collection<?> keyObjects() {
+        return List.of();
+    }
+
+    /**
+     * Makes index store canonical instances of keys: existing keys are replaced and new ones are interned on add.
+     * Keys of primitive indices are unboxed, so nothing to intern there.
+     */
+    void internKeys(KeyInterner interner) {
+    }
+
+    /**
+     * @return immutable copy of index in compact layout
+     */
+    abstract FrozenIndex<E> freeze();
+}
@@ -1,6 +1,9 @@
 package com.github.lexakimov.collections;
 
+import java.util.Comparator;
 import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
 
 /**
  * @author akimov
@@ -8,4 +11,90 @@ import java.util.function.Function;
  */
 public interface IndexDefinition<E> {
     Function<E, Object> getFunc();
+
+    /**
+     * Key extractor of composite index over several properties, for example:
+     * <pre>{@code
+     * FULL_NAME(IndexDefinition.composite(Person::firstName, Person::lastName))
+     * }</pre>
+     * Keys are {@link Tuple}s, so combination of values is found by one lookup, e.g.
+     * {@code searchByProperty(FULL_NAME, Tuple.of("Caleb", "Smith"))}. Ordered composite index also serves search
+     * by leading values, see {@link MultiIndexIndexedCollection#searchPrefix(IndexDefinition, Object...)}.
+     *
+     * @param components extractors of values of key in order of significance
+     */
+    @SafeVarargs
+    static <E> Function<E, Object> composite(Function<? super E, ?>... components) {
+        var functions = components.clone();
+        if (functions.length == 0) {
+            throw new IllegalArgumentException("composite index needs at least one component");
+        }
+        return element -> {
+            var values = new Object[functions.length];
+            for (int i = 0; i < functions.length; i++) {
+                values[i] = functions[i].apply(element);
+            }
+            return new Tuple(values, false);
+        };
+    }
+
+    /**
+     * Ordered index keeps keys sorted, so it can serve range queries, min/max and iteration in key order.
+     */
+    default boolean isOrdered() {
+        return false;
+    }
+
+    /**
+     * @return comparator of keys for ordered index or {@code null} for natural order
+     */
+    default Comparator<?> getComparator() {
+        return null;
+    }
+
+    /**
+     * Int extractor lets index store keys unboxed, so neither adding element nor searching by int value allocates
+     * key objects. Not applicable to ordered index.
+     *
+     * @return extractor of int key or {@code null} if keys are not ints
+     */
+    default ToIntFunction<E> getIntFunc() {
+        return null;
+    }
+
+    /**
+     * Long extractor lets index store keys unboxed. Not applicable to ordered index.
+     *
+     * @return extractor of long key or {@code null} if keys are not longs
+     * @see #getIntFunc()
+     */
+    default ToLongFunction<E> getLongFunc() {
+        return null;
+    }
+
+    /**
+     * Multi-valued index takes result of {@link #getFunc()} as collection of keys, for example tags of element, and
+     * posts element under each distinct one, so element is found by any of its keys. {@code null} or empty
+     * collection means that element has no keys. Range search and iteration in key order of ordered multi-valued
+     * index meet element once per each of its keys. Int and long extractors are not applicable.
+     */
+    default boolean isMultiValued() {
+        return false;
+    }
+
+    /**
+     * Lazy index is not maintained until the first query over it, which builds it over existing elements, so
+     * rarely queried index costs nothing on add until then. See also
+     * {@link MultiIndexIndexedCollection#enableIdleIndexRelease(java.time.Duration)}.
+     */
+    default boolean isLazy() {
+        return false;
+    }
+
+    /**
+     * @return representation of lists of element positions stored under each key
+     */
+    default PostingListType getPostingListType() {
+        return PostingListType.AUTO;
+    }
 }
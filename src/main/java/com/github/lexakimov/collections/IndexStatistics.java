@@ -0,0 +1,48 @@
+package com.github.lexakimov.collections;
+
+import java.util.Arrays;
+
+/**
+ * Shape and usage of one index.
+ *
+ * @param distinctKeys              number of keys
+ * @param postingListSizeHistogram  number of keys by buckets of number of their elements: bucket i holds keys with
+ *                                  from 2<sup>i</sup> to 2<sup>i+1</sup>-1 elements
+ * @param maxPostingListSize        the greatest number of elements under one key
+ * @param p99PostingListSize        number of elements under one key that 99% of keys do not exceed
+ * @param estimatedBytes            estimated memory occupied by index, except key objects
+ * @param hits                      number of lookups that found at least one element
+ * @param misses                    number of lookups that found nothing
+ * @param lookupLatency             latency of searches, checks and counts by value of property, lookups by
+ *                                  conditions of {@link Query} are timed as part of query
+ */
+public record IndexStatistics(int distinctKeys, long[] postingListSizeHistogram, int maxPostingListSize,
+                              int p99PostingListSize, long estimatedBytes, long hits, long misses,
+                              LatencyStatistics lookupLatency) {
+
+    private static final int BUCKETS = 32;
+
+    static IndexStatistics of(Index<?> index, long hits, long misses, LatencyStatistics lookupLatency) {
+        var postingLists = index.postingLists();
+        var sizes = new int[postingLists.size()];
+        var histogram = new long[BUCKETS];
+        var i = 0;
+        for (PostingList postingList : postingLists) {
+            var size = postingList.size();
+            sizes[i++] = size;
+            histogram[31 - Integer.numberOfLeadingZeros(Math.max(size, 1))]++;
+        }
+        Arrays.sort(sizes);
+        var max = sizes.length == 0 ? 0 : sizes[sizes.length - 1];
+        var p99 = sizes.length == 0 ? 0 : sizes[(int) Math.ceil(sizes.length * 0.99) - 1];
+        return new IndexStatistics(sizes.length, histogram, max, p99, index.estimatedBytes(), hits, misses,
+                lookupLatency);
+    }
+
+    /**
+     * @return number of searches and checks by value of property
+     */
+    public long lookups() {
+        return hits + misses;
+    }
+}
@@ -0,0 +1,129 @@
+package com.github.lexakimov.collections;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.BiConsumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * Index of int keys extracted by {@link IndexDefinition#getIntFunc()}. Keys are stored unboxed in open-addressing
+ * hash map, so neither adding nor searching by int value allocates key objects.
+ */
+final class IntIndex<E> extends Index<E> {
+
+    private final ToIntFunction<E> func;
+
+    private final Int2ObjectOpenHashMap<PostingList> postingListsByKey = new Int2ObjectOpenHashMap<>();
+
+    IntIndex(IndexDefinition<E> definition) {
+        super(definition);
+        this.func = definition.getIntFunc();
+    }
+
+    @Override
+    void add(E element, int position) {
+        add(func.applyAsInt(element), position);
+    }
+
+    private void add(int key, int position) {
+        var postingList = postingListsByKey.get(key);
+        var updated = postingList == null ? newPostingList().add(position) : postingList.add(position);
+        if (updated != postingList) {
+            postingListsByKey.put(key, updated);
+        }
+    }
+
+    @Override
+    void append(Index<E> other) {
+        ((IntIndex<E>) other).postingListsByKey.int2ObjectEntrySet().fastForEach(entry -> {
+            var key = entry.getIntKey();
+            var target = postingListsByKey.get(key);
+            postingListsByKey.put(key, target == null ? entry.getValue() : target.appendAll(entry.getValue()));
+        });
+    }
+
+    @Override
+    void remove(E element, int position) {
+        remove(func.applyAsInt(element), position);
+    }
+
+    private void remove(int key, int position) {
+        var postingList = postingListsByKey.get(key);
+        if (postingList != null && postingList.remove(position) && postingList.isEmpty()) {
+            postingListsByKey.remove(key);
+        }
+    }
+
+    @Override
+    boolean update(E oldElement, E newElement, int position) {
+        int oldKey = func.applyAsInt(oldElement);
+        int newKey = func.applyAsInt(newElement);
+        if (oldKey == newKey) {
+            return false;
+        }
+        remove(oldKey, position);
+        add(newKey, position);
+        return true;
+    }
+
+    @Override
+    Object key(E element) {
+        return func.applyAsInt(element);
+    }
+
+    @Override
+    PostingList postingListOf(E element) {
+        return postingListsByKey.get(func.applyAsInt(element));
+    }
+
+    @Override
+    PostingList get(Object key) {
+        return key instanceof Integer value ? postingListsByKey.get(value.intValue()) : null;
+    }
+
+    @Override
+    PostingList get(int key) {
+        return postingListsByKey.get(key);
+    }
+
+    @Override
+    PostingList removeKey(Object key) {
+        return key instanceof Integer value ? postingListsByKey.remove(value.intValue()) : null;
+    }
+
+    @Override
+    void forEach(BiConsumer<Object, PostingList> action) {
+        postingListsByKey.int2ObjectEntrySet().fastForEach(entry -> action.accept(entry.getIntKey(), entry.getValue()));
+    }
+
+    @Override
+    Collection<PostingList> postingLists() {
+        return postingListsByKey.values();
+    }
+
+    @Override
+    void clear() {
+        postingListsByKey.clear();
+    }
+
+    /**
+     * Key and value slots of open-addressing table at default load factor.
+     */
+    @Override
+    int entryBytes() {
+        return 11;
+    }
+
+    @Override
+    FrozenIndex<E> freeze() {
+        var keys = postingListsByKey.keySet().toIntArray();
+        Arrays.sort(keys);
+        var postingLists = new ArrayList<PostingList>(keys.length);
+        for (int key : keys) {
+            postingLists.add(postingListsByKey.get(key));
+        }
+        return FrozenIndex.ofInts(keys, postingLists);
+    }
+}
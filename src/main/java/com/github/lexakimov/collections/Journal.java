@@ -0,0 +1,367 @@
+package com.github.lexakimov.collections;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Write-ahead journal that makes modifications of {@link MultiIndexIndexedCollection} durable without rewriting
+ * whole collection.
+ * <p>
+ * Directory of journal holds the last snapshot of collection, see {@link FrozenMultiIndexIndexedCollection#save},
+ * and segments of journal with modifications made after it. {@link #open} loads snapshot, replays segments on top
+ * of it and then appends every {@code add}, {@code addAll}, {@code remove}, {@code update}, {@code replace} and
+ * {@code clear} of collection to a new segment. Appending only copies record to memory, records are written to disk
+ * in batches by background thread, see {@link #sync()} to wait until they are durable.
+ * <p>
+ * Once segment grows above given size, collection is frozen and snapshot of it is saved by background thread, then
+ * segments covered by snapshot are deleted. Snapshot and segments are numbered, so a crash at any moment of
+ * checkpoint neither loses nor repeats modifications. Freezing is done by the modification that filled segment, in
+ * the thread that made it: it compacts collection and copies all elements and indices, decoding every element of
+ * off-heap collection, so that one modification takes time proportional to size of collection. To keep such pauses
+ * off latency-sensitive writes, pass large checkpoint size and call {@link #checkpoint()} at a convenient moment.
+ * <p>
+ * Like collection itself, journal is not thread-safe: collection must be modified, and journal synced and
+ * checkpointed, by one thread at a time.
+ */
+public final class Journal<E> implements Closeable {
+
+    public static final long DEFAULT_CHECKPOINT_BYTES = 64L << 20;
+
+    private static final Pattern SEGMENT = Pattern.compile("journal-(\\d+)\\.log");
+
+    private static final Pattern SNAPSHOT = Pattern.compile("snapshot-(\\d+)");
+
+    private static final byte ADD = 1;
+    private static final byte REMOVE = 2;
+    private static final byte CLEAR = 3;
+    private static final byte UPDATE = 4;
+
+    private final Path directory;
+
+    private final MultiIndexIndexedCollection<E> collection;
+
+    private final ElementCodec<E> codec;
+
+    private final ElementEncoder<E> encoder;
+
+    private final Map<String, IndexDefinition<E>> propertiesByName = new HashMap<>();
+
+    private final long checkpointBytes;
+
+    private final ExecutorService checkpointer = Executors.newSingleThreadExecutor(runnable -> {
+        var thread = new Thread(runnable, "journal-checkpointer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private CompletableFuture<Void> lastCheckpoint = CompletableFuture.completedFuture(null);
+
+    /**
+     * Number of current segment, greater than numbers of all existing segments and snapshots.
+     */
+    private long segment;
+
+    private JournalWriter writer;
+
+    private Journal(Path directory, MultiIndexIndexedCollection<E> collection, ElementCodec<E> codec,
+                    long checkpointBytes) {
+        this.directory = directory;
+        this.collection = collection;
+        this.codec = codec;
+        this.encoder = new ElementEncoder<>(codec);
+        this.checkpointBytes = checkpointBytes;
+        for (IndexDefinition<E> property : collection.properties()) {
+            propertiesByName.put(((Enum<?>) property).name(), property);
+        }
+    }
+
+    /**
+     * @see #open(Path, MultiIndexIndexedCollection, ElementCodec, long)
+     */
+    public static <E> Journal<E> open(Path directory, MultiIndexIndexedCollection<E> collection,
+                                      ElementCodec<E> codec) throws IOException {
+        return open(directory, collection, codec, DEFAULT_CHECKPOINT_BYTES);
+    }
+
+    /**
+     * Restores collection from snapshot and journal in directory, creating directory if needed, and starts
+     * journaling modifications of collection.
+     * <p>
+     * Only elements are taken from snapshot: indices saved with it are not reused, every element is added to
+     * collection anew, so restoring takes time of indexing all elements, like {@code addAll} of them.
+     *
+     * @param collection      empty collection to restore, with the same indices as journaled one
+     * @param codec           serializer of elements
+     * @param checkpointBytes size of segment that triggers checkpoint by modification that reached it, see
+     *                        {@link #checkpoint()} for its cost
+     * @throws IllegalArgumentException if collection is not empty, already journaled or has index that is not enum
+     *                                  constant
+     */
+    public static <E> Journal<E> open(Path directory, MultiIndexIndexedCollection<E> collection,
+                                      ElementCodec<E> codec, long checkpointBytes) throws IOException {
+        Objects.requireNonNull(directory);
+        Objects.requireNonNull(collection);
+        Objects.requireNonNull(codec);
+        if (!collection.isEmpty()) {
+            throw new IllegalArgumentException("collection must be empty");
+        }
+        if (collection.journal() != null) {
+            throw new IllegalArgumentException("collection is already journaled");
+        }
+        for (IndexDefinition<E> property : collection.properties()) {
+            if (!(property instanceof Enum<?>)) {
+                throw new IllegalArgumentException("index %s is not enum constant".formatted(property));
+            }
+        }
+        if (checkpointBytes <= 0) {
+            throw new IllegalArgumentException("checkpointBytes must be positive");
+        }
+        Files.createDirectories(directory);
+        var journal = new Journal<>(directory, collection, codec, checkpointBytes);
+        journal.recover();
+        collection.journal(journal);
+        return journal;
+    }
+
+    private void recover() throws IOException {
+        var snapshot = latest(SNAPSHOT);
+        if (snapshot >= 0) {
+            var frozen = SnapshotFile.open(snapshot(snapshot), collection.properties(), codec);
+            // indices of snapshot are rebuilt rather than restored, mutable indices cannot adopt frozen ones
+            collection.addAll(frozen.list());
+        }
+        var segments = numbers(SEGMENT);
+        for (long number : segments) {
+            if (number > snapshot) {
+                replay(segment(number));
+            }
+        }
+        segment = Math.max(snapshot, segments.isEmpty() ? -1 : segments.get(segments.size() - 1)) + 1;
+        writer = new JournalWriter(segment(segment));
+        deleteCoveredBy(snapshot);
+    }
+
+    private void replay(Path path) throws IOException {
+        var batch = new ArrayList<E>();
+        JournalWriter.read(path, record -> {
+            var type = record.get();
+            if (type == ADD) {
+                batch.add(codec.decode(record.asReadOnlyBuffer()));
+                return;
+            }
+            collection.addAll(batch);
+            batch.clear();
+            if (type == REMOVE) {
+                var name = new byte[record.getInt()];
+                record.get(name);
+                var property = propertiesByName.get(new String(name, StandardCharsets.UTF_8));
+                if (property == null) {
+                    throw new IllegalArgumentException("journal has unknown index %s".formatted(
+                            new String(name, StandardCharsets.UTF_8)));
+                }
+                collection.remove(property, SnapshotFile.readKey(record));
+            } else if (type == UPDATE) {
+                var oldLength = record.getInt();
+                var oldElement = codec.decode(record.slice(record.position(), oldLength));
+                var newElement = codec.decode(record.position(record.position() + oldLength).slice());
+                collection.update(oldElement, newElement);
+            } else if (type == CLEAR) {
+                collection.clear();
+            }
+        });
+        collection.addAll(batch);
+    }
+
+    /**
+     * Encodes record before collection is modified, so modification that cannot be journaled, for example because
+     * codec fails, is not applied either. The same holds for other modifications.
+     *
+     * @return appender of record to run once element is added, valid until the next record is encoded
+     */
+    Runnable added(E element) {
+        var payload = encoder.encode(element);
+        return () -> append(ADD, payload);
+    }
+
+    /**
+     * @return appender of records to run once elements are added
+     */
+    Runnable addedAll(Collection<? extends E> elements) {
+        var payloads = new ArrayList<ByteBuffer>(elements.size());
+        for (E element : elements) {
+            var encoded = encoder.encode(element);
+            payloads.add(ByteBuffer.allocate(encoded.remaining()).put(encoded).flip());
+        }
+        return () -> {
+            for (ByteBuffer payload : payloads) {
+                writer.append(ADD, payload);
+            }
+            checkpointIfNeeded();
+        };
+    }
+
+    /**
+     * @return appender of record to run once elements are removed
+     * @throws IllegalArgumentException if value is not a supported key, see {@link SnapshotFile}
+     */
+    Runnable removed(IndexDefinition<E> property, Object value) {
+        var bytes = new ByteArrayOutputStream();
+        try (var out = new DataOutputStream(bytes)) {
+            var name = ((Enum<?>) property).name().getBytes(StandardCharsets.UTF_8);
+            out.writeInt(name.length);
+            out.write(name);
+            SnapshotFile.writeKey(out, value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        var payload = ByteBuffer.wrap(bytes.toByteArray());
+        return () -> append(REMOVE, payload);
+    }
+
+    /**
+     * Journals update as old element followed by new one, so replay finds element by value.
+     *
+     * @return appender of record to run once element is replaced
+     */
+    Runnable updated(E oldElement, E newElement) {
+        var encodedOldElement = encoder.encode(oldElement);
+        var oldBytes = new byte[encodedOldElement.remaining()];
+        encodedOldElement.get(oldBytes);
+        var encodedNewElement = encoder.encode(newElement);
+        var payload = ByteBuffer.allocate(Integer.BYTES + oldBytes.length + encodedNewElement.remaining())
+                .putInt(oldBytes.length)
+                .put(oldBytes)
+                .put(encodedNewElement)
+                .flip();
+        return () -> append(UPDATE, payload);
+    }
+
+    void cleared() {
+        append(CLEAR, ByteBuffer.allocate(0));
+    }
+
+    private void append(byte type, ByteBuffer payload) {
+        writer.append(type, payload);
+        checkpointIfNeeded();
+    }
+
+    /**
+     * Freezes collection on path of modification, see {@link #checkpoint()}.
+     */
+    private void checkpointIfNeeded() {
+        if (writer.size() >= checkpointBytes) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Waits until all modifications journaled so far are written and synced to disk.
+     */
+    public void sync() throws IOException {
+        writer.sync();
+    }
+
+    /**
+     * Freezes collection, switches journal to a new segment and saves snapshot in background, after that segments
+     * covered by snapshot are deleted. Freezing takes time proportional to size of collection, everything else is
+     * done by background thread.
+     *
+     * @return future completed once snapshot is saved and covered segments are deleted
+     */
+    public CompletableFuture<Void> checkpoint() {
+        var frozen = collection.freeze();
+        var covered = segment;
+        try {
+            writer.close();
+            segment++;
+            writer = new JournalWriter(segment(segment));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        lastCheckpoint = CompletableFuture.runAsync(() -> {
+            try {
+                // save returns once snapshot is synced to disk, only then covered segments may go
+                frozen.save(snapshot(covered), codec);
+                deleteCoveredBy(covered);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, checkpointer);
+        return lastCheckpoint;
+    }
+
+    /**
+     * Deletes snapshots and segments older than given snapshot.
+     */
+    private void deleteCoveredBy(long snapshot) throws IOException {
+        for (long number : numbers(SEGMENT)) {
+            if (number <= snapshot) {
+                Files.deleteIfExists(segment(number));
+            }
+        }
+        for (long number : numbers(SNAPSHOT)) {
+            if (number < snapshot) {
+                Files.deleteIfExists(snapshot(number));
+            }
+        }
+    }
+
+    /**
+     * Syncs journal, waits for checkpoint in progress and stops journaling modifications of collection.
+     */
+    @Override
+    public void close() throws IOException {
+        collection.journal(null);
+        try {
+            writer.close();
+            lastCheckpoint.join();
+        } finally {
+            checkpointer.shutdown();
+        }
+    }
+
+    private Path segment(long number) {
+        return directory.resolve("journal-%019d.log".formatted(number));
+    }
+
+    private Path snapshot(long number) {
+        return directory.resolve("snapshot-%019d".formatted(number));
+    }
+
+    private long latest(Pattern pattern) throws IOException {
+        var numbers = numbers(pattern);
+        return numbers.isEmpty() ? -1 : numbers.get(numbers.size() - 1);
+    }
+
+    /**
+     * @return ascending numbers of files whose names match pattern
+     */
+    private List<Long> numbers(Pattern pattern) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> pattern.matcher(file.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(matcher -> Long.parseLong(matcher.group(1)))
+                    .sorted()
+                    .toList();
+        }
+    }
+}
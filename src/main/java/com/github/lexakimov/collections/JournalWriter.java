@@ -0,0 +1,249 @@
+package com.github.lexakimov.collections;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Appends records to one segment file of {@link Journal} with group commit: records are copied to memory buffer and
+ * returned immediately, while background thread writes everything accumulated so far by one write and one
+ * {@link FileChannel#force(boolean)}. So the cost of syncing is shared by all records of a batch.
+ * <p>
+ * Each record is {@code int} length of payload, {@code int} CRC32 of payload and payload itself. Record torn by
+ * crash fails length or checksum check, so reading stops at it.
+ */
+final class JournalWriter implements Closeable {
+
+    /**
+     * Size of buffered records above which appending waits for background thread to take them.
+     */
+    private static final int MAX_PENDING_BYTES = 16 << 20;
+
+    private static final int RECORD_HEADER_BYTES = 2 * Integer.BYTES;
+
+    private final FileChannel channel;
+
+    private final Thread flusher;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Signalled when records are appended or writer is closed.
+     */
+    private final Condition appended = lock.newCondition();
+
+    /**
+     * Signalled when batch is taken by background thread or becomes durable.
+     */
+    private final Condition flushed = lock.newCondition();
+
+    private final CRC32 crc = new CRC32();
+
+    private ByteBuffer pending = ByteBuffer.allocate(1 << 16);
+
+    private ByteBuffer flushing = ByteBuffer.allocate(1 << 16);
+
+    private long appendedBytes;
+
+    private long durableBytes;
+
+    private boolean closed;
+
+    private IOException failure;
+
+    JournalWriter(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        // records synced to segment are lost by crash if segment itself is not in directory
+        SnapshotFile.syncDirectory(path.toAbsolutePath().getParent());
+        this.flusher = new Thread(this::flushLoop, "journal-writer-" + path.getFileName());
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * @param type    first byte of payload
+     * @param payload rest of payload between its position and limit
+     * @throws UncheckedIOException if previous batch could not be written
+     */
+    void append(byte type, ByteBuffer payload) {
+        var recordBytes = RECORD_HEADER_BYTES + 1 + payload.remaining();
+        lock.lock();
+        try {
+            while (pending.position() > MAX_PENDING_BYTES && failure == null && !closed) {
+                flushed.awaitUninterruptibly();
+            }
+            checkState();
+            if (pending.remaining() < recordBytes) {
+                var grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + recordBytes));
+                pending = grown.put(pending.flip());
+            }
+            var start = pending.position();
+            pending.position(start + RECORD_HEADER_BYTES);
+            pending.put(type).put(payload);
+            crc.reset();
+            crc.update(pending.slice(start + RECORD_HEADER_BYTES, recordBytes - RECORD_HEADER_BYTES));
+            pending.putInt(start, recordBytes - RECORD_HEADER_BYTES)
+                    .putInt(start + Integer.BYTES, (int) crc.getValue());
+            appendedBytes += recordBytes;
+            appended.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of bytes appended to segment
+     */
+    long size() {
+        lock.lock();
+        try {
+            return appendedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until all appended records are written and synced to disk.
+     */
+    void sync() throws IOException {
+        lock.lock();
+        try {
+            var target = appendedBytes;
+            while (durableBytes < target && failure == null) {
+                flushed.awaitUninterruptibly();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void checkState() {
+        if (failure != null) {
+            throw new UncheckedIOException(failure);
+        }
+        if (closed) {
+            throw new IllegalStateException("journal is closed");
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            long batchEnd;
+            lock.lock();
+            try {
+                while (pending.position() == 0 && !closed) {
+                    appended.awaitUninterruptibly();
+                }
+                if (pending.position() == 0) {
+                    return;
+                }
+                var batch = pending;
+                pending = flushing;
+                flushing = batch;
+                batchEnd = appendedBytes;
+                flushed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                flushing.flip();
+                while (flushing.hasRemaining()) {
+                    channel.write(flushing);
+                }
+                channel.force(false);
+                flushing.clear();
+            } catch (IOException e) {
+                lock.lock();
+                try {
+                    failure = e;
+                    flushed.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                return;
+            }
+
+            lock.lock();
+            try {
+                durableBytes = batchEnd;
+                flushed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Syncs appended records and closes segment file.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closed = true;
+            appended.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while closing journal", e);
+        } finally {
+            channel.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    interface RecordConsumer {
+        void accept(ByteBuffer payload) throws IOException;
+    }
+
+    /**
+     * Passes payload of every intact record of segment to consumer, stops at the first torn or corrupted record.
+     */
+    static void read(Path path, RecordConsumer consumer) throws IOException {
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            var crc = new CRC32();
+            var remaining = Files.size(path);
+            while (remaining >= RECORD_HEADER_BYTES) {
+                var length = in.readInt();
+                var checksum = in.readInt();
+                remaining -= RECORD_HEADER_BYTES;
+                if (length <= 0 || length > remaining) {
+                    return;
+                }
+                var payload = new byte[length];
+                in.readFully(payload);
+                remaining -= length;
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    return;
+                }
+                consumer.accept(ByteBuffer.wrap(payload));
+            }
+        } catch (EOFException e) {
+            // torn record at the end of segment
+        }
+    }
+}
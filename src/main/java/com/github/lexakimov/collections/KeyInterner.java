@@ -0,0 +1,50 @@
+package com.github.lexakimov.collections;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pool of canonical instances of keys shared by all indices of collection, so equal keys produced by different
+ * elements or different indices are stored once. Only immutable values are interned: strings and boxed primitives.
+ * Pool is thread-safe because indices are filled in parallel by bulk add.
+ * <p>
+ * Keys stay in pool until collection is cleared, even if all elements with them are removed.
+ */
+final class KeyInterner {
+
+    /**
+     * {@link ConcurrentHashMap} node and its share of table.
+     */
+    private static final int ENTRY_BYTES = 37;
+
+    private final Map<Object, Object> instances = new ConcurrentHashMap<>();
+
+    /**
+     * @return instance equal to key that was interned first, or key itself if it is not an immutable value
+     */
+    @SuppressWarnings("unchecked")
+    <T> T intern(T key) {
+        if (!isValue(key)) {
+            return key;
+        }
+        var instance = instances.putIfAbsent(key, key);
+        return instance == null ? key : (T) instance;
+    }
+
+    private static boolean isValue(Object key) {
+        return key instanceof String || key instanceof Integer || key instanceof Long || key instanceof Short
+                || key instanceof Byte || key instanceof Double || key instanceof Float || key instanceof Character
+                || key instanceof Boolean;
+    }
+
+    void clear() {
+        instances.clear();
+    }
+
+    /**
+     * @return estimated size of pool itself, interned keys are counted by their users
+     */
+    long estimatedBytes() {
+        return (long) instances.size() * ENTRY_BYTES;
+    }
+}
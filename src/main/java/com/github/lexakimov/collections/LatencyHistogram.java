@@ -0,0 +1,36 @@
+package com.github.lexakimov.collections;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of durations with buckets of powers of two nanoseconds. Recording costs two increments of striped
+ * counters and never allocates.
+ */
+final class LatencyHistogram {
+
+    private final LongAdder[] buckets = new LongAdder[LatencyStatistics.BUCKETS];
+
+    private final LongAdder totalNanos = new LongAdder();
+
+    LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    void record(long nanos) {
+        var bucket = Math.min(64 - Long.numberOfLeadingZeros(Math.max(nanos, 0)), buckets.length - 1);
+        buckets[bucket].increment();
+        totalNanos.add(nanos);
+    }
+
+    LatencyStatistics snapshot() {
+        var histogram = new long[buckets.length];
+        var count = 0L;
+        for (int i = 0; i < buckets.length; i++) {
+            histogram[i] = buckets[i].sum();
+            count += histogram[i];
+        }
+        return new LatencyStatistics(count, totalNanos.sum(), histogram);
+    }
+}
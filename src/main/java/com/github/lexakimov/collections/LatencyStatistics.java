@@ -0,0 +1,39 @@
+package com.github.lexakimov.collections;
+
+/**
+ * Durations of operations of one kind.
+ *
+ * @param count      number of operations
+ * @param totalNanos total duration of operations
+ * @param histogram  number of operations by buckets of duration: bucket 0 holds operations that took 0 ns, bucket i
+ *                   those that took from 2<sup>i-1</sup> to 2<sup>i</sup>-1 ns
+ */
+public record LatencyStatistics(long count, long totalNanos, long[] histogram) {
+
+    static final int BUCKETS = 48;
+
+    static final LatencyStatistics EMPTY = new LatencyStatistics(0, 0, new long[BUCKETS]);
+
+    public double meanNanos() {
+        return count == 0 ? 0 : (double) totalNanos / count;
+    }
+
+    /**
+     * @param percentile from 0 to 100
+     * @return upper bound of duration of given percentile of operations, or 0 if there were no operations
+     */
+    public long percentileNanos(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be from 0 to 100, but was " + percentile);
+        }
+        var rank = (long) Math.ceil(count * percentile / 100);
+        var seen = 0L;
+        for (int i = 0; i < histogram.length; i++) {
+            seen += histogram[i];
+            if (seen >= rank && seen > 0) {
+                return i == 0 ? 0 : (1L << i) - 1;
+            }
+        }
+        return 0;
+    }
+}
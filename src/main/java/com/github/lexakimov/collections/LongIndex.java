@@ -0,0 +1,135 @@
+package com.github.lexakimov.collections;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.BiConsumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Index of long keys extracted by {@link IndexDefinition#getLongFunc()}. Keys are stored unboxed in open-addressing
+ * hash map, so neither adding nor searching by long value allocates key objects.
+ */
+final class LongIndex<E> extends Index<E> {
+
+    private final ToLongFunction<E> func;
+
+    private final Long2ObjectOpenHashMap<PostingList> postingListsByKey = new Long2ObjectOpenHashMap<>();
+
+    LongIndex(IndexDefinition<E> definition) {
+        super(definition);
+        this.func = definition.getLongFunc();
+    }
+
+    @Override
+    void add(E element, int position) {
+        add(func.applyAsLong(element), position);
+    }
+
+    private void add(long key, int position) {
+        var postingList = postingListsByKey.get(key);
+        var updated = postingList == null ? newPostingList().add(position) : postingList.add(position);
+        if (updated != postingList) {
+            postingListsByKey.put(key, updated);
+        }
+    }
+
+    @Override
+    void append(Index<E> other) {
+        ((LongIndex<E>) other).postingListsByKey.long2ObjectEntrySet().fastForEach(entry -> {
+            var key = entry.getLongKey();
+            var target = postingListsByKey.get(key);
+            postingListsByKey.put(key, target == null ? entry.getValue() : target.appendAll(entry.getValue()));
+        });
+    }
+
+    @Override
+    void remove(E element, int position) {
+        remove(func.applyAsLong(element), position);
+    }
+
+    private void remove(long key, int position) {
+        var postingList = postingListsByKey.get(key);
+        if (postingList != null && postingList.remove(position) && postingList.isEmpty()) {
+            postingListsByKey.remove(key);
+        }
+    }
+
+    @Override
+    boolean update(E oldElement, E newElement, int position) {
+        long oldKey = func.applyAsLong(oldElement);
+        long newKey = func.applyAsLong(newElement);
+        if (oldKey == newKey) {
+            return false;
+        }
+        remove(oldKey, position);
+        add(newKey, position);
+        return true;
+    }
+
+    @Override
+    Object key(E element) {
+        return func.applyAsLong(element);
+    }
+
+    @Override
+    PostingList postingListOf(E element) {
+        return postingListsByKey.get(func.applyAsLong(element));
+    }
+
+    @Override
+    PostingList get(Object key) {
+        return key instanceof Long value ? postingListsByKey.get(value.longValue()) : null;
+    }
+
+    @Override
+    PostingList get(int key) {
+        return postingListsByKey.get(key);
+    }
+
+    @Override
+    PostingList get(long key) {
+        return postingListsByKey.get(key);
+    }
+
+    @Override
+    PostingList removeKey(Object key) {
+        return key instanceof Long value ? postingListsByKey.remove(value.longValue()) : null;
+    }
+
+    @Override
+    void forEach(BiConsumer<Object, PostingList> action) {
+        postingListsByKey.long2ObjectEntrySet()
+                .fastForEach(entry -> action.accept(entry.getLongKey(), entry.getValue()));
+    }
+
+    @Override
+    Collection<PostingList> postingLists() {
+        return postingListsByKey.values();
+    }
+
+    @Override
+    void clear() {
+        postingListsByKey.clear();
+    }
+
+    /**
+     * Key and value slots of open-addressing table at default load factor.
+     */
+    @Override
+    int entryBytes() {
+        return 16;
+    }
+
+    @Override
+    FrozenIndex<E> freeze() {
+        var keys = postingListsByKey.keySet().toLongArray();
+        Arrays.sort(keys);
+        var postingLists = new ArrayList<PostingList>(keys.length);
+        for (long key : keys) {
+            postingLists.add(postingListsByKey.get(key));
+        }
+        return FrozenIndex.ofLongs(keys, postingLists);
+    }
+}
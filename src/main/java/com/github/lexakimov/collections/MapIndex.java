@@ -0,0 +1,228 @@
+package com.github.lexakimov.collections;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Index backed by a map of arbitrary keys, {@link HashMap} by default.
+ */
+class MapIndex<E> extends Index<E> {
+
+    private final Function<E, Object> func;
+
+    private final boolean multiValued;
+
+    /**
+     * MAP[PROPERTY_VALUE: LIST[indices of elements...]]
+     */
+    protected final Map<Object, PostingList> postingListsByKey;
+
+    /**
+     * {@code null} unless keys are interned.
+     */
+    private KeyInterner interner;
+
+    MapIndex(IndexDefinition<E> definition) {
+        this(definition, new HashMap<>());
+    }
+
+    protected MapIndex(IndexDefinition<E> definition, Map<Object, PostingList> postingListsByKey) {
+        super(definition);
+        this.func = definition.getFunc();
+        this.multiValued = definition.isMultiValued();
+        this.postingListsByKey = postingListsByKey;
+    }
+
+    @Override
+    void add(E element, int position) {
+        if (multiValued) {
+            for (Object key : keys(element)) {
+                addKey(key, position);
+            }
+        } else {
+            addKey(func.apply(element), position);
+        }
+    }
+
+    /**
+     * @return distinct keys of element of multi-valued index, compared the same way as by index
+     */
+    private Collection<?> keys(E element) {
+        var value = func.apply(element);
+        if (value == null) {
+            return List.of();
+        }
+        if (!(value instanceof Collection<?> keys)) {
+            throw new IllegalArgumentException("multi-valued index %s must extract collection of keys, not %s"
+                    .formatted(definition, value.getClass().getName()));
+        }
+        if (keys.size() <= 1) {
+            return keys;
+        }
+        var distinctKeys = Collections.newSetFromMap(this.<Boolean>newKeyMap());
+        distinctKeys.addAll(keys);
+        return distinctKeys;
+    }
+
+    private void addKey(Object key, int position) {
+        var postingList = postingListsByKey.get(key);
+        if (postingList == null) {
+            postingList = newPostingList();
+            postingListsByKey.put(interner == null ? key : interner.intern(key), postingList);
+        }
+        var updated = postingList.add(position);
+        if (updated != postingList) {
+            postingListsByKey.put(key, updated);
+        }
+    }
+
+    @Override
+    void append(Index<E> other) {
+        other.forEach((key, postingList) -> {
+            var target = postingListsByKey.get(key);
+            postingListsByKey.put(key, target == null ? postingList : target.appendAll(postingList));
+        });
+    }
+
+    @Override
+    void remove(E element, int position) {
+        if (multiValued) {
+            for (Object key : keys(element)) {
+                removeKey(key, position);
+            }
+        } else {
+            removeKey(func.apply(element), position);
+        }
+    }
+
+    private void removeKey(Object key, int position) {
+        var postingList = postingListsByKey.get(key);
+        if (postingList != null && postingList.remove(position) && postingList.isEmpty()) {
+            postingListsByKey.remove(key);
+        }
+    }
+
+    @Override
+    boolean update(E oldElement, E newElement, int position) {
+        if (multiValued) {
+            return updateKeys(oldElement, newElement, position);
+        }
+        var oldKey = func.apply(oldElement);
+        var newKey = func.apply(newElement);
+        if (Objects.equals(oldKey, newKey)) {
+            return false;
+        }
+        removeKey(oldKey, position);
+        addKey(newKey, position);
+        return true;
+    }
+
+    /**
+     * Moves position only between posting lists of keys that element lost or gained.
+     */
+    private boolean updateKeys(E oldElement, E newElement, int position) {
+        var oldKeys = keys(oldElement);
+        var newKeys = keys(newElement);
+        var changed = false;
+        for (Object key : oldKeys) {
+            if (!newKeys.contains(key)) {
+                removeKey(key, position);
+                changed = true;
+            }
+        }
+        for (Object key : newKeys) {
+            if (!oldKeys.contains(key)) {
+                addKey(key, position);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    @Override
+    Object key(E element) {
+        return func.apply(element);
+    }
+
+    @Override
+    void forEachKey(E element, Consumer<Object> action) {
+        if (multiValued) {
+            keys(element).forEach(action);
+        } else {
+            action.accept(func.apply(element));
+        }
+    }
+
+    /**
+     * Posting list of multi-valued index is the one of any key of element.
+     */
+    @Override
+    PostingList postingListOf(E element) {
+        if (multiValued) {
+            var keys = keys(element);
+            return keys.isEmpty() ? null : postingListsByKey.get(keys.iterator().next());
+        }
+        return postingListsByKey.get(func.apply(element));
+    }
+
+    @Override
+    PostingList get(Object key) {
+        return postingListsByKey.get(key);
+    }
+
+    @Override
+    PostingList removeKey(Object key) {
+        return postingListsByKey.remove(key);
+    }
+
+    @Override
+    void forEach(BiConsumer<Object, PostingList> action) {
+        postingListsByKey.forEach(action);
+    }
+
+    @Override
+    Collection<PostingList> postingLists() {
+        return postingListsByKey.values();
+    }
+
+    @Override
+    Collection<?> keyObjects() {
+        return postingListsByKey.keySet();
+    }
+
+    @Override
+    void internKeys(KeyInterner interner) {
+        this.interner = interner;
+        var entries = new ArrayList<>(postingListsByKey.entrySet());
+        postingListsByKey.clear();
+        for (Map.Entry<Object, PostingList> entry : entries) {
+            postingListsByKey.put(interner.intern(entry.getKey()), entry.getValue());
+        }
+    }
+
+    @Override
+    void clear() {
+        postingListsByKey.clear();
+    }
+
+    /**
+     * {@link HashMap} node and its share of table at default load factor.
+     */
+    @Override
+    int entryBytes() {
+        return 37;
+    }
+
+    @Override
+    FrozenIndex<E> freeze() {
+        return FrozenIndex.hashed(postingListsByKey.keySet().toArray(), new ArrayList<>(postingListsByKey.values()));
+    }
+}
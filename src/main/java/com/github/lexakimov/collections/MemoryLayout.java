@@ -0,0 +1,63 @@
+package com.github.lexakimov.collections;
+
+/**
+ * Sizes of objects for memory estimates, assuming 64-bit JVM with compressed references and 8-byte alignment.
+ */
+final class MemoryLayout {
+
+    static final int OBJECT_HEADER = 12;
+
+    static final int ARRAY_HEADER = 16;
+
+    static final int REFERENCE = 4;
+
+    private MemoryLayout() {
+    }
+
+    /**
+     * @param fieldBytes total size of fields
+     * @return size of object with such fields
+     */
+    static long object(int fieldBytes) {
+        return align(OBJECT_HEADER + fieldBytes);
+    }
+
+    static long array(int length, int elementBytes) {
+        return align(ARRAY_HEADER + (long) length * elementBytes);
+    }
+
+    /**
+     * @return size of key object: exact for strings and boxed primitives, header only for other objects, whose fields
+     * are unknown
+     */
+    static long value(Object value) {
+        if (value instanceof String string) {
+            var latin1 = string.chars().allMatch(c -> c <= 0xFF);
+            return object(REFERENCE + Integer.BYTES + 2) + array(string.length(), latin1 ? 1 : 2);
+        }
+        if (value instanceof Long || value instanceof Double) {
+            return object(8);
+        }
+        if (value instanceof Integer || value instanceof Float) {
+            return object(4);
+        }
+        if (value instanceof Short || value instanceof Character) {
+            return object(2);
+        }
+        if (value instanceof Byte || value instanceof Boolean) {
+            return object(1);
+        }
+        if (value instanceof Tuple tuple) {
+            var bytes = object(REFERENCE + Integer.BYTES + 1) + array(tuple.size(), REFERENCE);
+            for (int i = 0; i < tuple.size(); i++) {
+                bytes += value(tuple.get(i));
+            }
+            return bytes;
+        }
+        return value == null ? 0 : object(0);
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+}
@@ -0,0 +1,105 @@
+package com.github.lexakimov.collections;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of {@link MultiIndexIndexedCollection} that exist only while statistics are enabled.
+ */
+final class Metrics<E> {
+
+    private final Map<IndexDefinition<E>, LongAdder> hits = new HashMap<>();
+
+    private final Map<IndexDefinition<E>, LongAdder> misses = new HashMap<>();
+
+    private final Map<IndexDefinition<E>, LatencyHistogram> lookups = new HashMap<>();
+
+    private final LatencyHistogram adds = new LatencyHistogram();
+
+    private final LatencyHistogram queries = new LatencyHistogram();
+
+    private final StatisticsListener<E> listener;
+
+    Metrics(List<IndexDefinition<E>> properties, StatisticsListener<E> listener) {
+        for (IndexDefinition<E> property : properties) {
+            hits.put(property, new LongAdder());
+            misses.put(property, new LongAdder());
+            lookups.put(property, new LatencyHistogram());
+        }
+        this.listener = listener;
+    }
+
+    /**
+     * Starts counting lookups by property registered after statistics were enabled.
+     */
+    void registered(IndexDefinition<E> property) {
+        hits.putIfAbsent(property, new LongAdder());
+        misses.putIfAbsent(property, new LongAdder());
+        lookups.putIfAbsent(property, new LatencyHistogram());
+    }
+
+    /**
+     * Counts lookup by key of equality condition of query, latency of which is recorded for query as a whole.
+     */
+    void lookedUp(IndexDefinition<E> property, boolean hit) {
+        var counter = hit ? hits.get(property) : misses.get(property);
+        if (counter != null) {
+            counter.increment();
+            listener.onLookup(property, hit);
+        }
+    }
+
+    /**
+     * Counts lookup by value of property and records its latency against property, without boxing value.
+     *
+     * @param start value of {@link System#nanoTime()} before lookup
+     */
+    void lookedUp(IndexDefinition<E> property, boolean hit, long start) {
+        var nanos = System.nanoTime() - start;
+        var latency = lookups.get(property);
+        if (latency != null) {
+            latency.record(nanos);
+        }
+        lookedUp(property, hit);
+    }
+
+    /**
+     * @param start value of {@link System#nanoTime()} before adding
+     */
+    void added(int count, long start) {
+        var nanos = System.nanoTime() - start;
+        adds.record(nanos);
+        listener.onAdd(count, nanos);
+    }
+
+    /**
+     * @param start value of {@link System#nanoTime()} before evaluation
+     */
+    void queried(Query<E> query, int found, long start) {
+        var nanos = System.nanoTime() - start;
+        queries.record(nanos);
+        listener.onQuery(query, found, nanos);
+    }
+
+    long hits(IndexDefinition<E> property) {
+        return hits.get(property).sum();
+    }
+
+    long misses(IndexDefinition<E> property) {
+        return misses.get(property).sum();
+    }
+
+    LatencyStatistics lookups(IndexDefinition<E> property) {
+        return lookups.get(property).snapshot();
+    }
+
+    LatencyStatistics adds() {
+        return adds.snapshot();
+    }
+
+    LatencyStatistics queries() {
+        return queries.snapshot();
+    }
+}
@@ -1,15 +1,38 @@
 package com.github.lexakimov.collections;
 
 import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.ints.IntIterators;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.AbstractList;
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
-import java.util.function.Function;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * @author akimov
@@ -17,18 +40,127 @@ import java.util.function.Function;
  */
 public class MultiIndexIndexedCollection<E> {
 
-    private final List<E> elements = new ArrayList<>();
+    /**
+     * Share of removed slots in elements storage that triggers compaction.
+     */
+    private static final double COMPACTION_THRESHOLD = 0.25;
+
+    /**
+     * Minimal number of elements added by {@link #addAll(Collection)} for which indices are built in parallel.
+     */
+    private static final int PARALLEL_ADD_THRESHOLD = 10_000;
+
+    /**
+     * Removed elements are replaced with {@code null} (tombstone) to keep positions of other elements stable.
+     */
+    private final ElementStore<E> elements;
+
+    private int removedCount;
+
+    /**
+     * Number of modifications, lets {@link SearchResult} detect that it became invalid.
+     */
+    private int modCount;
+
+    /**
+     * {@code null} while statistics are disabled, so hot path pays one field check.
+     */
+    private Metrics<E> metrics;
+
+    /**
+     * {@code null} unless keys are interned.
+     */
+    private KeyInterner keyInterner;
+
+    /**
+     * {@code null} unless modifications are journaled.
+     */
+    private Journal<E> journal;
+
+    /**
+     * {@code null} unless results are cached.
+     */
+    private ResultCache<E> resultCache;
 
-    private final List<IndexDefinition<E>> propertyEnumConstants = new LinkedList<>();
+    /**
+     * Called before compaction, while removed positions are still in place; {@code null} if not set.
+     */
+    private Runnable compactionListener;
+
+    /**
+     * Indexed properties in order of registration, including lazy ones whose indices are not built yet.
+     */
+    private final List<IndexDefinition<E>> registeredProperties = new LinkedList<>();
 
-    private final Map<IndexDefinition<E>, Function<E, ?>> getValueFunctions = new HashMap<>();
+    /**
+     * MAP[PROPERTY: INDEX[PROPERTY_VALUE: LIST[indices of elements...]]], only built indices, which are kept up to
+     * date on every modification.
+     */
+    private final Map<IndexDefinition<E>, Index<E>> indicesByProperty = new HashMap<>();
 
     /**
-     * MAP[PROPERTY: MAP[PROPERTY_VALUE: LIST[indices of elements...]]]
+     * {@link System#nanoTime()} of the last query over every built lazy index, {@code null} unless idle indices are
+     * released.
      */
-    private final Map<IndexDefinition<E>, Map<Object, IntArrayList>> indicesMapsByProperty = new HashMap<>();
+    private Map<IndexDefinition<E>, Long> lazyIndicesLastUsed;
+
+    private long idleIndexNanos;
+
+    private final QueryEvaluator<E> queryEvaluator = new QueryEvaluator<>() {
+        @Override
+        PostingList postingList(IndexDefinition<E> property, Object value) {
+            var index = index(property);
+            return index == null ? null : index.get(value);
+        }
+
+        @Override
+        IntArrayList livePositions() {
+            var result = new IntArrayList(size());
+            for (int i = 0; i < elements.size(); i++) {
+                if (elements.isLive(i)) {
+                    result.add(i);
+                }
+            }
+            return result;
+        }
+
+        @Override
+        int size() {
+            return MultiIndexIndexedCollection.this.size();
+        }
+    };
 
     public MultiIndexIndexedCollection(Class<? extends IndexDefinition<E>> searchablePropertyEnumClass) {
+        this(searchablePropertyEnumClass, ElementStore.onHeap());
+    }
+
+    /**
+     * Creates collection without indices, see {@link #addIndex(IndexDefinition)}.
+     */
+    public MultiIndexIndexedCollection() {
+        this(ElementStore.onHeap());
+    }
+
+    /**
+     * Creates collection that keeps elements encoded outside of heap, only indices stay on heap. Heap stays small
+     * regardless of the number of elements, while every access to element decodes it, so prefer
+     * {@link #search(IndexDefinition, Object)} that decodes elements only when they are read, and {@code count},
+     * {@code contains} and {@code size} methods that do not decode elements at all.
+     *
+     * @param codec serializer of elements
+     */
+    public MultiIndexIndexedCollection(Class<? extends IndexDefinition<E>> searchablePropertyEnumClass,
+                                       ElementCodec<E> codec) {
+        this(searchablePropertyEnumClass, ElementStore.offHeap(Objects.requireNonNull(codec)));
+    }
+
+    private MultiIndexIndexedCollection(ElementStore<E> elements) {
+        this.elements = elements;
+    }
+
+    private MultiIndexIndexedCollection(Class<? extends IndexDefinition<E>> searchablePropertyEnumClass,
+                                        ElementStore<E> elements) {
+        this(elements);
         Objects.requireNonNull(searchablePropertyEnumClass);
         if (!searchablePropertyEnumClass.isEnum()) {
             var message = "%s must be enum that extends %s".formatted(searchablePropertyEnumClass,
@@ -43,48 +175,382 @@ public class MultiIndexIndexedCollection<E> {
         }
 
         for (IndexDefinition<E> enumConstant : enumConstants) {
-            this.getValueFunctions.put(enumConstant, enumConstant.getFunc());
-            this.propertyEnumConstants.add(enumConstant);
+            if (!enumConstant.isLazy()) {
+                this.indicesByProperty.put(enumConstant, Index.create(enumConstant));
+            }
+            this.registeredProperties.add(enumConstant);
         }
     }
 
     public boolean add(E element) {
         Objects.requireNonNull(element);
+        var start = metrics == null ? 0 : System.nanoTime();
+        var journalRecord = journal == null ? null : journal.added(element);
+        if (lazyIndicesLastUsed != null) {
+            releaseIdleIndices();
+        }
         var elementIndex = elements.size();
-        updateIndices(element, elementIndex);
-        return elements.add(element);
+        // storage may fail to encode element, so it is appended before indices refer to its position
+        elements.add(element);
+        addToIndices(List.of(element), elementIndex);
+        modCount++;
+        if (metrics != null) {
+            metrics.added(1, start);
+        }
+        if (resultCache != null) {
+            invalidateResults(element);
+            resultCache.liveElementsChanged();
+        }
+        if (journalRecord != null) {
+            journalRecord.run();
+        }
+        return true;
+    }
+
+    /**
+     * Adds all elements with the same result as sequential {@link #add(Object)} of each one, but builds indices of
+     * large batch in parallel: one task per index in common {@link ForkJoinPool}.
+     *
+     * @return {@code true} if collection changed
+     * @throws NullPointerException if any of elements is {@code null}, in that case collection is not modified
+     */
+    public boolean addAll(Collection<? extends E> newElements) {
+        var batch = List.<E>copyOf(newElements);
+        if (batch.isEmpty()) {
+            return false;
+        }
+        var start = metrics == null ? 0 : System.nanoTime();
+        var journalRecord = journal == null ? null : journal.addedAll(batch);
+        if (lazyIndicesLastUsed != null) {
+            releaseIdleIndices();
+        }
+        var firstIndex = elements.size();
+        try {
+            elements.addAll(batch);
+        } catch (RuntimeException e) {
+            elements.truncate(firstIndex);
+            throw e;
+        }
+        addToIndices(batch, firstIndex);
+        modCount++;
+        if (metrics != null) {
+            metrics.added(batch.size(), start);
+        }
+        if (resultCache != null) {
+            batch.forEach(this::invalidateResults);
+            resultCache.liveElementsChanged();
+        }
+        if (journalRecord != null) {
+            journalRecord.run();
+        }
+        return true;
+    }
+
+    /**
+     * @see #addAll(Collection)
+     */
+    public boolean addAll(Stream<? extends E> newElements) {
+        return addAll(newElements.toList());
     }
 
-    private void updateIndices(E element, int elementIndex) {
-        for (IndexDefinition<E> propertyEnumConstant : propertyEnumConstants) {
-            var value = getValueFunctions.get(propertyEnumConstant).apply(element);
-            var indexMap = indicesMapsByProperty.computeIfAbsent(propertyEnumConstant, k -> new HashMap<>());
-            indexMap.computeIfAbsent(value, o -> new IntArrayList()).add(elementIndex);
+    /**
+     * Adds positions of elements just appended to storage to every index, in parallel for large batch. If any index
+     * fails, for example because property function throws, positions are removed from all indices and storage is
+     * truncated back, so collection stays as it was.
+     */
+    private void addToIndices(List<E> batch, int firstIndex) {
+        var indices = List.copyOf(indicesByProperty.values());
+        // number of elements added to every index
+        var added = new int[indices.size()];
+        try {
+            if (batch.size() < PARALLEL_ADD_THRESHOLD || indices.size() <= 1) {
+                for (int k = 0; k < indices.size(); k++) {
+                    addToIndex(indices, k, batch, firstIndex, added);
+                }
+            } else {
+                // indices are independent of each other, so each one is built by its own task without
+                // synchronization
+                var tasks = new ArrayList<ForkJoinTask<?>>(indices.size());
+                for (int k = 0; k < indices.size(); k++) {
+                    var indexNumber = k;
+                    tasks.add(ForkJoinTask.adapt(() -> addToIndex(indices, indexNumber, batch, firstIndex, added)));
+                }
+                try {
+                    ForkJoinTask.invokeAll(tasks);
+                } catch (RuntimeException e) {
+                    // tasks that already started keep running, indices are rolled back only after they finish
+                    tasks.forEach(ForkJoinTask::quietlyJoin);
+                    throw e;
+                }
+            }
+        } catch (RuntimeException e) {
+            for (int k = 0; k < indices.size(); k++) {
+                for (int i = 0; i < added[k]; i++) {
+                    indices.get(k).remove(batch.get(i), firstIndex + i);
+                }
+            }
+            elements.truncate(firstIndex);
+            throw e;
+        }
+    }
+
+    private static <E> void addToIndex(List<Index<E>> indices, int indexNumber, List<E> batch, int firstIndex,
+                                       int[] added) {
+        var index = indices.get(indexNumber);
+        for (int i = 0; i < batch.size(); i++) {
+            index.add(batch.get(i), firstIndex + i);
+            added[indexNumber] = i + 1;
         }
     }
 
     public boolean contains(E o) {
-        return elements.contains(o);
+        return o != null && elements.contains(o);
     }
 
     public boolean contains(IndexDefinition<E> property, Object value) {
         Objects.requireNonNull(property);
-        var indexMap = indicesMapsByProperty.getOrDefault(property, null);
-        if (indexMap == null) {
-            return false;
+        var start = metrics == null ? 0 : System.nanoTime();
+        var index = index(property);
+        var found = sizeOf(index == null ? null : index.get(value));
+        if (metrics != null) {
+            metrics.lookedUp(property, found > 0, start);
+        }
+        return found > 0;
+    }
+
+    /**
+     * Checks by int value without boxing it if property is indexed by {@link IndexDefinition#getIntFunc()}.
+     */
+    public boolean contains(IndexDefinition<E> property, int value) {
+        Objects.requireNonNull(property);
+        var start = metrics == null ? 0 : System.nanoTime();
+        var index = index(property);
+        var found = sizeOf(index == null ? null : index.get(value));
+        if (metrics != null) {
+            metrics.lookedUp(property, found > 0, start);
+        }
+        return found > 0;
+    }
+
+    /**
+     * Checks by long value without boxing it if property is indexed by {@link IndexDefinition#getLongFunc()}.
+     */
+    public boolean contains(IndexDefinition<E> property, long value) {
+        Objects.requireNonNull(property);
+        var start = metrics == null ? 0 : System.nanoTime();
+        var index = index(property);
+        var found = sizeOf(index == null ? null : index.get(value));
+        if (metrics != null) {
+            metrics.lookedUp(property, found > 0, start);
         }
-        var elementsIndices = indexMap.get(value);
-        return elementsIndices != null && !elementsIndices.isEmpty();
+        return found > 0;
     }
 
+    /**
+     * @return matched elements in insertion order, unmodifiable list shared by repeated searches while results are
+     * cached, see {@link #enableResultCache(int)}
+     */
     public List<E> searchByProperty(IndexDefinition<E> property, Object value) {
         Objects.requireNonNull(property);
-        var indexMap = indicesMapsByProperty.getOrDefault(property, null);
-        if (indexMap == null) {
-            return Collections.emptyList();
+        var start = metrics == null ? 0 : System.nanoTime();
+        var index = index(property);
+        List<E> result;
+        if (index == null) {
+            result = Collections.emptyList();
+        } else if (resultCache != null) {
+            result = resultCache.elements(Query.eq(property, value), query -> toList(index.get(value)));
+        } else {
+            result = toList(index.get(value));
+        }
+        if (metrics != null) {
+            metrics.lookedUp(property, result.size() > 0, start);
+        }
+        return result;
+    }
+
+    /**
+     * Searches by int value without boxing it if property is indexed by {@link IndexDefinition#getIntFunc()}.
+     */
+    public List<E> searchByProperty(IndexDefinition<E> property, int value) {
+        Objects.requireNonNull(property);
+        var start = metrics == null ? 0 : System.nanoTime();
+        var index = index(property);
+        var result = index == null ? Collections.<E>emptyList() : toList(index.get(value));
+        if (metrics != null) {
+            metrics.lookedUp(property, result.size() > 0, start);
+        }
+        return result;
+    }
+
+    /**
+     * Searches by long value without boxing it if property is indexed by {@link IndexDefinition#getLongFunc()}.
+     */
+    public List<E> searchByProperty(IndexDefinition<E> property, long value) {
+        Objects.requireNonNull(property);
+        var start = metrics == null ? 0 : System.nanoTime();
+        var index = index(property);
+        var result = index == null ? Collections.<E>emptyList() : toList(index.get(value));
+        if (metrics != null) {
+            metrics.lookedUp(property, result.size() > 0, start);
+        }
+        return result;
+    }
+
+    /**
+     * Searches one page of matched elements: only elements of the page are copied, the rest of matches is skipped.
+     *
+     * @param offset number of matched elements to skip
+     * @param limit  maximum number of returned elements
+     * @return matched elements in insertion order, starting from offset
+     * @throws IllegalArgumentException if offset or limit is negative
+     */
+    public List<E> searchByProperty(IndexDefinition<E> property, Object value, int offset, int limit) {
+        Objects.requireNonNull(property);
+        checkWindow(offset, limit);
+        var start = metrics == null ? 0 : System.nanoTime();
+        var index = index(property);
+        var elementsIndices = index == null ? null : index.get(value);
+        var found = sizeOf(elementsIndices);
+        var to = (int) Math.min((long) offset + limit, found);
+        var result = new ArrayList<E>(Math.max(to - offset, 0));
+        if (to > offset) {
+            var positions = elementsIndices.iterator();
+            positions.skip(offset);
+            for (int i = offset; i < to; i++) {
+                result.add(elements.get(positions.nextInt()));
+            }
+        }
+        if (metrics != null) {
+            metrics.lookedUp(property, found > 0, start);
+        }
+        return result;
+    }
+
+    private static void checkWindow(int offset, int limit) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("offset must not be negative");
+        }
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must not be negative");
+        }
+    }
+
+    /**
+     * Searches without copying: returned view reads index and elements storage directly, so it is created in O(1)
+     * and suits large results of which only a part is read.
+     *
+     * @return read-only view of matched elements in insertion order, valid until the next modification of
+     * collection
+     * @see #searchByProperty(IndexDefinition, Object)
+     */
+    public SearchResult<E> search(IndexDefinition<E> property, Object value) {
+        Objects.requireNonNull(property);
+        var start = metrics == null ? 0 : System.nanoTime();
+        var index = index(property);
+        var result = new SearchResult<>(this, index == null ? null : index.get(value));
+        if (metrics != null) {
+            metrics.lookedUp(property, result.size() > 0, start);
         }
+        return result;
+    }
+
+    public SearchResult<E> search(IndexDefinition<E> property, int value) {
+        Objects.requireNonNull(property);
+        var start = metrics == null ? 0 : System.nanoTime();
+        var index = index(property);
+        var result = new SearchResult<>(this, index == null ? null : index.get(value));
+        if (metrics != null) {
+            metrics.lookedUp(property, result.size() > 0, start);
+        }
+        return result;
+    }
+
+    public SearchResult<E> search(IndexDefinition<E> property, long value) {
+        Objects.requireNonNull(property);
+        var start = metrics == null ? 0 : System.nanoTime();
+        var index = index(property);
+        var result = new SearchResult<>(this, index == null ? null : index.get(value));
+        if (metrics != null) {
+            metrics.lookedUp(property, result.size() > 0, start);
+        }
+        return result;
+    }
+
+    private static int sizeOf(PostingList elementsIndices) {
+        return elementsIndices == null ? 0 : elementsIndices.size();
+    }
+
+    /**
+     * Counts lookups by every equality condition of query and records its latency, called only while statistics are
+     * enabled. Lookups are counted by keys of conditions rather than during evaluation, so query answered by result
+     * cache is counted the same way as evaluated one.
+     *
+     * @param start value of {@link System#nanoTime()} before evaluation
+     */
+    private void queried(Query<E> query, int found, long start) {
+        countLookups(query);
+        metrics.queried(query, found, start);
+    }
+
+    private void countLookups(Query<E> condition) {
+        if (condition instanceof Query.Equal<E> equal) {
+            var index = indicesByProperty.get(equal.property());
+            metrics.lookedUp(equal.property(), sizeOf(index == null ? null : index.get(equal.value())) > 0);
+        } else if (condition instanceof Query.And<E> and) {
+            and.queries().forEach(this::countLookups);
+        } else if (condition instanceof Query.Or<E> or) {
+            or.queries().forEach(this::countLookups);
+        } else if (condition instanceof Query.Not<E> not) {
+            countLookups(not.query());
+        }
+    }
+
+    List<IndexDefinition<E>> properties() {
+        return Collections.unmodifiableList(registeredProperties);
+    }
+
+    Journal<E> journal() {
+        return journal;
+    }
+
+    /**
+     * @param journal journal that every modification is appended to, or {@code null} to stop journaling
+     */
+    void journal(Journal<E> journal) {
+        this.journal = journal;
+    }
+
+    E element(int position) {
+        return elements.get(position);
+    }
 
-        var elementsIndices = indexMap.get(value);
+    boolean isLive(int position) {
+        return elements.isLive(position);
+    }
+
+    /**
+     * @return ascending positions of elements that match query
+     */
+    IntArrayList positions(Query<E> query) {
+        return queryEvaluator.evaluate(query);
+    }
+
+    /**
+     * @return ascending positions of all elements
+     */
+    IntArrayList livePositions() {
+        return queryEvaluator.livePositions();
+    }
+
+    void compactionListener(Runnable listener) {
+        this.compactionListener = listener;
+    }
+
+    int modCount() {
+        return modCount;
+    }
+
+    private List<E> toList(PostingList elementsIndices) {
         if (elementsIndices == null || elementsIndices.isEmpty()) {
             return Collections.emptyList();
         }
@@ -96,76 +562,1062 @@ public class MultiIndexIndexedCollection<E> {
         return result;
     }
 
-//        TODO conjunction search
-//        TODO передавать comparator
+    /**
+     * Searches elements which value of ordered property lies in range.
+     *
+     * @return matched elements in order of index
+     * @throws IllegalArgumentException if property is not an ordered index of this collection or from is greater
+     *                                  than to
+     */
+    public List<E> searchRange(IndexDefinition<E> property, Object from, boolean fromInclusive,
+                               Object to, boolean toInclusive) {
+        Objects.requireNonNull(property);
+        return collect(orderedIndex(property).range(from, fromInclusive, to, toInclusive));
+    }
+
+    /**
+     * Searches elements by leading values of ordered composite index, see
+     * {@link IndexDefinition#composite(java.util.function.Function[])}.
+     *
+     * @param values values of the first components of key
+     * @return matched elements in order of index
+     * @throws IllegalArgumentException if property is not an ordered index of this collection
+     */
+    public List<E> searchPrefix(IndexDefinition<E> property, Object... values) {
+        Objects.requireNonNull(property);
+        return collect(orderedIndex(property).prefix(Tuple.of(values)));
+    }
+
+    /**
+     * @see #searchStartsWith(IndexDefinition, String, int)
+     */
+    public List<E> searchStartsWith(IndexDefinition<E> property, String prefix) {
+        return searchStartsWith(property, prefix, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Searches elements which string value of ordered property starts with prefix, e.g. for autocompletion. Search
+     * takes logarithmic time plus time proportional to the number of returned elements. Index with comparator
+     * {@link String#CASE_INSENSITIVE_ORDER} matches prefix ignoring case.
+     *
+     * @param limit maximum number of returned elements
+     * @return matched elements in order of index
+     * @throws IllegalArgumentException if property is not an ordered index of this collection or limit is negative
+     * @throws ClassCastException       if keys of index are not strings
+     */
+    public List<E> searchStartsWith(IndexDefinition<E> property, String prefix, int limit) {
+        Objects.requireNonNull(property);
+        Objects.requireNonNull(prefix);
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must not be negative");
+        }
+        return collect(orderedIndex(property).startsWith(prefix), limit);
+    }
+
+    /**
+     * Searches elements which value of ordered property is greater than given value.
+     *
+     * @return matched elements in order of index
+     */
+    public List<E> searchGreaterThan(IndexDefinition<E> property, Object value, boolean inclusive) {
+        Objects.requireNonNull(property);
+        return collect(orderedIndex(property).tail(value, inclusive));
+    }
+
+    /**
+     * Searches elements which value of ordered property is less than given value.
+     *
+     * @return matched elements in order of index
+     */
+    public List<E> searchLessThan(IndexDefinition<E> property, Object value, boolean inclusive) {
+        Objects.requireNonNull(property);
+        return collect(orderedIndex(property).head(value, inclusive));
+    }
+
+    /**
+     * @return first added element among elements with the smallest value of ordered property
+     */
+    public Optional<E> min(IndexDefinition<E> property) {
+        Objects.requireNonNull(property);
+        var elementsIndices = orderedIndex(property).first();
+        return elementsIndices == null ? Optional.empty() : Optional.of(elements.get(elementsIndices.first()));
+    }
+
+    /**
+     * @return first added element among elements with the greatest value of ordered property
+     */
+    public Optional<E> max(IndexDefinition<E> property) {
+        Objects.requireNonNull(property);
+        var elementsIndices = orderedIndex(property).last();
+        return elementsIndices == null ? Optional.empty() : Optional.of(elements.get(elementsIndices.first()));
+    }
+
+    /**
+     * @return index of property, built first if property is lazy, or {@code null} if property is not registered
+     */
+    private Index<E> index(IndexDefinition<E> property) {
+        var index = indicesByProperty.get(property);
+        if (index == null) {
+            if (!registeredProperties.contains(property)) {
+                return null;
+            }
+            index = build(property);
+            indicesByProperty.put(property, index);
+        }
+        if (lazyIndicesLastUsed != null && property.isLazy()) {
+            lazyIndicesLastUsed.put(property, System.nanoTime());
+        }
+        return index;
+    }
+
+    /**
+     * Builds index of property over existing elements. Positions of large collection are split into ranges indexed
+     * by parallel tasks in common {@link ForkJoinPool}, then indices of ranges are appended in order.
+     */
+    private Index<E> build(IndexDefinition<E> property) {
+        var size = elements.size();
+        var parallelism = ForkJoinPool.getCommonPoolParallelism();
+        var rangeSize = Math.max(PARALLEL_ADD_THRESHOLD, (size + parallelism - 1) / parallelism);
+        Index<E> index;
+        if (size <= rangeSize) {
+            index = build(property, 0, size);
+        } else {
+            var tasks = new ArrayList<ForkJoinTask<Index<E>>>();
+            for (int from = 0; from < size; from += rangeSize) {
+                var rangeFrom = from;
+                var rangeTo = Math.min(size, from + rangeSize);
+                tasks.add(ForkJoinTask.adapt(() -> build(property, rangeFrom, rangeTo)));
+            }
+            ForkJoinTask.invokeAll(tasks);
+            index = tasks.get(0).join();
+            for (int i = 1; i < tasks.size(); i++) {
+                index.append(tasks.get(i).join());
+            }
+        }
+        if (keyInterner != null) {
+            index.internKeys(keyInterner);
+        }
+        return index;
+    }
+
+    private Index<E> build(IndexDefinition<E> property, int from, int to) {
+        var index = Index.create(property);
+        for (int i = from; i < to; i++) {
+            if (elements.isLive(i)) {
+                index.add(elements.get(i), i);
+            }
+        }
+        return index;
+    }
+
+    private OrderedIndex<E> orderedIndex(IndexDefinition<E> property) {
+        if (index(property) instanceof OrderedIndex<E> orderedIndex) {
+            return orderedIndex;
+        }
+        throw new IllegalArgumentException("%s is not an ordered index of collection".formatted(property));
+    }
+
+    private List<E> collect(Collection<PostingList> postingLists) {
+        var result = new ArrayList<E>();
+        for (PostingList elementsIndices : postingLists) {
+            elementsIndices.forEach(i -> result.add(elements.get(i)));
+        }
+        return result;
+    }
+
+    private List<E> collect(Collection<PostingList> postingLists, int limit) {
+        var result = new ArrayList<E>();
+        for (PostingList elementsIndices : postingLists) {
+            for (var positions = elementsIndices.iterator(); positions.hasNext(); ) {
+                if (result.size() == limit) {
+                    return result;
+                }
+                result.add(elements.get(positions.nextInt()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Searches elements that match query combining conditions over several properties, for example:
+     * <pre>{@code
+     * collection.search(Query.and(Query.eq(FIRST_NAME, "Caleb"), Query.eq(LAST_NAME, "Smith")));
+     * }</pre>
+     *
+     * @return matched elements in insertion order, unmodifiable list shared by repeated searches while results are
+     * cached, see {@link #enableResultCache(int)}
+     */
+    public List<E> search(Query<E> query) {
+        Objects.requireNonNull(query);
+        var start = metrics == null ? 0 : System.nanoTime();
+        var result = resultCache == null ? evaluate(query) : resultCache.elements(query, this::evaluate);
+        if (metrics != null) {
+            queried(query, result.size(), start);
+        }
+        return result;
+    }
+
+    /**
+     * Searches one page of elements that match query, see {@link #search(Query)}. Query is evaluated to positions,
+     * only elements of the page are copied.
+     *
+     * @param offset number of matched elements to skip
+     * @param limit  maximum number of returned elements
+     * @return matched elements in insertion order, starting from offset
+     * @throws IllegalArgumentException if offset or limit is negative
+     */
+    public List<E> search(Query<E> query, int offset, int limit) {
+        Objects.requireNonNull(query);
+        checkWindow(offset, limit);
+        var start = metrics == null ? 0 : System.nanoTime();
+        var elementsIndices = queryEvaluator.evaluate(query);
+        var to = (int) Math.min((long) offset + limit, elementsIndices.size());
+        var result = new ArrayList<E>(Math.max(to - offset, 0));
+        for (int i = offset; i < to; i++) {
+            result.add(elements.get(elementsIndices.getInt(i)));
+        }
+        if (metrics != null) {
+            queried(query, result.size(), start);
+        }
+        return result;
+    }
+
+    /**
+     * Searches one page of elements that match query in given order, e.g. top-K by some property. Matched elements
+     * are passed through bounded heap of {@code offset + limit} best ones, so matches are never sorted as a whole.
+     *
+     * @param comparator order of elements, equal elements keep insertion order
+     * @param offset     number of the best matched elements to skip
+     * @param limit      maximum number of returned elements
+     * @return matched elements in given order, starting from offset
+     * @throws IllegalArgumentException if offset or limit is negative
+     */
+    public List<E> search(Query<E> query, Comparator<? super E> comparator, int offset, int limit) {
+        Objects.requireNonNull(query);
+        Objects.requireNonNull(comparator);
+        checkWindow(offset, limit);
+        var start = metrics == null ? 0 : System.nanoTime();
+        var elementsIndices = queryEvaluator.evaluate(query);
+        var capacity = (int) Math.min((long) offset + limit, elementsIndices.size());
+        var result = new ArrayList<E>(Math.max(capacity - offset, 0));
+        if (capacity > offset) {
+            var order = Comparator.<Ranked<E>, E>comparing(Ranked::element, comparator)
+                    .thenComparingInt(Ranked::position);
+            var heap = new PriorityQueue<>(capacity, order.reversed());
+            elementsIndices.forEach(position -> {
+                var element = elements.get(position);
+                if (heap.size() < capacity) {
+                    heap.add(new Ranked<>(element, position));
+                } else if (comparator.compare(element, heap.peek().element()) < 0) {
+                    // matches come in insertion order, so equal element stays behind already kept one
+                    heap.poll();
+                    heap.add(new Ranked<>(element, position));
+                }
+            });
+            var ranked = new ArrayList<>(heap);
+            ranked.sort(order);
+            for (int i = offset; i < ranked.size(); i++) {
+                result.add(ranked.get(i).element());
+            }
+        }
+        if (metrics != null) {
+            queried(query, result.size(), start);
+        }
+        return result;
+    }
+
+    private record Ranked<E>(E element, int position) {
+    }
+
+    private List<E> evaluate(Query<E> query) {
+        var elementsIndices = queryEvaluator.evaluate(query);
+        var result = new ArrayList<E>(elementsIndices.size());
+        elementsIndices.forEach(i -> result.add(elements.get(i)));
+        return result;
+    }
+
+    /**
+     * @return number of elements that match query, computed without materializing elements
+     */
+    public int count(Query<E> query) {
+        Objects.requireNonNull(query);
+        var start = metrics == null ? 0 : System.nanoTime();
+        var result = resultCache == null
+                ? queryEvaluator.evaluate(query).size()
+                : resultCache.count(query, cachedQuery -> queryEvaluator.evaluate(cachedQuery).size());
+        if (metrics != null) {
+            queried(query, result, start);
+        }
+        return result;
+    }
+
+    /**
+     * Counts elements by every value of property from index alone, without reading elements.
+     *
+     * @return numbers of elements by values, in key order for ordered index
+     */
+    public Map<Object, Integer> countBy(IndexDefinition<E> property) {
+        Objects.requireNonNull(property);
+        var result = new LinkedHashMap<Object, Integer>();
+        var index = index(property);
+        if (index != null) {
+            index.forEach((key, elementsIndices) -> result.put(key, elementsIndices.size()));
+        }
+        return result;
+    }
+
+    /**
+     * Counts elements that match filter by every value of property, e.g. for facets of search results. Filter is
+     * evaluated to positions once, then they are intersected with posting list of every value, so elements are not
+     * read.
+     *
+     * @return numbers of matched elements by values, values without matched elements are omitted
+     */
+    public Map<Object, Integer> countBy(IndexDefinition<E> property, Query<E> filter) {
+        Objects.requireNonNull(property);
+        Objects.requireNonNull(filter);
+        var result = new LinkedHashMap<Object, Integer>();
+        var index = index(property);
+        if (index == null) {
+            return result;
+        }
+        var candidates = queryEvaluator.evaluate(filter);
+        if (candidates.isEmpty()) {
+            return result;
+        }
+        index.forEach((key, elementsIndices) -> {
+            var count = elementsIndices.countIn(candidates);
+            if (count > 0) {
+                result.put(key, count);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * @return values of property that at least one element has, in key order for ordered index
+     */
+    public Set<Object> distinctValues(IndexDefinition<E> property) {
+        Objects.requireNonNull(property);
+        var result = new LinkedHashSet<>();
+        var index = index(property);
+        if (index != null) {
+            index.forEach((key, elementsIndices) -> result.add(key));
+        }
+        return result;
+    }
+
+    /**
+     * Finds values of property shared by the most elements. Sizes of posting lists pass through bounded heap of
+     * limit values, so values are never sorted as a whole.
+     *
+     * @param limit maximum number of returned values
+     * @return values with numbers of elements, from the most frequent one; values of equal frequency follow in
+     * arbitrary order
+     * @throws IllegalArgumentException if limit is negative
+     */
+    public List<Map.Entry<Object, Integer>> mostFrequentValues(IndexDefinition<E> property, int limit) {
+        Objects.requireNonNull(property);
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must not be negative");
+        }
+        var index = index(property);
+        if (index == null || limit == 0) {
+            return new ArrayList<>();
+        }
+        var capacity = Math.max(1, Math.min(limit, index.postingLists().size()));
+        var heap = new PriorityQueue<Map.Entry<Object, Integer>>(capacity, Map.Entry.comparingByValue());
+        index.forEach((key, elementsIndices) -> {
+            var size = elementsIndices.size();
+            if (heap.size() < limit) {
+                heap.add(new AbstractMap.SimpleImmutableEntry<>(key, size));
+            } else if (size > heap.peek().getValue()) {
+                heap.poll();
+                heap.add(new AbstractMap.SimpleImmutableEntry<>(key, size));
+            }
+        });
+        var result = new ArrayList<>(heap);
+        result.sort(Map.Entry.<Object, Integer>comparingByValue().reversed());
+        return result;
+    }
 
     public Iterator<E> iterator() {
-        return elements.iterator();
+        return new Iterator<>() {
+            private int cursor = nextLive(0);
+
+            @Override
+            public boolean hasNext() {
+                return cursor < elements.size();
+            }
+
+            @Override
+            public E next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                var element = elements.get(cursor);
+                cursor = nextLive(cursor + 1);
+                return element;
+            }
+        };
+    }
+
+    private int nextLive(int from) {
+        var position = from;
+        while (position < elements.size() && !elements.isLive(position)) {
+            position++;
+        }
+        return position;
     }
 
+    /**
+     * @return iterator over elements in order of ordered index
+     * @throws IllegalArgumentException if property is not an ordered index of this collection
+     */
     public Iterator<E> iterator(IndexDefinition<E> property) {
         Objects.requireNonNull(property);
-        throw new UnsupportedOperationException("method does not implemented yet");
+        var postingLists = orderedIndex(property).postingLists().iterator();
+        return new Iterator<>() {
+            private IntIterator positions = IntIterators.EMPTY_ITERATOR;
+
+            @Override
+            public boolean hasNext() {
+                while (!positions.hasNext() && postingLists.hasNext()) {
+                    positions = postingLists.next().iterator();
+                }
+                return positions.hasNext();
+            }
+
+            @Override
+            public E next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return elements.get(positions.nextInt());
+            }
+        };
     }
 
-    public Iterator<E> stream(IndexDefinition<E> property) {
+    /**
+     * Stream is sized and splits evenly, so it may be turned to {@link Stream#parallel()}.
+     *
+     * @return sequential stream of elements in insertion order
+     */
+    public Stream<E> stream() {
+        var positions = removedCount == 0 ? null : queryEvaluator.livePositions().elements();
+        var spliterator = new PositionsSpliterator<>(elementsAccessor(), positions, 0, size(),
+                Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false);
+    }
+
+    /**
+     * Stream is sized and splits evenly, so it may be turned to {@link Stream#parallel()}.
+     *
+     * @return sequential stream of elements in order of ordered index
+     * @throws IllegalArgumentException if property is not an ordered index of this collection
+     */
+    public Stream<E> stream(IndexDefinition<E> property) {
         Objects.requireNonNull(property);
-        throw new UnsupportedOperationException("method does not implemented yet");
+        var positions = new IntArrayList(size());
+        for (PostingList elementsIndices : orderedIndex(property).postingLists()) {
+            elementsIndices.forEach(positions::add);
+        }
+        var spliterator = new PositionsSpliterator<>(elementsAccessor(), positions.elements(), 0, positions.size(),
+                Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false);
     }
 
+    /**
+     * @return accessor of elements by position that fails if collection is modified after it is created
+     */
+    private IntFunction<E> elementsAccessor() {
+        var expectedModCount = modCount;
+        return position -> {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            return elements.get(position);
+        };
+    }
+
+    /**
+     * Reads no more than {@link #stream()}: removed elements are skipped by copy of live positions, which is taken
+     * only if there are removed elements, and collection is never compacted.
+     *
+     * @return unmodifiable view of elements in insertion order, valid until the next modification of collection
+     */
     public List<E> list() {
-        return Collections.unmodifiableList(elements);
+        var positions = removedCount == 0 ? null : queryEvaluator.livePositions().elements();
+        return new ElementsView<>(elementsAccessor(), positions, size());
+    }
+
+    /**
+     * Elements by positions, or by their own indices if positions are {@code null}.
+     */
+    private static final class ElementsView<E> extends AbstractList<E> implements RandomAccess {
+
+        private final IntFunction<E> elements;
+
+        private final int[] positions;
+
+        private final int size;
+
+        ElementsView(IntFunction<E> elements, int[] positions, int size) {
+            this.elements = elements;
+            this.positions = positions;
+            this.size = size;
+        }
+
+        @Override
+        public E get(int index) {
+            Objects.checkIndex(index, size);
+            return elements.apply(positions == null ? index : positions[index]);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
     }
 
+    /**
+     * @return unmodifiable list of elements in order of ordered index
+     * @throws IllegalArgumentException if property is not an ordered index of this collection
+     */
     public List<E> list(IndexDefinition<E> property) {
         Objects.requireNonNull(property);
-        throw new UnsupportedOperationException("method does not implemented yet");
+        return Collections.unmodifiableList(collect(orderedIndex(property).postingLists()));
+    }
+
+    /**
+     * Lists one page of elements in order of ordered index. Posting lists of keys before the page are skipped whole
+     * and iteration stops at the end of the page.
+     *
+     * @param offset number of elements to skip
+     * @param limit  maximum number of returned elements
+     * @throws IllegalArgumentException if property is not an ordered index of this collection, or offset or limit is
+     *                                  negative
+     */
+    public List<E> list(IndexDefinition<E> property, int offset, int limit) {
+        Objects.requireNonNull(property);
+        checkWindow(offset, limit);
+        var result = new ArrayList<E>(Math.min(limit, size()));
+        var skipped = 0;
+        for (PostingList elementsIndices : orderedIndex(property).postingLists()) {
+            if (result.size() == limit) {
+                break;
+            }
+            var size = elementsIndices.size();
+            if (skipped + size <= offset) {
+                skipped += size;
+                continue;
+            }
+            var positions = elementsIndices.iterator();
+            positions.skip(offset - skipped);
+            skipped = offset;
+            while (positions.hasNext() && result.size() < limit) {
+                result.add(elements.get(positions.nextInt()));
+            }
+        }
+        return result;
     }
 
     /**
-     * TODO подумать над алгоритмом
+     * Removes all elements that have given value of property. Costs time proportional to the number of removed
+     * elements: their slots become tombstones and their positions are marked as removed in every other index.
+     * Storage is compacted once share of tombstones exceeds {@value #COMPACTION_THRESHOLD}.
+     *
+     * @return {@code true} if at least one element was removed
      */
     public boolean remove(IndexDefinition<E> property, Object value) {
         Objects.requireNonNull(property);
-        var indexMap = indicesMapsByProperty.getOrDefault(property, null);
-        if (indexMap == null) {
+        var index = index(property);
+        if (index == null) {
             return false;
         }
 
-        var elementsIndices = indexMap.get(value);
-        if (elementsIndices.isEmpty()) {
+        var found = index.get(value);
+        if (found == null || found.isEmpty()) {
             return false;
         }
+        var journalRecord = journal == null ? null : journal.removed(property, value);
+        var elementsIndices = index.removeKey(value);
 
-        var result = new ArrayList<E>(elementsIndices.size());
+        modCount++;
+        elementsIndices.forEach(i -> {
+            var element = elements.set(i, null);
+            removedCount++;
+            // element of multi-valued property is posted under its other keys of the same index as well
+            removeFromIndices(element, i, index.definition().isMultiValued() ? null : property);
+            if (resultCache != null) {
+                invalidateResults(element);
+            }
+        });
+        if (resultCache != null) {
+            resultCache.liveElementsChanged();
+        }
 
-        elementsIndices.forEach(i -> result.add(elements.get(i)));
+        if (removedCount > elements.size() * COMPACTION_THRESHOLD) {
+            compact();
+        }
+        if (journalRecord != null) {
+            journalRecord.run();
+        }
+        return true;
+    }
+
+    /**
+     * Replaces element equal to old one with new element at the same position. Only indices whose key of new element
+     * differs from key of old one are modified, so update costs time proportional to the number of changed keys
+     * rather than the number of indices.
+     *
+     * @return {@code false} if there is no element equal to old one
+     */
+    public boolean update(E oldElement, E newElement) {
+        Objects.requireNonNull(oldElement);
+        Objects.requireNonNull(newElement);
+        // element without keys of multi-valued index is not posted there, so such indices are not searched
+        var index = indicesByProperty.values().stream()
+                .filter(candidate -> !candidate.definition().isMultiValued())
+                .findFirst()
+                .orElse(null);
+        IntIterator candidates;
+        if (index == null) {
+            // no single-valued index is built, so element is looked for among all elements
+            candidates = queryEvaluator.livePositions().iterator();
+        } else {
+            var postingList = index.postingListOf(oldElement);
+            if (postingList == null) {
+                return false;
+            }
+            candidates = postingList.iterator();
+        }
+        for (var iterator = candidates; iterator.hasNext(); ) {
+            var position = iterator.nextInt();
+            var element = elements.get(position);
+            if (oldElement.equals(element)) {
+                updateAt(position, element, newElement);
+                return true;
+            }
+        }
+        return false;
+    }
 
+    /**
+     * Replaces the only element with given value of unique property with new element, see
+     * {@link #update(Object, Object)}.
+     *
+     * @return {@code false} if there is no element with such value
+     * @throws IllegalArgumentException if there are several elements with such value
+     */
+    public boolean replace(IndexDefinition<E> property, Object value, E newElement) {
+        Objects.requireNonNull(property);
+        Objects.requireNonNull(newElement);
+        var index = index(property);
+        var elementsIndices = index == null ? null : index.get(value);
+        if (elementsIndices == null || elementsIndices.isEmpty()) {
+            return false;
+        }
+        if (elementsIndices.size() > 1) {
+            throw new IllegalArgumentException("%d elements have %s = %s".formatted(elementsIndices.size(), property,
+                    value));
+        }
+        var position = elementsIndices.first();
+        updateAt(position, elements.get(position), newElement);
         return true;
     }
 
+    private void updateAt(int position, E oldElement, E newElement) {
+        var journalRecord = journal == null ? null : journal.updated(oldElement, newElement);
+        modCount++;
+        for (Index<E> index : indicesByProperty.values()) {
+            index.update(oldElement, newElement, position);
+        }
+        elements.set(position, newElement);
+        if (resultCache != null) {
+            invalidateResults(oldElement);
+            invalidateResults(newElement);
+            // results of negation hold old element even if its keys under negation did not change
+            resultCache.liveElementsChanged();
+        }
+        if (elements.garbageShare() > COMPACTION_THRESHOLD) {
+            compact();
+        }
+        if (journalRecord != null) {
+            journalRecord.run();
+        }
+    }
+
+    /**
+     * Drops cached results that may contain element or may have to contain it.
+     */
+    private void invalidateResults(E element) {
+        for (Index<E> index : indicesByProperty.values()) {
+            index.forEachKey(element, key -> resultCache.touched(index.definition(), key));
+        }
+    }
+
+    private void removeFromIndices(E element, int elementIndex, IndexDefinition<E> skippedProperty) {
+        for (Index<E> index : indicesByProperty.values()) {
+            if (index.definition() == skippedProperty) {
+                continue;
+            }
+            index.remove(element, elementIndex);
+        }
+    }
+
+    /**
+     * Drops tombstones left by removals and renumbers positions of remaining elements in every index. Off-heap storage
+     * also reclaims space of replaced elements, which it does by itself once they take
+     * {@value #COMPACTION_THRESHOLD} of it.
+     */
+    public void compact() {
+        if (removedCount == 0) {
+            if (elements.garbageShare() > 0) {
+                // positions do not change, only space of replaced elements is reclaimed
+                elements.compact();
+            }
+            return;
+        }
+        modCount++;
+        if (compactionListener != null) {
+            compactionListener.run();
+        }
+        var newPositions = elements.compact();
+        removedCount = 0;
+
+        for (Index<E> index : indicesByProperty.values()) {
+            for (PostingList elementsIndices : index.postingLists()) {
+                elementsIndices.remap(newPositions);
+            }
+        }
+    }
+
+    /**
+     * Builds immutable snapshot of collection for read-mostly workloads. Collection is compacted first and stays
+     * modifiable and independent of snapshot. Lazy indices that are not built yet are built for snapshot.
+     */
+    public FrozenMultiIndexIndexedCollection<E> freeze() {
+        compact();
+        var frozenIndices = new HashMap<IndexDefinition<E>, FrozenIndex<E>>();
+        for (IndexDefinition<E> property : registeredProperties) {
+            frozenIndices.put(property, index(property).freeze());
+        }
+        return new FrozenMultiIndexIndexedCollection<>(List.copyOf(elements), registeredProperties, frozenIndices);
+    }
+
+    /**
+     * Writes snapshot of collection to file, so that it can be opened without adding elements again.
+     *
+     * @see FrozenMultiIndexIndexedCollection#save(Path, ElementCodec)
+     * @see FrozenMultiIndexIndexedCollection#open(Path, Class, ElementCodec)
+     */
+    public void save(Path path, ElementCodec<E> codec) throws IOException {
+        freeze().save(path, codec);
+    }
+
     public void clear() {
-        indicesMapsByProperty.clear();
+        indicesByProperty.values().forEach(Index::clear);
+        if (keyInterner != null) {
+            keyInterner.clear();
+        }
         elements.clear();
+        removedCount = 0;
+        modCount++;
+        if (resultCache != null) {
+            resultCache.clear();
+        }
+        if (journal != null) {
+            journal.cleared();
+        }
+    }
+
+    /**
+     * Registers index of property, which may be any {@link IndexDefinition}, not only constant of enum given to
+     * constructor. Index is built over existing elements at once, or by the first query over property if it is
+     * {@link IndexDefinition#isLazy() lazy}, and is kept up to date afterwards.
+     *
+     * @throws IllegalArgumentException if property is already registered or collection is journaled
+     */
+    public void addIndex(IndexDefinition<E> property) {
+        Objects.requireNonNull(property);
+        checkNotJournaled();
+        if (registeredProperties.contains(property)) {
+            throw new IllegalArgumentException("index %s is already registered".formatted(property));
+        }
+        registeredProperties.add(property);
+        if (!property.isLazy()) {
+            indicesByProperty.put(property, build(property));
+        }
+        if (metrics != null) {
+            metrics.registered(property);
+        }
+        if (resultCache != null) {
+            // queries over property that was not indexed have found nothing
+            resultCache.clear();
+        }
+    }
+
+    /**
+     * Unregisters index of property and frees memory occupied by it, queries over property find nothing afterwards.
+     *
+     * @return {@code false} if property is not registered
+     * @throws IllegalArgumentException if collection is journaled
+     */
+    public boolean dropIndex(IndexDefinition<E> property) {
+        Objects.requireNonNull(property);
+        checkNotJournaled();
+        if (!registeredProperties.remove(property)) {
+            return false;
+        }
+        release(property);
+        return true;
+    }
+
+    /**
+     * Builds index of registered property anew from elements, for example to build lazy index ahead of the first
+     * query or to shrink index after many removals.
+     *
+     * @throws IllegalArgumentException if property is not registered
+     */
+    public void rebuildIndex(IndexDefinition<E> property) {
+        Objects.requireNonNull(property);
+        if (!registeredProperties.contains(property)) {
+            throw new IllegalArgumentException("index %s is not registered".formatted(property));
+        }
+        indicesByProperty.put(property, build(property));
+    }
+
+    /**
+     * Builds indices of all lazy properties, so that queries no longer modify collection.
+     */
+    void buildIndices() {
+        for (IndexDefinition<E> property : registeredProperties) {
+            index(property);
+        }
+    }
+
+    /**
+     * @return {@code true} if index of property is built and kept up to date
+     */
+    boolean isBuilt(IndexDefinition<E> property) {
+        return indicesByProperty.containsKey(property);
+    }
+
+    private void checkNotJournaled() {
+        if (journal != null) {
+            // journal is replayed into collection with indices of enum, so they must not change
+            throw new IllegalArgumentException("indices of journaled collection cannot be changed");
+        }
+    }
+
+    /**
+     * Starts releasing indices of {@link IndexDefinition#isLazy() lazy} properties that were not queried for given
+     * time, so that modifications stop paying for their maintenance. Released index stays registered and is built
+     * again by the next query over its property. Idle indices are looked for on every add.
+     *
+     * @throws IllegalArgumentException if idleTime is negative
+     */
+    public void enableIdleIndexRelease(Duration idleTime) {
+        Objects.requireNonNull(idleTime);
+        if (idleTime.isNegative()) {
+            throw new IllegalArgumentException("idleTime must not be negative");
+        }
+        idleIndexNanos = idleTime.toNanos();
+        lazyIndicesLastUsed = new HashMap<>();
+        var now = System.nanoTime();
+        for (Index<E> index : indicesByProperty.values()) {
+            if (index.definition().isLazy()) {
+                lazyIndicesLastUsed.put(index.definition(), now);
+            }
+        }
+    }
+
+    public void disableIdleIndexRelease() {
+        lazyIndicesLastUsed = null;
+    }
+
+    private void releaseIdleIndices() {
+        var now = System.nanoTime();
+        var idle = new ArrayList<IndexDefinition<E>>();
+        lazyIndicesLastUsed.forEach((property, lastUsed) -> {
+            if (now - lastUsed >= idleIndexNanos) {
+                idle.add(property);
+            }
+        });
+        idle.forEach(this::release);
+    }
+
+    private void release(IndexDefinition<E> property) {
+        indicesByProperty.remove(property);
+        if (lazyIndicesLastUsed != null) {
+            lazyIndicesLastUsed.remove(property);
+        }
+        if (resultCache != null) {
+            // index is no longer maintained, so modifications would not drop results of queries over it
+            resultCache.clear();
+        }
+    }
+
+    /**
+     * Starts counting lookups by every property and measuring latency of adds, of queries and of lookups by value of
+     * every property. Previous counters are discarded.
+     *
+     * @param listener receiver of every counted event
+     */
+    public void enableStatistics(StatisticsListener<E> listener) {
+        Objects.requireNonNull(listener);
+        metrics = new Metrics<>(registeredProperties, listener);
+    }
+
+    public void enableStatistics() {
+        enableStatistics(new StatisticsListener<>() {
+        });
+    }
+
+    public void disableStatistics() {
+        metrics = null;
+    }
+
+    /**
+     * Starts caching results of {@link #searchByProperty(IndexDefinition, Object)}, {@link #search(Query)} and
+     * {@link #count(Query)}, so repeated queries are answered without evaluation while matched elements do not
+     * change. Modification drops only results of queries over keys it touched, and, if element is added or removed,
+     * results of queries with negation. The least recently used result is evicted once cache is full.
+     *
+     * @param maximumSize maximum number of cached results
+     * @throws IllegalArgumentException if maximumSize is not positive
+     */
+    public void enableResultCache(int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximumSize must be positive");
+        }
+        resultCache = new ResultCache<>(maximumSize, indicesByProperty);
+    }
+
+    public void disableResultCache() {
+        resultCache = null;
+    }
+
+    /**
+     * @return number of cached results, 0 if results are not cached
+     */
+    int cachedResults() {
+        return resultCache == null ? 0 : resultCache.size();
+    }
+
+    /**
+     * Shape of indices is inspected on every call, while counters of lookups and latencies are filled only while
+     * statistics are enabled. Lazy indices that are not built are omitted.
+     */
+    public CollectionStatistics<E> statistics() {
+        var indices = new LinkedHashMap<IndexDefinition<E>, IndexStatistics>();
+        for (IndexDefinition<E> property : registeredProperties) {
+            var index = indicesByProperty.get(property);
+            if (index == null) {
+                continue;
+            }
+            var hits = metrics == null ? 0 : metrics.hits(property);
+            var misses = metrics == null ? 0 : metrics.misses(property);
+            var lookupLatency = metrics == null ? LatencyStatistics.EMPTY : metrics.lookups(property);
+            indices.put(property, IndexStatistics.of(index, hits, misses, lookupLatency));
+        }
+        return new CollectionStatistics<>(size(), Collections.unmodifiableMap(indices),
+                metrics == null ? LatencyStatistics.EMPTY : metrics.adds(),
+                metrics == null ? LatencyStatistics.EMPTY : metrics.queries());
+    }
+
+    /**
+     * Estimates heap occupied by elements storage and indices. Key objects shared by several indices are counted once.
+     * Takes time proportional to the number of keys.
+     */
+    public Footprint footprint() {
+        var maps = keyInterner == null ? 0L : keyInterner.estimatedBytes();
+        var postingLists = 0L;
+        var keys = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Index<E> index : indicesByProperty.values()) {
+            maps += index.mapBytes();
+            postingLists += index.postingListsBytes();
+            keys.addAll(index.keyObjects());
+        }
+        var keysBytes = keys.stream().mapToLong(MemoryLayout::value).sum();
+        return new Footprint(elements.estimatedBytes(), maps, keysBytes, postingLists);
+    }
+
+    /**
+     * Makes all indices share one canonical instance of equal keys: strings and boxed primitives. It pays off when
+     * keys are produced anew for each element, for example computed or parsed, and repeat a lot. Keys already in
+     * indices are replaced with canonical instances.
+     * <p>
+     * Canonical instances are kept until {@link #clear()}, even if all elements with them are removed.
+     */
+    public void enableKeyInterning() {
+        if (keyInterner != null) {
+            return;
+        }
+        keyInterner = new KeyInterner();
+        for (Index<E> index : indicesByProperty.values()) {
+            index.internKeys(keyInterner);
+        }
+    }
+
+    /**
+     * Lets elements share keys with indices: fields of new elements created from interned values do not duplicate
+     * them, for example {@code new Person(collection.intern(firstName), ...)}.
+     *
+     * @return canonical instance equal to value if key interning is enabled and value is a string or boxed
+     * primitive, otherwise value itself
+     * @see #enableKeyInterning()
+     */
+    public <T> T intern(T value) {
+        return keyInterner == null ? value : keyInterner.intern(value);
     }
 
     public boolean isEmpty() {
-        return elements.isEmpty();
+        return size() == 0;
     }
 
     public int size() {
-        return elements.size();
+        return elements.size() - removedCount;
     }
 
     public int size(IndexDefinition<E> property, Object value) {
         Objects.requireNonNull(property);
-        var indexMap = indicesMapsByProperty.getOrDefault(property, null);
-        if (indexMap == null) {
-            return 0;
+        var start = metrics == null ? 0 : System.nanoTime();
+        var index = index(property);
+        var result = sizeOf(index == null ? null : index.get(value));
+        if (metrics != null) {
+            metrics.lookedUp(property, result > 0, start);
         }
+        return result;
+    }
 
-        var elementsIndices = indexMap.get(value);
-        return elementsIndices.size();
+    /**
+     * Counts by int value without boxing it if property is indexed by {@link IndexDefinition#getIntFunc()}.
+     */
+    public int size(IndexDefinition<E> property, int value) {
+        Objects.requireNonNull(property);
+        var start = metrics == null ? 0 : System.nanoTime();
+        var index = index(property);
+        var result = sizeOf(index == null ? null : index.get(value));
+        if (metrics != null) {
+            metrics.lookedUp(property, result > 0, start);
+        }
+        return result;
+    }
+
+    /**
+     * Counts by long value without boxing it if property is indexed by {@link IndexDefinition#getLongFunc()}.
+     */
+    public int size(IndexDefinition<E> property, long value) {
+        Objects.requireNonNull(property);
+        var start = metrics == null ? 0 : System.nanoTime();
+        var index = index(property);
+        var result = sizeOf(index == null ? null : index.get(value));
+        if (metrics != null) {
+            metrics.lookedUp(property, result > 0, start);
+        }
+        return result;
     }
 
     @Override
@@ -175,14 +1627,24 @@ public class MultiIndexIndexedCollection<E> {
 
         MultiIndexIndexedCollection<?> that = (MultiIndexIndexedCollection<?>) o;
 
-        if (!elements.equals(that.elements)) return false;
-        if (!propertyEnumConstants.equals(that.propertyEnumConstants)) return false;
-        if (!getValueFunctions.equals(that.getValueFunctions)) return false;
-        return indicesMapsByProperty.equals(that.indicesMapsByProperty);
+        if (size() != that.size()) return false;
+        if (!registeredProperties.equals(that.registeredProperties)) return false;
+
+        // indices are derived from elements, so it is enough to compare live elements
+        Iterator<E> thisIterator = iterator();
+        Iterator<?> thatIterator = that.iterator();
+        while (thisIterator.hasNext()) {
+            if (!thisIterator.next().equals(thatIterator.next())) return false;
+        }
+        return true;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(elements, propertyEnumConstants, getValueFunctions, indicesMapsByProperty);
+        var elementsHashCode = 1;
+        for (Iterator<E> iterator = iterator(); iterator.hasNext(); ) {
+            elementsHashCode = 31 * elementsHashCode + iterator.next().hashCode();
+        }
+        return Objects.hash(elementsHashCode, registeredProperties);
     }
 }
@@ -0,0 +1,187 @@
+package com.github.lexakimov.collections;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Storage of encoded elements in direct buffers outside of heap. Heap holds only address and length of each element,
+ * 12 bytes per position regardless of element, so garbage collector does not trace elements at all. Element is
+ * decoded on every access, so callers should read only elements they need.
+ * <p>
+ * Encoded elements are appended to chunks of {@value #CHUNK_SIZE} bytes and never cross chunk boundary. Replaced
+ * and removed elements leave garbage in chunks until {@link #compact()} copies remaining ones to new chunks.
+ * Reading is thread-safe as long as nothing is written concurrently.
+ */
+final class OffHeapElementStore<E> extends ElementStore<E> {
+
+    static final int CHUNK_SIZE = 1 << 20;
+
+    private static final int REMOVED = -1;
+
+    private final ElementCodec<E> codec;
+
+    /**
+     * Read-only views of chunks, so slices passed to codec cannot modify them.
+     */
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+
+    /**
+     * Writable last chunk, {@code null} if there are no chunks.
+     */
+    private ByteBuffer tail;
+
+    private long chunksBytes;
+
+    /**
+     * Bytes of replaced and removed elements left in chunks.
+     */
+    private long garbageBytes;
+
+    /**
+     * Chunk number in high half and offset in chunk in low half of each address.
+     */
+    private final LongArrayList addresses = new LongArrayList();
+
+    /**
+     * {@value #REMOVED} for tombstones.
+     */
+    private final IntArrayList lengths = new IntArrayList();
+
+    private final ElementEncoder<E> encoder;
+
+    OffHeapElementStore(ElementCodec<E> codec) {
+        this.codec = codec;
+        this.encoder = new ElementEncoder<>(codec);
+    }
+
+    @Override
+    public E get(int index) {
+        var length = lengths.getInt(index);
+        if (length == REMOVED) {
+            return null;
+        }
+        var address = addresses.getLong(index);
+        return codec.decode(chunks.get((int) (address >>> 32)).slice((int) address, length));
+    }
+
+    @Override
+    public E set(int index, E element) {
+        var previous = get(index);
+        if (previous != null) {
+            garbageBytes += lengths.getInt(index);
+        }
+        if (element == null) {
+            lengths.set(index, REMOVED);
+        } else {
+            var encoded = encoder.encode(element);
+            lengths.set(index, encoded.remaining());
+            addresses.set(index, append(encoded));
+        }
+        return previous;
+    }
+
+    @Override
+    public boolean add(E element) {
+        Objects.requireNonNull(element);
+        var encoded = encoder.encode(element);
+        lengths.add(encoded.remaining());
+        addresses.add(append(encoded));
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return lengths.size();
+    }
+
+    @Override
+    public void clear() {
+        clearChunks();
+        addresses.clear();
+        lengths.clear();
+    }
+
+    /**
+     * Bytes of dropped elements stay in chunks as garbage.
+     */
+    @Override
+    void truncate(int size) {
+        for (int i = size; i < lengths.size(); i++) {
+            if (lengths.getInt(i) != REMOVED) {
+                garbageBytes += lengths.getInt(i);
+            }
+        }
+        addresses.size(size);
+        lengths.size(size);
+    }
+
+    @Override
+    boolean isLive(int position) {
+        return lengths.getInt(position) != REMOVED;
+    }
+
+    /**
+     * Copies encoded elements as is, without decoding them. Also reclaims space of replaced elements when there are
+     * no tombstones, then positions do not change.
+     */
+    @Override
+    int[] compact() {
+        var oldChunks = new ArrayList<>(chunks);
+        clearChunks();
+        var newPositions = new int[lengths.size()];
+        var j = 0;
+        for (int i = 0; i < lengths.size(); i++) {
+            var length = lengths.getInt(i);
+            if (length == REMOVED) {
+                continue;
+            }
+            var address = addresses.getLong(i);
+            var encoded = oldChunks.get((int) (address >>> 32)).slice((int) address, length);
+            addresses.set(j, append(encoded));
+            lengths.set(j, length);
+            newPositions[i] = j++;
+        }
+        addresses.size(j);
+        lengths.size(j);
+        return newPositions;
+    }
+
+    private void clearChunks() {
+        chunks.clear();
+        tail = null;
+        chunksBytes = 0;
+        garbageBytes = 0;
+    }
+
+    /**
+     * @return address of copied element
+     */
+    private long append(ByteBuffer encoded) {
+        if (tail == null || tail.remaining() < encoded.remaining()) {
+            tail = ByteBuffer.allocateDirect(Math.max(CHUNK_SIZE, encoded.remaining()));
+            chunks.add(tail.asReadOnlyBuffer());
+            chunksBytes += tail.capacity();
+        }
+        var address = (long) (chunks.size() - 1) << 32 | tail.position();
+        tail.put(encoded);
+        return address;
+    }
+
+    @Override
+    double garbageShare() {
+        return chunksBytes == 0 ? 0 : (double) garbageBytes / chunksBytes;
+    }
+
+    /**
+     * @return size of addresses and lengths on heap plus size of chunks off heap
+     */
+    @Override
+    long estimatedBytes() {
+        return MemoryLayout.array(addresses.size(), Long.BYTES) + MemoryLayout.array(lengths.size(), Integer.BYTES)
+                + chunksBytes;
+    }
+}
@@ -0,0 +1,99 @@
+package com.github.lexakimov.collections;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Index that keeps keys sorted by {@link IndexDefinition#getComparator()} or by natural order. {@code null} keys
+ * precede all others.
+ */
+class OrderedIndex<E> extends MapIndex<E> {
+
+    OrderedIndex(IndexDefinition<E> definition) {
+        super(definition, new TreeMap<>(comparator(definition)));
+    }
+
+    @SuppressWarnings("unchecked")
+    static Comparator<Object> comparator(IndexDefinition<?> definition) {
+        var comparator = (Comparator<Object>) definition.getComparator();
+        if (comparator == null) {
+            comparator = (Comparator<Object>) (Comparator<?>) Comparator.naturalOrder();
+        }
+        return Comparator.nullsFirst(comparator);
+    }
+
+    private NavigableMap<Object, PostingList> navigableMap() {
+        return (NavigableMap<Object, PostingList>) postingListsByKey;
+    }
+
+    /**
+     * @return posting lists of keys in given range, in key order
+     */
+    Collection<PostingList> range(Object from, boolean fromInclusive, Object to, boolean toInclusive) {
+        return navigableMap().subMap(from, fromInclusive, to, toInclusive).values();
+    }
+
+    /**
+     * @return posting lists of tuple keys starting with given values, in key order
+     */
+    Collection<PostingList> prefix(Tuple prefix) {
+        return navigableMap().subMap(prefix, true, prefix.prefixEnd(), false).values();
+    }
+
+    /**
+     * @return posting lists of string keys starting with given prefix, in key order
+     */
+    Collection<PostingList> startsWith(String prefix) {
+        return navigableMap().subMap(prefix, true, prefixEnd(prefix), false).values();
+    }
+
+    /**
+     * @return string that follows all strings starting with prefix, except ones continuing with noncharacter
+     * {@code U+FFFF}, that never occurs in text
+     */
+    static String prefixEnd(String prefix) {
+        return prefix + Character.MAX_VALUE;
+    }
+
+    Collection<PostingList> head(Object to, boolean inclusive) {
+        return navigableMap().headMap(to, inclusive).values();
+    }
+
+    Collection<PostingList> tail(Object from, boolean inclusive) {
+        return navigableMap().tailMap(from, inclusive).values();
+    }
+
+    PostingList first() {
+        var entry = navigableMap().firstEntry();
+        return entry == null ? null : entry.getValue();
+    }
+
+    PostingList last() {
+        var entry = navigableMap().lastEntry();
+        return entry == null ? null : entry.getValue();
+    }
+
+    @Override
+    <V> Map<Object, V> newKeyMap() {
+        return new TreeMap<>(navigableMap().comparator());
+    }
+
+    /**
+     * {@link TreeMap} entry.
+     */
+    @Override
+    int entryBytes() {
+        return 40;
+    }
+
+    @Override
+    FrozenIndex<E> freeze() {
+        var map = navigableMap();
+        return FrozenIndex.sorted(map.keySet().toArray(), map.comparator(),
+                new ArrayList<>(map.values()));
+    }
+}
@@ -0,0 +1,82 @@
+package com.github.lexakimov.collections;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Spliterator over elements at given positions of elements storage. Splits range of positions in halves, so it is
+ * {@link #SIZED} and {@link #SUBSIZED} and parallel streams are balanced evenly.
+ */
+final class PositionsSpliterator<E> implements Spliterator<E> {
+
+    private final IntFunction<E> elements;
+
+    /**
+     * {@code null} if every position of range is live, then position is equal to index.
+     */
+    private final int[] positions;
+
+    private int index;
+
+    private final int fence;
+
+    private final int characteristics;
+
+    /**
+     * @param elements        accessor of element by position
+     * @param positions       ascending or index ordered positions, or {@code null} if range covers positions
+     *                        themselves
+     * @param from            index of the first position, inclusive
+     * @param to              index of the last position, exclusive
+     * @param characteristics characteristics besides {@link #SIZED} and {@link #SUBSIZED}
+     */
+    PositionsSpliterator(IntFunction<E> elements, int[] positions, int from, int to, int characteristics) {
+        this.elements = elements;
+        this.positions = positions;
+        this.index = from;
+        this.fence = to;
+        this.characteristics = characteristics | SIZED | SUBSIZED;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super E> action) {
+        if (index >= fence) {
+            return false;
+        }
+        action.accept(element(index++));
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super E> action) {
+        for (; index < fence; index++) {
+            action.accept(element(index));
+        }
+    }
+
+    private E element(int i) {
+        return elements.apply(positions == null ? i : positions[i]);
+    }
+
+    @Override
+    public Spliterator<E> trySplit() {
+        var middle = (index + fence) >>> 1;
+        if (middle <= index) {
+            return null;
+        }
+        var prefix = new PositionsSpliterator<>(elements, positions, index, middle, characteristics);
+        index = middle;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return fence - index;
+    }
+
+    @Override
+    public int characteristics() {
+        return characteristics;
+    }
+}
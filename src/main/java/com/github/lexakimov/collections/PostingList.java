@@ -0,0 +1,139 @@
+package com.github.lexakimov.collections;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import java.util.function.IntConsumer;
+
+/**
+ * Ascending set of element positions stored under one key of an index.
+ *
+ * @see ArrayPostingList
+ * @see BitmapPostingList
+ */
+abstract class PostingList {
+
+    static PostingList create(PostingListType type) {
+        return switch (type) {
+            case ARRAY -> new ArrayPostingList(false);
+            case BITMAP -> new BitmapPostingList();
+            case AUTO -> new ArrayPostingList(true);
+        };
+    }
+
+    /**
+     * Positions may be added in any order, appending ascending ones is the cheapest.
+     *
+     * @return this list or its converted copy, which must replace this list in index
+     */
+    abstract PostingList add(int position);
+
+    /**
+     * Appends positions of other list, all of them greater than positions of this one.
+     *
+     * @return this list or its converted copy, see {@link #add(int)}
+     */
+    PostingList appendAll(PostingList other) {
+        var result = this;
+        for (var positions = other.iterator(); positions.hasNext(); ) {
+            result = result.add(positions.nextInt());
+        }
+        return result;
+    }
+
+    /**
+     * @return {@code true} if position was present in list and was not removed before
+     */
+    abstract boolean remove(int position);
+
+    /**
+     * @return number of live positions
+     */
+    abstract int size();
+
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    abstract void forEach(IntConsumer action);
+
+    /**
+     * @return first live position or -1 if list is empty
+     */
+    abstract int first();
+
+    /**
+     * @return live position with given index in ascending order
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    abstract int get(int index);
+
+    abstract IntIterator iterator();
+
+    /**
+     * @return live positions in ascending order
+     */
+    IntArrayList toPositions() {
+        var result = new IntArrayList(size());
+        forEach(result::add);
+        return result;
+    }
+
+    /**
+     * Keeps in candidates only positions that are live in this list.
+     *
+     * @param candidates positions in ascending order, modified in place
+     */
+    abstract void retainIn(IntArrayList candidates);
+
+    /**
+     * Counts candidates that are live in this list by walking candidates and searching this list, see
+     * {@link #retainIn(IntArrayList)}.
+     *
+     * @param candidates positions in ascending order, not modified
+     */
+    abstract int countContained(IntArrayList candidates);
+
+    /**
+     * Counts candidates that are live in this list without modifying or copying candidates: the smaller of two sides
+     * is walked and the other one is searched.
+     *
+     * @param candidates positions in ascending order
+     */
+    int countIn(IntArrayList candidates) {
+        if (candidates.size() < size()) {
+            return countContained(candidates);
+        }
+        var candidatesArray = candidates.elements();
+        var candidatesSize = candidates.size();
+        var cursor = 0;
+        var count = 0;
+        for (var positions = iterator(); positions.hasNext() && cursor < candidatesSize; ) {
+            var position = positions.nextInt();
+            cursor = ArrayPostingList.advance(candidatesArray, candidatesSize, cursor, position);
+            if (cursor < candidatesSize && candidatesArray[cursor] == position) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Removes from candidates all positions that are live in this list.
+     *
+     * @param candidates positions in ascending order, modified in place
+     */
+    abstract void removeFrom(IntArrayList candidates);
+
+    /**
+     * @return estimated number of bytes occupied by list
+     * @see MemoryLayout
+     */
+    abstract long estimatedBytes();
+
+    /**
+     * Rewrites positions after compaction of elements storage.
+     *
+     * @param newPositions mapping from old position to new one, must preserve order
+     */
+    abstract void remap(int[] newPositions);
+}
@@ -0,0 +1,27 @@
+package com.github.lexakimov.collections;
+
+/**
+ * Representation of lists of element positions stored under each key of an index.
+ *
+ * @see IndexDefinition#getPostingListType()
+ */
+public enum PostingListType {
+
+    /**
+     * Sorted array of positions, 4 bytes per element. Best for high-cardinality properties where each key matches
+     * only a few elements.
+     */
+    ARRAY,
+
+    /**
+     * Compressed bitmap split into chunks of 65536 positions, each stored either as sorted array of 2-byte offsets or,
+     * when dense, as plain 8 KB bitmap. Best for low-cardinality properties: intersections and unions of bitmaps are
+     * computed word by word.
+     */
+    BITMAP,
+
+    /**
+     * Starts with {@link #ARRAY} and switches to {@link #BITMAP} once the list becomes large and dense.
+     */
+    AUTO
+}
@@ -0,0 +1,64 @@
+package com.github.lexakimov.collections;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Condition over indexed properties that can be passed to {@link MultiIndexIndexedCollection#search(Query)}.
+ * <pre>{@code
+ * var query = Query.and(Query.eq(FIRST_NAME, "Caleb"), Query.not(Query.eq(LAST_NAME, "Smith")));
+ * }</pre>
+ * Queries are answered from posting lists only: conjunctions start from the smallest list and intersect the rest
+ * with galloping search, disjunctions merge lists. A negation that is not a part of a conjunction with at least one
+ * positive condition is evaluated against all elements of collection, so it costs O(n).
+ */
+public sealed interface Query<E> permits Query.Equal, Query.And, Query.Or, Query.Not {
+
+    static <E> Query<E> eq(IndexDefinition<E> property, Object value) {
+        return new Equal<>(property, value);
+    }
+
+    @SafeVarargs
+    @SuppressWarnings("varargs")
+    static <E> Query<E> and(Query<E>... queries) {
+        return new And<>(List.of(queries));
+    }
+
+    @SafeVarargs
+    @SuppressWarnings("varargs")
+    static <E> Query<E> or(Query<E>... queries) {
+        return new Or<>(List.of(queries));
+    }
+
+    static <E> Query<E> not(Query<E> query) {
+        return new Not<>(query);
+    }
+
+    record Equal<E>(IndexDefinition<E> property, Object value) implements Query<E> {
+        public Equal {
+            Objects.requireNonNull(property);
+        }
+    }
+
+    record And<E>(List<Query<E>> queries) implements Query<E> {
+        public And {
+            if (queries.isEmpty()) {
+                throw new IllegalArgumentException("conjunction must contains at least 1 query");
+            }
+        }
+    }
+
+    record Or<E>(List<Query<E>> queries) implements Query<E> {
+        public Or {
+            if (queries.isEmpty()) {
+                throw new IllegalArgumentException("disjunction must contains at least 1 query");
+            }
+        }
+    }
+
+    record Not<E>(Query<E> query) implements Query<E> {
+        public Not {
+            Objects.requireNonNull(query);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.github.lexakimov.collections;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import java.util.ArrayList;
+import java.util.Comparator;
+
+/**
+ * Evaluates {@link Query} into ascending list of live positions of elements. Subclasses provide access to indices of
+ * particular collection.
+ */
+abstract class QueryEvaluator<E> {
+
+    /**
+     * @return posting list of value or {@code null} if there are no elements with such value
+     */
+    abstract PostingList postingList(IndexDefinition<E> property, Object value);
+
+    /**
+     * @return positions of all elements of collection in ascending order
+     */
+    abstract IntArrayList livePositions();
+
+    /**
+     * @return number of elements of collection
+     */
+    abstract int size();
+
+    IntArrayList evaluate(Query<E> query) {
+        if (query instanceof Query.Equal<E> equal) {
+            var postingList = postingList(equal.property(), equal.value());
+            return postingList == null ? new IntArrayList() : postingList.toPositions();
+        } else if (query instanceof Query.And<E> and) {
+            return evaluateAnd(and);
+        } else if (query instanceof Query.Or<E> or) {
+            return evaluateOr(or);
+        } else if (query instanceof Query.Not<E> not) {
+            var result = livePositions();
+            difference(result, evaluate(not.query()));
+            return result;
+        }
+        throw new IllegalArgumentException("unknown query " + query);
+    }
+
+    private IntArrayList evaluateAnd(Query.And<E> and) {
+        var positives = new ArrayList<Query<E>>();
+        var negatives = new ArrayList<Query<E>>();
+        for (Query<E> query : and.queries()) {
+            if (query instanceof Query.Not<E> not) {
+                negatives.add(not.query());
+            } else {
+                positives.add(query);
+            }
+        }
+        positives.sort(Comparator.comparingInt(this::estimate));
+
+        // leading bitmaps are intersected with each other word by word
+        var bitmaps = new ArrayList<BitmapPostingList>();
+        while (bitmaps.size() < positives.size() && bitmap(positives.get(bitmaps.size())) != null) {
+            bitmaps.add(bitmap(positives.get(bitmaps.size())));
+        }
+
+        IntArrayList candidates;
+        int first;
+        if (bitmaps.size() > 1) {
+            candidates = BitmapPostingList.intersect(bitmaps);
+            first = bitmaps.size();
+        } else {
+            candidates = positives.isEmpty() ? livePositions() : evaluate(positives.get(0));
+            first = 1;
+        }
+        for (int i = first; i < positives.size() && !candidates.isEmpty(); i++) {
+            var query = positives.get(i);
+            if (query instanceof Query.Equal<E> equal) {
+                var postingList = postingList(equal.property(), equal.value());
+                if (postingList == null) {
+                    candidates.clear();
+                } else {
+                    postingList.retainIn(candidates);
+                }
+            } else {
+                intersect(candidates, evaluate(query));
+            }
+        }
+        for (int i = 0; i < negatives.size() && !candidates.isEmpty(); i++) {
+            var query = negatives.get(i);
+            if (query instanceof Query.Equal<E> equal) {
+                var postingList = postingList(equal.property(), equal.value());
+                if (postingList != null) {
+                    postingList.removeFrom(candidates);
+                }
+            } else {
+                difference(candidates, evaluate(query));
+            }
+        }
+        return candidates;
+    }
+
+    private IntArrayList evaluateOr(Query.Or<E> or) {
+        var bitmaps = new ArrayList<BitmapPostingList>();
+        var others = new ArrayList<Query<E>>();
+        for (Query<E> query : or.queries()) {
+            var bitmap = bitmap(query);
+            if (bitmap != null) {
+                bitmaps.add(bitmap);
+            } else {
+                others.add(query);
+            }
+        }
+
+        IntArrayList result;
+        if (bitmaps.size() > 1) {
+            result = BitmapPostingList.union(bitmaps);
+        } else {
+            result = new IntArrayList();
+            others = new ArrayList<>(or.queries());
+        }
+        for (Query<E> query : others) {
+            result = union(result, evaluate(query));
+        }
+        return result;
+    }
+
+    /**
+     * @return posting list of query if it is a condition on key stored as bitmap
+     */
+    private BitmapPostingList bitmap(Query<E> query) {
+        if (query instanceof Query.Equal<E> equal
+                && postingList(equal.property(), equal.value()) instanceof BitmapPostingList bitmap) {
+            return bitmap;
+        }
+        return null;
+    }
+
+    /**
+     * @return upper bound of number of elements that match query
+     */
+    private int estimate(Query<E> query) {
+        if (query instanceof Query.Equal<E> equal) {
+            var postingList = postingList(equal.property(), equal.value());
+            return postingList == null ? 0 : postingList.size();
+        } else if (query instanceof Query.And<E> and) {
+            var result = size();
+            for (Query<E> child : and.queries()) {
+                if (!(child instanceof Query.Not)) {
+                    result = Math.min(result, estimate(child));
+                }
+            }
+            return result;
+        } else if (query instanceof Query.Or<E> or) {
+            long result = 0;
+            for (Query<E> child : or.queries()) {
+                result += estimate(child);
+            }
+            return (int) Math.min(result, size());
+        }
+        return size();
+    }
+
+    /**
+     * Keeps in candidates only positions contained in other. Both lists must be ascending.
+     */
+    static void intersect(IntArrayList candidates, IntArrayList other) {
+        filter(candidates, other, true);
+    }
+
+    /**
+     * Removes from candidates all positions contained in other. Both lists must be ascending.
+     */
+    static void difference(IntArrayList candidates, IntArrayList other) {
+        filter(candidates, other, false);
+    }
+
+    private static void filter(IntArrayList candidates, IntArrayList other, boolean retainContained) {
+        var otherArray = other.elements();
+        var otherSize = other.size();
+        var candidatesArray = candidates.elements();
+        var candidatesSize = candidates.size();
+        var cursor = 0;
+        var j = 0;
+        for (int i = 0; i < candidatesSize; i++) {
+            var candidate = candidatesArray[i];
+            cursor = ArrayPostingList.advance(otherArray, otherSize, cursor, candidate);
+            var contained = cursor < otherSize && otherArray[cursor] == candidate;
+            if (contained == retainContained) {
+                candidatesArray[j++] = candidate;
+            }
+        }
+        candidates.size(j);
+    }
+
+    static IntArrayList union(IntArrayList left, IntArrayList right) {
+        var result = new IntArrayList(left.size() + right.size());
+        var leftArray = left.elements();
+        var rightArray = right.elements();
+        int i = 0;
+        int j = 0;
+        while (i < left.size() && j < right.size()) {
+            var l = leftArray[i];
+            var r = rightArray[j];
+            if (l < r) {
+                result.add(l);
+                i++;
+            } else if (l > r) {
+                result.add(r);
+                j++;
+            } else {
+                result.add(l);
+                i++;
+                j++;
+            }
+        }
+        result.addElements(result.size(), leftArray, i, left.size() - i);
+        result.addElements(result.size(), rightArray, j, right.size() - j);
+        return result;
+    }
+}
@@ -0,0 +1,178 @@
+package com.github.lexakimov.collections;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Bounded cache of results of queries of {@link MultiIndexIndexedCollection} with least recently used eviction, see
+ * {@link MultiIndexIndexedCollection#enableResultCache(int)}.
+ * <p>
+ * Result of query depends only on keys of its equality conditions, and result of query with negation also on set of
+ * live elements. Modifications report keys they touched, so only results depending on them are dropped.
+ */
+final class ResultCache<E> {
+
+    private final int maximumSize;
+
+    private final Map<IndexDefinition<E>, Index<E>> indicesByProperty;
+
+    private final Map<Query<E>, Entry<E>> entries;
+
+    /**
+     * Cached queries by keys of their equality conditions, keys are compared the same way as by index.
+     */
+    private final Map<IndexDefinition<E>, Map<Object, Set<Query<E>>>> dependentsByKey = new HashMap<>();
+
+    /**
+     * Cached queries with negation.
+     */
+    private final Set<Query<E>> dependentsOnLiveElements = new HashSet<>();
+
+    private static final class Entry<E> {
+
+        private List<E> elements;
+
+        private int count = -1;
+    }
+
+    ResultCache(int maximumSize, Map<IndexDefinition<E>, Index<E>> indicesByProperty) {
+        this.maximumSize = maximumSize;
+        this.indicesByProperty = indicesByProperty;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Query<E>, Entry<E>> eldest) {
+                if (size() > ResultCache.this.maximumSize) {
+                    unregister(eldest.getKey());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @return cached or computed unmodifiable list of matched elements
+     */
+    List<E> elements(Query<E> query, Function<Query<E>, List<E>> search) {
+        var entry = entries.get(query);
+        if (entry != null && entry.elements != null) {
+            return entry.elements;
+        }
+        var elements = Collections.unmodifiableList(search.apply(query));
+        (entry == null ? put(query) : entry).elements = elements;
+        return elements;
+    }
+
+    /**
+     * @return cached or computed number of matched elements
+     */
+    int count(Query<E> query, ToIntFunction<Query<E>> count) {
+        var entry = entries.get(query);
+        if (entry != null) {
+            if (entry.elements != null) {
+                return entry.elements.size();
+            }
+            if (entry.count >= 0) {
+                return entry.count;
+            }
+        }
+        var result = count.applyAsInt(query);
+        (entry == null ? put(query) : entry).count = result;
+        return result;
+    }
+
+    /**
+     * Called once result is computed, so query is known to be valid.
+     */
+    private Entry<E> put(Query<E> query) {
+        var entry = new Entry<E>();
+        register(query, query);
+        entries.put(query, entry);
+        return entry;
+    }
+
+    /**
+     * Drops results of queries depending on key of property.
+     */
+    void touched(IndexDefinition<E> property, Object key) {
+        var dependentsOfProperty = dependentsByKey.get(property);
+        if (dependentsOfProperty == null) {
+            return;
+        }
+        var dependents = dependentsOfProperty.remove(key);
+        if (dependents != null) {
+            dependents.forEach(this::drop);
+        }
+    }
+
+    /**
+     * Drops results of queries with negation, since element was added or removed.
+     */
+    void liveElementsChanged() {
+        new ArrayList<>(dependentsOnLiveElements).forEach(this::drop);
+    }
+
+    void clear() {
+        entries.clear();
+        dependentsByKey.clear();
+        dependentsOnLiveElements.clear();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private void drop(Query<E> query) {
+        if (entries.remove(query) != null) {
+            unregister(query);
+        }
+    }
+
+    private void register(Query<E> condition, Query<E> query) {
+        if (condition instanceof Query.Equal<E> equal) {
+            var index = indicesByProperty.get(equal.property());
+            // result of condition over property that is not indexed is always empty
+            if (index != null) {
+                dependentsByKey.computeIfAbsent(equal.property(), property -> index.newKeyMap())
+                        .computeIfAbsent(equal.value(), key -> new HashSet<>())
+                        .add(query);
+            }
+        } else if (condition instanceof Query.And<E> and) {
+            and.queries().forEach(subquery -> register(subquery, query));
+        } else if (condition instanceof Query.Or<E> or) {
+            or.queries().forEach(subquery -> register(subquery, query));
+        } else if (condition instanceof Query.Not<E> not) {
+            dependentsOnLiveElements.add(query);
+            register(not.query(), query);
+        }
+    }
+
+    private void unregister(Query<E> query) {
+        unregister(query, query);
+    }
+
+    private void unregister(Query<E> condition, Query<E> query) {
+        if (condition instanceof Query.Equal<E> equal) {
+            var dependentsOfProperty = dependentsByKey.get(equal.property());
+            var dependents = dependentsOfProperty == null ? null : dependentsOfProperty.get(equal.value());
+            if (dependents != null && dependents.remove(query) && dependents.isEmpty()) {
+                dependentsOfProperty.remove(equal.value());
+            }
+        } else if (condition instanceof Query.And<E> and) {
+            and.queries().forEach(subquery -> unregister(subquery, query));
+        } else if (condition instanceof Query.Or<E> or) {
+            or.queries().forEach(subquery -> unregister(subquery, query));
+        } else if (condition instanceof Query.Not<E> not) {
+            dependentsOnLiveElements.remove(query);
+            unregister(not.query(), query);
+        }
+    }
+}
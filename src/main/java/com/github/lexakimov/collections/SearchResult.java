@@ -0,0 +1,91 @@
+package com.github.lexakimov.collections;
+
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.ints.IntIterators;
+import java.util.AbstractList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+
+/**
+ * Read-only view of elements found by {@link MultiIndexIndexedCollection#search(IndexDefinition, Object)}.
+ * <p>
+ * Nothing is copied: view reads posting list of index and elements storage of collection directly, so creating it
+ * costs O(1) regardless of the number of matched elements. View is valid until the next modification of collection,
+ * after that every access throws {@link ConcurrentModificationException}. Copy it, for example with
+ * {@code new ArrayList<>(result)}, or use {@link MultiIndexIndexedCollection#searchByProperty} to keep result.
+ */
+public final class SearchResult<E> extends AbstractList<E> implements RandomAccess {
+
+    private final MultiIndexIndexedCollection<E> collection;
+
+    /**
+     * {@code null} if nothing was found.
+     */
+    private final PostingList postingList;
+
+    private final int expectedModCount;
+
+    SearchResult(MultiIndexIndexedCollection<E> collection, PostingList postingList) {
+        this.collection = collection;
+        this.postingList = postingList;
+        this.expectedModCount = collection.modCount();
+    }
+
+    @Override
+    public E get(int index) {
+        checkForComodification();
+        if (postingList == null) {
+            throw new IndexOutOfBoundsException("Index %d out of bounds for length 0".formatted(index));
+        }
+        return collection.element(postingList.get(index));
+    }
+
+    @Override
+    public int size() {
+        checkForComodification();
+        return postingList == null ? 0 : postingList.size();
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        checkForComodification();
+        IntIterator positions = postingList == null ? IntIterators.EMPTY_ITERATOR : postingList.iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                checkForComodification();
+                return positions.hasNext();
+            }
+
+            @Override
+            public E next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return collection.element(positions.nextInt());
+            }
+        };
+    }
+
+    /**
+     * @return spliterator over positions copied from posting list, so it is sized and splits evenly
+     */
+    @Override
+    public Spliterator<E> spliterator() {
+        checkForComodification();
+        var positions = postingList == null ? new int[0] : postingList.toPositions().elements();
+        return new PositionsSpliterator<>(position -> {
+            checkForComodification();
+            return collection.element(position);
+        }, positions, 0, size(), Spliterator.ORDERED | Spliterator.NONNULL);
+    }
+
+    private void checkForComodification() {
+        if (collection.modCount() != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+}
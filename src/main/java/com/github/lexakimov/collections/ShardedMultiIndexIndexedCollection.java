@@ -0,0 +1,332 @@
+package com.github.lexakimov.collections;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Thread-safe collection partitioned by hash code of elements into several {@link MultiIndexIndexedCollection}s
+ * (shards), so that ingest and heavy queries scale with cores.
+ * <p>
+ * Each shard is guarded by its own read-write lock: adds to different shards run concurrently, {@link #addAll} adds
+ * parts of batch to all shards in parallel, and queries fan out to all shards in common {@link ForkJoinPool} and
+ * merge their results. Every element is numbered on add, so merged results keep insertion order; elements of one
+ * {@link #addAll} keep order of batch. Query sees every shard in consistent state, but not all shards at the same
+ * moment.
+ * <p>
+ * All returned lists are independent copies.
+ */
+public class ShardedMultiIndexIndexedCollection<E> {
+
+    private final List<Shard<E>> shards;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * @param shardCount number of shards, e.g. number of cores
+     * @throws IllegalArgumentException if shardCount is not positive
+     */
+    public ShardedMultiIndexIndexedCollection(Class<? extends IndexDefinition<E>> searchablePropertyEnumClass,
+                                              int shardCount) {
+        Objects.requireNonNull(searchablePropertyEnumClass);
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("shardCount must be positive");
+        }
+        var shards = new ArrayList<Shard<E>>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            var collection = new MultiIndexIndexedCollection<>(searchablePropertyEnumClass);
+            // queries run under read lock and must not modify shards, so lazy indices are built at once
+            collection.buildIndices();
+            shards.add(new Shard<>(collection));
+        }
+        this.shards = List.copyOf(shards);
+    }
+
+    /**
+     * Part of elements with their insertion numbers.
+     */
+    private static final class Shard<E> {
+
+        private final MultiIndexIndexedCollection<E> collection;
+
+        /**
+         * Insertion number of element by its position in collection, including removed positions.
+         */
+        private final LongArrayList sequences = new LongArrayList();
+
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        Shard(MultiIndexIndexedCollection<E> collection) {
+            this.collection = collection;
+            collection.compactionListener(this::dropRemovedSequences);
+        }
+
+        private void dropRemovedSequences() {
+            var j = 0;
+            for (int i = 0; i < sequences.size(); i++) {
+                if (collection.isLive(i)) {
+                    sequences.set(j++, sequences.getLong(i));
+                }
+            }
+            sequences.size(j);
+        }
+
+        void add(E element, long sequence) {
+            lock.writeLock().lock();
+            try {
+                collection.add(element);
+                sequences.add(sequence);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void addAll(List<E> elements, LongArrayList elementSequences) {
+            lock.writeLock().lock();
+            try {
+                collection.addAll(elements);
+                sequences.addAll(elementSequences);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        <R> R read(Function<MultiIndexIndexedCollection<E>, R> action) {
+            lock.readLock().lock();
+            try {
+                return action.apply(collection);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        <R> R write(Function<MultiIndexIndexedCollection<E>, R> action) {
+            lock.writeLock().lock();
+            try {
+                return action.apply(collection);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        /**
+         * @param positions function of collection that returns ascending positions of elements
+         */
+        List<Sequenced<E>> sequenced(Function<MultiIndexIndexedCollection<E>, IntArrayList> positions) {
+            lock.readLock().lock();
+            try {
+                var elementsIndices = positions.apply(collection);
+                var result = new ArrayList<Sequenced<E>>(elementsIndices.size());
+                elementsIndices.forEach(i -> result.add(new Sequenced<>(sequences.getLong(i), collection.element(i))));
+                return result;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
+    private record Sequenced<E>(long sequence, E element) {
+    }
+
+    private int shardIndexOf(E element) {
+        var hash = element.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), shards.size());
+    }
+
+    public boolean add(E element) {
+        Objects.requireNonNull(element);
+        shards.get(shardIndexOf(element)).add(element, sequence.getAndIncrement());
+        return true;
+    }
+
+    /**
+     * Splits batch by shards and adds parts to shards in parallel.
+     *
+     * @return {@code true} if collection changed
+     * @throws NullPointerException if any of elements is {@code null}, in that case collection is not modified
+     */
+    public boolean addAll(Collection<? extends E> newElements) {
+        var batch = List.<E>copyOf(newElements);
+        if (batch.isEmpty()) {
+            return false;
+        }
+        // numbers of whole batch are reserved at once, so merged results keep order of batch
+        var first = sequence.getAndAdd(batch.size());
+        var parts = new ArrayList<List<E>>(shards.size());
+        var partsSequences = new ArrayList<LongArrayList>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            parts.add(new ArrayList<>());
+            partsSequences.add(new LongArrayList());
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            var element = batch.get(i);
+            var shardIndex = shardIndexOf(element);
+            parts.get(shardIndex).add(element);
+            partsSequences.get(shardIndex).add(first + i);
+        }
+        var tasks = new ArrayList<ForkJoinTask<?>>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            var shard = shards.get(i);
+            var part = parts.get(i);
+            var partSequences = partsSequences.get(i);
+            if (!part.isEmpty()) {
+                tasks.add(ForkJoinTask.adapt(() -> shard.addAll(part, partSequences)));
+            }
+        }
+        ForkJoinTask.invokeAll(tasks);
+        return true;
+    }
+
+    public boolean remove(IndexDefinition<E> property, Object value) {
+        Objects.requireNonNull(property);
+        return fanOut(shard -> shard.write(collection -> collection.remove(property, value))).contains(true);
+    }
+
+    public boolean contains(IndexDefinition<E> property, Object value) {
+        Objects.requireNonNull(property);
+        return fanOut(shard -> shard.read(collection -> collection.contains(property, value))).contains(true);
+    }
+
+    /**
+     * @return matched elements of all shards in insertion order
+     */
+    public List<E> searchByProperty(IndexDefinition<E> property, Object value) {
+        Objects.requireNonNull(property);
+        var query = Query.eq(property, value);
+        return merge(collection -> collection.positions(query));
+    }
+
+    /**
+     * @return elements of all shards that match query, in insertion order
+     * @see MultiIndexIndexedCollection#search(Query)
+     */
+    public List<E> search(Query<E> query) {
+        Objects.requireNonNull(query);
+        return merge(collection -> collection.positions(query));
+    }
+
+    public int count(Query<E> query) {
+        Objects.requireNonNull(query);
+        return sum(fanOut(shard -> shard.read(collection -> collection.count(query))));
+    }
+
+    public int size(IndexDefinition<E> property, Object value) {
+        Objects.requireNonNull(property);
+        return sum(fanOut(shard -> shard.read(collection -> collection.size(property, value))));
+    }
+
+    /**
+     * @return elements of all shards in insertion order
+     */
+    public List<E> list() {
+        return merge(MultiIndexIndexedCollection::livePositions);
+    }
+
+    /**
+     * @return sequential stream of elements in insertion order, over copy of elements of all shards
+     */
+    public Stream<E> stream() {
+        return list().stream();
+    }
+
+    /**
+     * Registers index of property in all shards, lazy index is built at once as well.
+     *
+     * @see MultiIndexIndexedCollection#addIndex(IndexDefinition)
+     */
+    public void addIndex(IndexDefinition<E> property) {
+        Objects.requireNonNull(property);
+        fanOut(shard -> shard.write(collection -> {
+            collection.addIndex(property);
+            collection.buildIndices();
+            return null;
+        }));
+    }
+
+    /**
+     * @see MultiIndexIndexedCollection#dropIndex(IndexDefinition)
+     */
+    public boolean dropIndex(IndexDefinition<E> property) {
+        Objects.requireNonNull(property);
+        return fanOut(shard -> shard.write(collection -> collection.dropIndex(property))).contains(true);
+    }
+
+    public void compact() {
+        fanOut(shard -> shard.write(collection -> {
+            collection.compact();
+            return null;
+        }));
+    }
+
+    public void clear() {
+        fanOut(shard -> shard.write(collection -> {
+            collection.clear();
+            shard.sequences.clear();
+            return null;
+        }));
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int size() {
+        var result = 0;
+        for (Shard<E> shard : shards) {
+            result += shard.read(MultiIndexIndexedCollection::size);
+        }
+        return result;
+    }
+
+    /**
+     * Runs action for every shard in common {@link ForkJoinPool}.
+     *
+     * @return results of action by shards
+     */
+    private <R> List<R> fanOut(Function<Shard<E>, R> action) {
+        var tasks = new ArrayList<ForkJoinTask<R>>(shards.size());
+        for (Shard<E> shard : shards) {
+            tasks.add(ForkJoinTask.adapt(() -> action.apply(shard)));
+        }
+        ForkJoinTask.invokeAll(tasks);
+        var results = new ArrayList<R>(tasks.size());
+        for (ForkJoinTask<R> task : tasks) {
+            results.add(task.join());
+        }
+        return results;
+    }
+
+    /**
+     * Collects matched elements of all shards in parallel and orders them by insertion numbers. Matches of every
+     * shard come mostly ordered, so sorting mostly merges these runs.
+     */
+    private List<E> merge(Function<MultiIndexIndexedCollection<E>, IntArrayList> positions) {
+        var parts = fanOut(shard -> shard.sequenced(positions));
+        var matched = new ArrayList<Sequenced<E>>(parts.stream().mapToInt(List::size).sum());
+        parts.forEach(matched::addAll);
+        matched.sort(Comparator.comparingLong(Sequenced::sequence));
+        var result = new ArrayList<E>(matched.size());
+        for (Sequenced<E> sequenced : matched) {
+            result.add(sequenced.element());
+        }
+        return result;
+    }
+
+    private static int sum(List<Integer> counts) {
+        var result = 0;
+        for (int count : counts) {
+            result += count;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,402 @@
+package com.github.lexakimov.collections;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Binary file of {@link FrozenMultiIndexIndexedCollection}, laid out so that it can be queried in place when
+ * memory-mapped. All numbers are big-endian.
+ * <pre>
+ * int     magic, int version, int number of elements, int number of indices
+ * long    number of bytes of encoded elements
+ * byte[]  encoded elements one after another
+ * int[]   offsets of encoded elements followed by number of bytes of encoded elements
+ * for every index in order of constants of its enum:
+ *   int     number of bytes of index header
+ *   header  name of constant, kind of keys, int number of keys, keys in order of key numbers
+ *   int[]   offsets of keys followed by number of positions, see {@link FrozenIndex}
+ *   int[]   positions
+ * </pre>
+ * Keys of indices other than int and long ones may be {@code null}, strings or boxed primitives.
+ * <p>
+ * Opening maps encoded elements and positions, so pages are read from disk on demand. Only key dictionaries and key
+ * offsets are read to heap, they are proportional to the number of distinct keys. Every section must be smaller than
+ * 2 GB.
+ */
+final class SnapshotFile {
+
+    private static final int MAGIC = 0x4d494943;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_BYTES = 4 * Integer.BYTES + Long.BYTES;
+
+    private static final byte OBJECT_KEYS = 0;
+    private static final byte INT_KEYS = 1;
+    private static final byte LONG_KEYS = 2;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INTEGER = 2;
+    private static final byte LONG = 3;
+    private static final byte SHORT = 4;
+    private static final byte BYTE = 5;
+    private static final byte DOUBLE = 6;
+    private static final byte FLOAT = 7;
+    private static final byte CHARACTER = 8;
+    private static final byte BOOLEAN = 9;
+    private static final byte TUPLE = 10;
+
+    private SnapshotFile() {
+    }
+
+    /**
+     * Writes file next to given one, syncs it to disk and then moves it in place and syncs directory, so existing file
+     * is replaced only with complete one, which survives crash once method returns.
+     *
+     * @param indices indices in order of properties
+     * @throws IllegalArgumentException if there is a key of unsupported type or encoded elements exceed 2 GB
+     */
+    static <E> void write(Path path, List<E> elements, List<IndexDefinition<E>> properties,
+                          List<FrozenIndex<E>> indices, ElementCodec<E> codec) throws IOException {
+        var temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            writeTo(temporary, elements, properties, indices, codec);
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            syncDirectory(path.toAbsolutePath().getParent());
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Makes creation, renaming and deletion of files in directory durable. Skipped on platforms that cannot open
+     * directory as a file.
+     */
+    static void syncDirectory(Path directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    private static <E> void writeTo(Path path, List<E> elements, List<IndexDefinition<E>> properties,
+                                    List<FrozenIndex<E>> indices, ElementCodec<E> codec) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            var out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(elements.size());
+            out.writeInt(properties.size());
+            // number of bytes of encoded elements is written once they are encoded
+            out.writeLong(0);
+
+            var elementOffsets = new int[elements.size() + 1];
+            var encoder = new ElementEncoder<>(codec);
+            var total = 0L;
+            for (int i = 0; i < elements.size(); i++) {
+                var encoded = encoder.encode(elements.get(i));
+                total += encoded.remaining();
+                if (total > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("encoded elements exceed 2 GB");
+                }
+                out.write(encoded.array(), encoded.arrayOffset() + encoded.position(), encoded.remaining());
+                elementOffsets[i + 1] = (int) total;
+            }
+            writeInts(out, elementOffsets, elementOffsets.length);
+
+            for (int i = 0; i < properties.size(); i++) {
+                var index = indices.get(i);
+                var header = indexHeader(properties.get(i), index);
+                out.writeInt(header.length);
+                out.write(header);
+                var offsets = index.offsets();
+                writeInts(out, offsets, offsets.length);
+                var positions = index.positions();
+                var buffer = new int[Math.min(positions.remaining(), 1 << 14)];
+                while (positions.hasRemaining()) {
+                    var length = Math.min(positions.remaining(), buffer.length);
+                    positions.get(buffer, 0, length);
+                    writeInts(out, buffer, length);
+                }
+            }
+            out.flush();
+            channel.write(ByteBuffer.allocate(Long.BYTES).putLong(0, total), HEADER_BYTES - Long.BYTES);
+            channel.force(true);
+        }
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values, int length) throws IOException {
+        for (int i = 0; i < length; i++) {
+            out.writeInt(values[i]);
+        }
+    }
+
+    private static byte[] indexHeader(IndexDefinition<?> property, FrozenIndex<?> index) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        var out = new DataOutputStream(bytes);
+        writeString(out, name(property));
+        var keys = index.keys();
+        if (keys instanceof int[] ints) {
+            out.writeByte(INT_KEYS);
+            out.writeInt(ints.length);
+            writeInts(out, ints, ints.length);
+        } else if (keys instanceof long[] longs) {
+            out.writeByte(LONG_KEYS);
+            out.writeInt(longs.length);
+            for (long key : longs) {
+                out.writeLong(key);
+            }
+        } else {
+            var objects = (Object[]) keys;
+            out.writeByte(OBJECT_KEYS);
+            out.writeInt(objects.length);
+            for (Object key : objects) {
+                writeKey(out, key);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @throws IllegalArgumentException if key is neither {@code null}, string, boxed primitive nor tuple of them
+     */
+    static void writeKey(DataOutputStream out, Object key) throws IOException {
+        if (key == null) {
+            out.writeByte(NULL);
+        } else if (key instanceof String value) {
+            out.writeByte(STRING);
+            writeString(out, value);
+        } else if (key instanceof Integer value) {
+            out.writeByte(INTEGER);
+            out.writeInt(value);
+        } else if (key instanceof Long value) {
+            out.writeByte(LONG);
+            out.writeLong(value);
+        } else if (key instanceof Short value) {
+            out.writeByte(SHORT);
+            out.writeShort(value);
+        } else if (key instanceof Byte value) {
+            out.writeByte(BYTE);
+            out.writeByte(value);
+        } else if (key instanceof Double value) {
+            out.writeByte(DOUBLE);
+            out.writeDouble(value);
+        } else if (key instanceof Float value) {
+            out.writeByte(FLOAT);
+            out.writeFloat(value);
+        } else if (key instanceof Character value) {
+            out.writeByte(CHARACTER);
+            out.writeChar(value);
+        } else if (key instanceof Boolean value) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean(value);
+        } else if (key instanceof Tuple value) {
+            out.writeByte(TUPLE);
+            out.writeInt(value.size());
+            for (int i = 0; i < value.size(); i++) {
+                writeKey(out, value.get(i));
+            }
+        } else {
+            throw new IllegalArgumentException("keys of %s cannot be saved".formatted(key.getClass().getName()));
+        }
+    }
+
+    private static String name(IndexDefinition<?> property) {
+        if (property instanceof Enum<?> constant) {
+            return constant.name();
+        }
+        throw new IllegalArgumentException("index %s is not enum constant, so it cannot be saved".formatted(property));
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * @throws IllegalArgumentException if indices of file do not match constants of enum
+     * @throws IOException              if file is not a snapshot
+     */
+    static <E> FrozenMultiIndexIndexedCollection<E> open(Path path, List<IndexDefinition<E>> properties,
+                                                         ElementCodec<E> codec) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            var reader = new Reader(channel);
+            var header = reader.map(HEADER_BYTES);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("%s is not a snapshot of collection".formatted(path));
+            }
+            var version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("unsupported version %d of snapshot %s".formatted(version, path));
+            }
+            var size = header.getInt();
+            var indexCount = header.getInt();
+            var elementBytes = header.getLong();
+            if (indexCount != properties.size()) {
+                throw new IllegalArgumentException("snapshot has %d indices instead of %d"
+                        .formatted(indexCount, properties.size()));
+            }
+            var encodedElements = reader.map(elementBytes);
+            var elementOffsets = reader.map((size + 1L) * Integer.BYTES).asIntBuffer();
+            var elements = new MappedElements<>(encodedElements, elementOffsets, codec);
+
+            var indicesByProperty = new HashMap<IndexDefinition<E>, FrozenIndex<E>>();
+            for (IndexDefinition<E> property : properties) {
+                var indexHeader = reader.map(reader.map(Integer.BYTES).getInt());
+                var name = readString(indexHeader);
+                if (!name.equals(name(property))) {
+                    throw new IllegalArgumentException("snapshot has index %s instead of %s".formatted(name, property));
+                }
+                var keys = readKeys(indexHeader);
+                var offsets = new int[Array.getLength(keys) + 1];
+                reader.map((long) offsets.length * Integer.BYTES).asIntBuffer().get(offsets);
+                var positions = reader.map((long) offsets[offsets.length - 1] * Integer.BYTES).asIntBuffer();
+                indicesByProperty.put(property, FrozenIndex.of(property, keys, offsets, positions));
+            }
+            return new FrozenMultiIndexIndexedCollection<>(elements, properties, indicesByProperty);
+        }
+    }
+
+    private static Object readKeys(ByteBuffer header) throws IOException {
+        var kind = header.get();
+        var count = header.getInt();
+        switch (kind) {
+            case INT_KEYS -> {
+                var keys = new int[count];
+                header.asIntBuffer().get(keys);
+                return keys;
+            }
+            case LONG_KEYS -> {
+                var keys = new long[count];
+                header.asLongBuffer().get(keys);
+                return keys;
+            }
+            case OBJECT_KEYS -> {
+                var keys = new Object[count];
+                for (int i = 0; i < count; i++) {
+                    keys[i] = readKey(header);
+                }
+                return keys;
+            }
+            default -> throw new IOException("unknown kind of keys %d".formatted(kind));
+        }
+    }
+
+    static Object readKey(ByteBuffer in) throws IOException {
+        var type = in.get();
+        return switch (type) {
+            case NULL -> null;
+            case STRING -> readString(in);
+            case INTEGER -> in.getInt();
+            case LONG -> in.getLong();
+            case SHORT -> in.getShort();
+            case BYTE -> in.get();
+            case DOUBLE -> in.getDouble();
+            case FLOAT -> in.getFloat();
+            case CHARACTER -> in.getChar();
+            case BOOLEAN -> in.get() != 0;
+            case TUPLE -> {
+                var values = new Object[in.getInt()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = readKey(in);
+                }
+                yield new Tuple(values, false);
+            }
+            default -> throw new IOException("unknown type of key %d".formatted(type));
+        };
+    }
+
+    private static String readString(ByteBuffer in) {
+        var bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Maps consecutive sections of file.
+     */
+    private static final class Reader {
+
+        private final FileChannel channel;
+
+        private long position;
+
+        Reader(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        ByteBuffer map(long bytes) throws IOException {
+            if (position + bytes > channel.size()) {
+                throw new IOException("snapshot is truncated");
+            }
+            var buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, bytes);
+            position += bytes;
+            return buffer;
+        }
+    }
+
+    /**
+     * Elements decoded from memory-mapped file on every access.
+     */
+    static final class MappedElements<E> extends AbstractList<E> implements RandomAccess {
+
+        private final ByteBuffer encodedElements;
+
+        /**
+         * Offset of every element in encoded elements followed by their total length.
+         */
+        private final IntBuffer offsets;
+
+        private final ElementCodec<E> codec;
+
+        MappedElements(ByteBuffer encodedElements, IntBuffer offsets, ElementCodec<E> codec) {
+            this.encodedElements = encodedElements.asReadOnlyBuffer();
+            this.offsets = offsets;
+            this.codec = codec;
+        }
+
+        @Override
+        public E get(int index) {
+            Objects.checkIndex(index, size());
+            var from = offsets.get(index);
+            return codec.decode(encodedElements.slice(from, offsets.get(index + 1) - from));
+        }
+
+        @Override
+        public int size() {
+            return offsets.capacity() - 1;
+        }
+
+        /**
+         * @return size of mapped offsets and encoded elements
+         */
+        long estimatedBytes() {
+            return (long) offsets.capacity() * Integer.BYTES + encodedElements.capacity();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.github.lexakimov.collections;
+
+/**
+ * Receives events of collection while statistics are enabled, for example to export them to metrics system. Methods
+ * are called synchronously on the hot path, so they must be fast.
+ *
+ * @see MultiIndexIndexedCollection#enableStatistics(StatisticsListener)
+ */
+public interface StatisticsListener<E> {
+
+    /**
+     * Called on every search, check or count by value of property and for every equality condition of query, even if
+     * result is taken from cache.
+     *
+     * @param hit whether at least one element was found
+     */
+    default void onLookup(IndexDefinition<E> property, boolean hit) {
+    }
+
+    /**
+     * @param count number of added elements
+     * @param nanos duration of adding
+     */
+    default void onAdd(int count, long nanos) {
+    }
+
+    /**
+     * @param found number of matched elements
+     * @param nanos duration of evaluation
+     */
+    default void onQuery(Query<E> query, int found, long nanos) {
+    }
+}
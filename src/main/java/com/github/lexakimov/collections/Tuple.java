@@ -0,0 +1,104 @@
+package com.github.lexakimov.collections;
+
+import java.util.Arrays;
+import java.util.StringJoiner;
+
+/**
+ * Key of composite index, see {@link IndexDefinition#composite(java.util.function.Function[])}: values of several
+ * properties of element in fixed order.
+ * <p>
+ * Hash code is computed once, so lookup of tuple costs a single hash probe. Tuples are compared component by component
+ * in natural order with {@code null} first, tuple that is a prefix of another one precedes it.
+ */
+public final class Tuple implements Comparable<Tuple> {
+
+    private final Object[] values;
+
+    /**
+     * Marks bound that follows all tuples starting with values of this one, see {@link #prefixEnd()}.
+     */
+    private final boolean prefixEnd;
+
+    private final int hash;
+
+    Tuple(Object[] values, boolean prefixEnd) {
+        this.values = values;
+        this.prefixEnd = prefixEnd;
+        this.hash = Arrays.hashCode(values) * 31 + Boolean.hashCode(prefixEnd);
+    }
+
+    public static Tuple of(Object... values) {
+        return new Tuple(values.clone(), false);
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    public Object get(int index) {
+        return values[index];
+    }
+
+    /**
+     * @return tuple greater than this one and all tuples starting with values of this one, but less than any other
+     * greater tuple
+     */
+    Tuple prefixEnd() {
+        return new Tuple(values, true);
+    }
+
+    /**
+     * @throws ClassCastException if components are not {@link Comparable} to each other
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public int compareTo(Tuple other) {
+        var length = Math.min(values.length, other.values.length);
+        for (int i = 0; i < length; i++) {
+            var value = values[i];
+            var otherValue = other.values[i];
+            if (value != otherValue) {
+                if (value == null) {
+                    return -1;
+                }
+                if (otherValue == null) {
+                    return 1;
+                }
+                var comparison = ((Comparable<Object>) value).compareTo(otherValue);
+                if (comparison != 0) {
+                    return comparison;
+                }
+            }
+        }
+        if (values.length == other.values.length) {
+            return Boolean.compare(prefixEnd, other.prefixEnd);
+        }
+        if (values.length < other.values.length) {
+            return prefixEnd ? 1 : -1;
+        }
+        return other.prefixEnd ? -1 : 1;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        return o instanceof Tuple other && hash == other.hash && prefixEnd == other.prefixEnd
+                && Arrays.equals(values, other.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        var joiner = new StringJoiner(", ", "(", ")");
+        for (Object value : values) {
+            joiner.add(String.valueOf(value));
+        }
+        return joiner.toString();
+    }
+}
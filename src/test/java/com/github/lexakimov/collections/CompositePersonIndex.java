@@ -0,0 +1,27 @@
+package com.github.lexakimov.collections;
+
+import java.util.function.Function;
+
+enum CompositePersonIndex implements IndexDefinition<Person> {
+    FULL_NAME(IndexDefinition.composite(Person::firstName, Person::lastName), false),
+    LAST_NAME_AND_AGE(IndexDefinition.composite(Person::lastName, Person::age), true);
+
+    private final Function<Person, Object> func;
+
+    private final boolean ordered;
+
+    CompositePersonIndex(Function<Person, Object> func, boolean ordered) {
+        this.func = func;
+        this.ordered = ordered;
+    }
+
+    @Override
+    public Function<Person, Object> getFunc() {
+        return func;
+    }
+
+    @Override
+    public boolean isOrdered() {
+        return ordered;
+    }
+}
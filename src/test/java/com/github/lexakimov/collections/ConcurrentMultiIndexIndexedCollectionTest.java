@@ -0,0 +1,72 @@
+package com.github.lexakimov.collections;
+
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import static com.github.lexakimov.collections.PersonIndex.AGE;
+import static com.github.lexakimov.collections.PersonIndex.FIRST_NAME;
+import static com.github.lexakimov.collections.PersonIndex.LAST_NAME;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConcurrentMultiIndexIndexedCollectionTest {
+
+    @Test
+    void addSearchAndRemove() {
+        var uut = new ConcurrentMultiIndexIndexedCollection<>(PersonIndex.class);
+        uut.add(new Person("Caleb", "Dominguez", 1));
+        uut.add(new Person("James", "Ryan", 2));
+        uut.add(new Person("Caleb", "Hawkins", 3));
+
+        assertThat(uut.size(), equalTo(3));
+        assertThat(uut.searchByProperty(FIRST_NAME, "Caleb"), hasSize(2));
+        assertThat(uut.searchRange(AGE, 2, true, 3, true), hasSize(2));
+
+        assertTrue(uut.remove(LAST_NAME, "Ryan"));
+        assertFalse(uut.contains(FIRST_NAME, "James"));
+        assertThat(uut.list(), hasSize(2));
+        assertThrows(NullPointerException.class, () -> uut.add(null));
+        assertThat(uut.size(), equalTo(2));
+
+        assertTrue(uut.addAll(List.of(new Person("James", "Ryan", 2), new Person("John", "King", 4))));
+        assertThat(uut.searchGreaterThan(AGE, 2, true), hasSize(3));
+    }
+
+    @Test
+    void readWhileWriting() {
+        var uut = new ConcurrentMultiIndexIndexedCollection<>(PersonIndex.class);
+        var elementsCount = 2_000;
+        var writing = new AtomicBoolean(true);
+
+        var readers = new ArrayList<CompletableFuture<Void>>();
+        for (int r = 0; r < 2; r++) {
+            readers.add(CompletableFuture.runAsync(() -> {
+                var lastSize = 0;
+                while (writing.get()) {
+                    // every element is added with age 0 and last name "Smith", so both counts must match
+                    var found = uut.searchByProperty(LAST_NAME, "Smith").size();
+                    var counted = uut.count(Query.eq(AGE, 0));
+                    assertThat(found, greaterThanOrEqualTo(lastSize));
+                    assertThat(counted, greaterThanOrEqualTo(found));
+                    lastSize = found;
+                }
+            }));
+        }
+
+        for (int i = 0; i < elementsCount; i++) {
+            uut.add(new Person("name" + i, "Smith", 0));
+        }
+        writing.set(false);
+        readers.forEach(CompletableFuture::join);
+
+        assertThat(uut.size(), equalTo(elementsCount));
+        assertThat(uut.searchByProperty(LAST_NAME, "Smith"), hasSize(elementsCount));
+    }
+}
@@ -0,0 +1,285 @@
+package com.github.lexakimov.collections;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+import static com.github.lexakimov.collections.PersonIndex.AGE;
+import static com.github.lexakimov.collections.PersonIndex.FIRST_NAME;
+import static com.github.lexakimov.collections.PersonIndex.LAST_NAME;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrozenMultiIndexIndexedCollectionTest {
+
+    private static final Person CALEB_DOMINGUEZ = new Person("Caleb", "Dominguez", 3);
+    private static final Person JAMES_RYAN = new Person("James", "Ryan", 1);
+    private static final Person CALEB_HAWKINS = new Person("Caleb", "Hawkins", 2);
+    private static final Person COLLEEN = new Person("Colleen", null, 3);
+
+    enum PrimitivePersonIndex implements IndexDefinition<Person> {
+        AGE {
+            @Override
+            public ToIntFunction<Person> getIntFunc() {
+                return Person::age;
+            }
+        },
+        AGE_IN_MILLIS {
+            @Override
+            public ToLongFunction<Person> getLongFunc() {
+                return person -> person.age() * 31_536_000_000L;
+            }
+        };
+
+        @Override
+        public Function<Person, Object> getFunc() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Int extractor is not applicable to multi-valued index and must be ignored.
+     */
+    enum MultiValuedPersonIndex implements IndexDefinition<Person> {
+        NAMES;
+
+        @Override
+        public Function<Person, Object> getFunc() {
+            return person -> Stream.of(person.firstName(), person.lastName()).filter(Objects::nonNull).toList();
+        }
+
+        @Override
+        public ToIntFunction<Person> getIntFunc() {
+            return Person::age;
+        }
+
+        @Override
+        public boolean isMultiValued() {
+            return true;
+        }
+    }
+
+    @Test
+    void searchByProperty() {
+        var uut = freeze(CALEB_DOMINGUEZ, JAMES_RYAN, CALEB_HAWKINS, COLLEEN);
+
+        assertThat(uut.size(), equalTo(4));
+        assertThat(uut.searchByProperty(FIRST_NAME, "Caleb"), contains(CALEB_DOMINGUEZ, CALEB_HAWKINS));
+        assertThat(uut.searchByProperty(LAST_NAME, null), contains(COLLEEN));
+        assertThat(uut.searchByProperty(FIRST_NAME, "John"), empty());
+        assertThat(uut.size(FIRST_NAME, "Caleb"), equalTo(2));
+        assertThat(uut.size(FIRST_NAME, "John"), equalTo(0));
+        assertTrue(uut.contains(LAST_NAME, "Ryan"));
+        assertFalse(uut.contains(LAST_NAME, "King"));
+        assertTrue(uut.contains(JAMES_RYAN));
+        assertThat(uut.list(), contains(CALEB_DOMINGUEZ, JAMES_RYAN, CALEB_HAWKINS, COLLEEN));
+    }
+
+    @Test
+    void searchByOrderedIndex() {
+        var uut = freeze(CALEB_DOMINGUEZ, JAMES_RYAN, CALEB_HAWKINS, COLLEEN);
+
+        assertThat(uut.searchRange(AGE, 2, true, 3, false), contains(CALEB_HAWKINS));
+        assertThat(uut.searchRange(AGE, 2, false, 2, false), empty());
+        assertThat(uut.searchGreaterThan(AGE, 2, false), contains(CALEB_DOMINGUEZ, COLLEEN));
+        assertThat(uut.searchLessThan(AGE, 2, true), contains(JAMES_RYAN, CALEB_HAWKINS));
+        assertThat(uut.min(AGE), equalTo(Optional.of(JAMES_RYAN)));
+        assertThat(uut.max(AGE), equalTo(Optional.of(CALEB_DOMINGUEZ)));
+        assertThat(uut.list(AGE), contains(JAMES_RYAN, CALEB_HAWKINS, CALEB_DOMINGUEZ, COLLEEN));
+        assertThat(uut.stream(AGE).toList(), equalTo(uut.list(AGE)));
+        assertThat(uut.stream(AGE).parallel().toList(), equalTo(uut.list(AGE)));
+        assertThat(uut.stream().parallel().toList(), equalTo(uut.list()));
+
+        assertThrows(IllegalArgumentException.class, () -> uut.searchRange(AGE, 3, true, 2, true));
+        assertThrows(IllegalArgumentException.class, () -> uut.min(FIRST_NAME));
+    }
+
+    @Test
+    void searchByQuery() {
+        var uut = freeze(CALEB_DOMINGUEZ, JAMES_RYAN, CALEB_HAWKINS, COLLEEN);
+
+        var query = Query.or(Query.and(Query.eq(FIRST_NAME, "Caleb"), Query.not(Query.eq(AGE, 3))),
+                Query.eq(LAST_NAME, "Ryan"));
+        assertThat(uut.search(query), contains(JAMES_RYAN, CALEB_HAWKINS));
+        assertThat(uut.count(Query.not(Query.eq(AGE, 3))), equalTo(2));
+    }
+
+    @Test
+    void searchByPrimitiveKeys() {
+        var collection = new MultiIndexIndexedCollection<>(PrimitivePersonIndex.class);
+        List.of(CALEB_DOMINGUEZ, JAMES_RYAN, CALEB_HAWKINS, COLLEEN).forEach(collection::add);
+        var uut = collection.freeze();
+
+        assertThat(uut.searchByProperty(PrimitivePersonIndex.AGE, 3), contains(CALEB_DOMINGUEZ, COLLEEN));
+        assertThat(uut.searchByProperty(PrimitivePersonIndex.AGE, (Object) 3), hasSize(2));
+        assertThat(uut.searchByProperty(PrimitivePersonIndex.AGE, 3L), empty());
+        assertThat(uut.size(PrimitivePersonIndex.AGE_IN_MILLIS, 31_536_000_000L), equalTo(1));
+        assertFalse(uut.contains(PrimitivePersonIndex.AGE, 4));
+    }
+
+    @Test
+    void snapshotIsIndependentOfCollection() {
+        var collection = new MultiIndexIndexedCollection<>(PersonIndex.class);
+        List.of(CALEB_DOMINGUEZ, JAMES_RYAN, CALEB_HAWKINS, COLLEEN).forEach(collection::add);
+        collection.remove(LAST_NAME, "Ryan");
+        var uut = collection.freeze();
+
+        collection.add(JAMES_RYAN);
+        collection.remove(FIRST_NAME, "Caleb");
+
+        assertThat(uut.list(), contains(CALEB_DOMINGUEZ, CALEB_HAWKINS, COLLEEN));
+        assertThat(uut.searchByProperty(FIRST_NAME, "Caleb"), hasSize(2));
+        assertFalse(uut.contains(JAMES_RYAN));
+        assertThrows(UnsupportedOperationException.class, () -> uut.list().add(JAMES_RYAN));
+        assertEquals(uut, freeze(CALEB_DOMINGUEZ, CALEB_HAWKINS, COLLEEN));
+    }
+
+    @Test
+    void matchesModifiableCollection() {
+        var random = new Random(7);
+        var collection = new MultiIndexIndexedCollection<>(PersonIndex.class);
+        for (int i = 0; i < 10_000; i++) {
+            collection.add(new Person("name" + random.nextInt(500), "surname" + random.nextInt(20),
+                    random.nextInt(100)));
+        }
+        collection.remove(LAST_NAME, "surname0");
+        var uut = collection.freeze();
+
+        for (int i = 0; i < 500; i++) {
+            assertThat(uut.searchByProperty(FIRST_NAME, "name" + i),
+                    equalTo(collection.searchByProperty(FIRST_NAME, "name" + i)));
+        }
+        for (int i = 0; i < 20; i++) {
+            var query = Query.and(Query.eq(LAST_NAME, "surname" + i), Query.not(Query.eq(AGE, i)));
+            assertThat(uut.search(query), equalTo(collection.search(query)));
+        }
+        assertThat(uut.searchRange(AGE, 10, true, 20, false),
+                equalTo(collection.searchRange(AGE, 10, true, 20, false)));
+        assertThat(uut.list(AGE), equalTo(collection.list(AGE)));
+    }
+
+    @Test
+    void footprintIsSmallerThanOfModifiableCollection() {
+        var random = new Random(7);
+        var collection = new MultiIndexIndexedCollection<>(PersonIndex.class);
+        for (int i = 0; i < 10_000; i++) {
+            collection.add(new Person("name" + random.nextInt(500), "surname" + random.nextInt(20),
+                    random.nextInt(100)));
+        }
+        var uut = collection.freeze();
+
+        var frozen = uut.footprint();
+        var modifiable = collection.footprint();
+        assertThat(frozen.keys(), equalTo(modifiable.keys()));
+        assertTrue(frozen.maps() < modifiable.maps());
+        assertTrue(frozen.total() < modifiable.total());
+    }
+
+    @Test
+    void savedSnapshotIsQueriedInPlace(@TempDir Path directory) throws IOException {
+        var random = new Random(7);
+        var collection = new MultiIndexIndexedCollection<>(PersonIndex.class);
+        for (int i = 0; i < 10_000; i++) {
+            collection.add(new Person("name" + random.nextInt(500), random.nextInt(10) == 0 ? null
+                    : "surname" + random.nextInt(20), random.nextInt(100)));
+        }
+        collection.remove(LAST_NAME, "surname0");
+        var file = directory.resolve("persons.snapshot");
+        collection.save(file, new PersonCodec());
+
+        var uut = FrozenMultiIndexIndexedCollection.open(file, PersonIndex.class, new PersonCodec());
+        assertEquals(collection.freeze(), uut);
+        assertThat(uut.searchByProperty(FIRST_NAME, "name42"),
+                equalTo(collection.searchByProperty(FIRST_NAME, "name42")));
+        assertThat(uut.searchByProperty(LAST_NAME, null), equalTo(collection.searchByProperty(LAST_NAME, null)));
+        var query = Query.and(Query.eq(LAST_NAME, "surname3"), Query.not(Query.eq(AGE, 3)));
+        assertThat(uut.search(query), equalTo(collection.search(query)));
+        assertThat(uut.searchRange(AGE, 10, true, 20, false),
+                equalTo(collection.searchRange(AGE, 10, true, 20, false)));
+        assertThat(uut.stream(AGE).parallel().toList(), equalTo(collection.list(AGE)));
+        assertTrue(uut.footprint().elements() + uut.footprint().postingLists() < Files.size(file));
+    }
+
+    @Test
+    void savedSnapshotOfPrimitiveKeys(@TempDir Path directory) throws IOException {
+        var collection = new MultiIndexIndexedCollection<>(PrimitivePersonIndex.class);
+        List.of(CALEB_DOMINGUEZ, JAMES_RYAN, CALEB_HAWKINS, COLLEEN).forEach(collection::add);
+        var file = directory.resolve("persons.snapshot");
+        collection.save(file, new PersonCodec());
+
+        var uut = FrozenMultiIndexIndexedCollection.open(file, PrimitivePersonIndex.class, new PersonCodec());
+        assertThat(uut.searchByProperty(PrimitivePersonIndex.AGE, 3), contains(CALEB_DOMINGUEZ, COLLEEN));
+        assertThat(uut.size(PrimitivePersonIndex.AGE_IN_MILLIS, 31_536_000_000L), equalTo(1));
+        assertThat(uut.list(), contains(CALEB_DOMINGUEZ, JAMES_RYAN, CALEB_HAWKINS, COLLEEN));
+    }
+
+    @Test
+    void savedSnapshotOfMultiValuedKeys(@TempDir Path directory) throws IOException {
+        var collection = new MultiIndexIndexedCollection<>(MultiValuedPersonIndex.class);
+        collection.addAll(List.of(CALEB_DOMINGUEZ, JAMES_RYAN, CALEB_HAWKINS, COLLEEN));
+        var frozen = collection.freeze();
+        assertThat(frozen.searchByProperty(MultiValuedPersonIndex.NAMES, "Caleb"),
+                contains(CALEB_DOMINGUEZ, CALEB_HAWKINS));
+        var file = directory.resolve("persons.snapshot");
+        frozen.save(file, new PersonCodec());
+
+        var uut = FrozenMultiIndexIndexedCollection.open(file, MultiValuedPersonIndex.class, new PersonCodec());
+        assertThat(uut.searchByProperty(MultiValuedPersonIndex.NAMES, "Caleb"),
+                contains(CALEB_DOMINGUEZ, CALEB_HAWKINS));
+        assertThat(uut.searchByProperty(MultiValuedPersonIndex.NAMES, "Hawkins"), contains(CALEB_HAWKINS));
+        assertThat(uut.list(), contains(CALEB_DOMINGUEZ, JAMES_RYAN, CALEB_HAWKINS, COLLEEN));
+    }
+
+    @Test
+    void savedSnapshotOfCompositeKeys(@TempDir Path directory) throws IOException {
+        var collection = new MultiIndexIndexedCollection<>(CompositePersonIndex.class);
+        collection.addAll(List.of(CALEB_DOMINGUEZ, JAMES_RYAN, CALEB_HAWKINS, COLLEEN));
+        var file = directory.resolve("snapshot");
+        collection.save(file, new PersonCodec());
+
+        var uut = FrozenMultiIndexIndexedCollection.open(file, CompositePersonIndex.class, new PersonCodec());
+        assertThat(uut.searchByProperty(CompositePersonIndex.FULL_NAME, Tuple.of("Caleb", "Hawkins")),
+                contains(CALEB_HAWKINS));
+        assertThat(uut.searchByProperty(CompositePersonIndex.FULL_NAME, Tuple.of("Colleen", null)), contains(COLLEEN));
+        assertThat(uut.searchPrefix(CompositePersonIndex.LAST_NAME_AND_AGE, "Hawkins"), contains(CALEB_HAWKINS));
+        assertThat(uut.searchPrefix(CompositePersonIndex.LAST_NAME_AND_AGE), contains(COLLEEN, CALEB_DOMINGUEZ,
+                CALEB_HAWKINS, JAMES_RYAN));
+        assertThat(uut.searchPrefix(CompositePersonIndex.LAST_NAME_AND_AGE, "Ryan", 2), empty());
+    }
+
+    @Test
+    void openRejectsForeignFiles(@TempDir Path directory) throws IOException {
+        var file = directory.resolve("persons.snapshot");
+        freeze(CALEB_DOMINGUEZ, JAMES_RYAN).save(file, new PersonCodec());
+        assertThrows(IllegalArgumentException.class,
+                () -> FrozenMultiIndexIndexedCollection.open(file, PrimitivePersonIndex.class, new PersonCodec()));
+
+        var notSnapshot = Files.writeString(directory.resolve("persons.csv"), "Caleb Dominguez 3 years old");
+        assertThrows(IOException.class,
+                () -> FrozenMultiIndexIndexedCollection.open(notSnapshot, PersonIndex.class, new PersonCodec()));
+    }
+
+    private static FrozenMultiIndexIndexedCollection<Person> freeze(Person... persons) {
+        var collection = new MultiIndexIndexedCollection<>(PersonIndex.class);
+        for (Person person : persons) {
+            collection.add(person);
+        }
+        return collection.freeze();
+    }
+}
@@ -0,0 +1,220 @@
+package com.github.lexakimov.collections;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import static com.github.lexakimov.collections.PersonIndex.FIRST_NAME;
+import static com.github.lexakimov.collections.PersonIndex.LAST_NAME;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JournalTest {
+
+    private static final Person CALEB_DOMINGUEZ = new Person("Caleb", "Dominguez", 3);
+    private static final Person JAMES_RYAN = new Person("James", "Ryan", 1);
+    private static final Person CALEB_HAWKINS = new Person("Caleb", "Hawkins", 2);
+    private static final Person COLLEEN = new Person("Colleen", null, 3);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void modificationsSurviveRestart() throws IOException {
+        var collection = new MultiIndexIndexedCollection<>(PersonIndex.class);
+        try (var journal = Journal.open(directory, collection, new PersonCodec())) {
+            collection.add(CALEB_DOMINGUEZ);
+            collection.addAll(List.of(JAMES_RYAN, CALEB_HAWKINS, COLLEEN));
+            collection.remove(LAST_NAME, "Ryan");
+            journal.sync();
+        }
+
+        var restored = new MultiIndexIndexedCollection<>(PersonIndex.class);
+        withJournal(restored, () -> {
+            assertThat(restored.list(), contains(CALEB_DOMINGUEZ, CALEB_HAWKINS, COLLEEN));
+            assertThat(restored.searchByProperty(LAST_NAME, null), contains(COLLEEN));
+            restored.clear();
+            restored.add(JAMES_RYAN);
+        });
+
+        var restoredAgain = new MultiIndexIndexedCollection<>(PersonIndex.class);
+        withJournal(restoredAgain, () -> {
+            assertThat(restoredAgain.list(), contains(JAMES_RYAN));
+        });
+    }
+
+    @Test
+    void updatesSurviveRestart() throws IOException {
+        var collection = new MultiIndexIndexedCollection<>(PersonIndex.class);
+        try (var journal = Journal.open(directory, collection, new PersonCodec())) {
+            collection.addAll(List.of(CALEB_DOMINGUEZ, JAMES_RYAN));
+            collection.update(JAMES_RYAN, new Person("James", "Hawkins", 1));
+            collection.add(COLLEEN);
+            collection.replace(FIRST_NAME, "Colleen", new Person("Colleen", "Ryan", 3));
+            journal.sync();
+        }
+
+        var restored = new MultiIndexIndexedCollection<>(PersonIndex.class);
+        withJournal(restored, () -> {
+            assertThat(restored.list(), contains(CALEB_DOMINGUEZ, new Person("James", "Hawkins", 1),
+                    new Person("Colleen", "Ryan", 3)));
+            assertThat(restored.searchByProperty(LAST_NAME, "Ryan"), contains(new Person("Colleen", "Ryan", 3)));
+        });
+    }
+
+    @Test
+    void checkpointReplacesSegmentsWithSnapshot() throws IOException {
+        var collection = new MultiIndexIndexedCollection<>(PersonIndex.class);
+        try (var journal = Journal.open(directory, collection, new PersonCodec(), 4096)) {
+            collection.addAll(IntStream.range(0, 1_000)
+                    .mapToObj(i -> new Person("name" + i, "surname" + i % 10, i))
+                    .toList());
+            collection.remove(LAST_NAME, "surname0");
+            collection.add(CALEB_DOMINGUEZ);
+            journal.checkpoint().join();
+            collection.add(JAMES_RYAN);
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files.toList(), hasSize(2));
+        }
+
+        var restored = new MultiIndexIndexedCollection<>(PersonIndex.class);
+        withJournal(restored, () -> {
+            assertEquals(collection, restored);
+            assertThat(restored.size(), equalTo(902));
+            assertThat(restored.searchByProperty(FIRST_NAME, "Caleb"), contains(CALEB_DOMINGUEZ));
+        });
+    }
+
+    @Test
+    void tornRecordIsIgnored() throws IOException {
+        var collection = new MultiIndexIndexedCollection<>(PersonIndex.class);
+        withJournal(collection, () -> {
+            collection.add(CALEB_DOMINGUEZ);
+            collection.add(JAMES_RYAN);
+        });
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.filter(file -> file.getFileName().toString().startsWith("journal-")).findFirst()
+                    .orElseThrow();
+        }
+        // length of record and a part of its checksum
+        Files.write(segment, new byte[]{0, 0, 0, 100, 1, 2}, StandardOpenOption.APPEND);
+
+        var restored = new MultiIndexIndexedCollection<>(PersonIndex.class);
+        withJournal(restored, () -> {
+            assertThat(restored.list(), contains(CALEB_DOMINGUEZ, JAMES_RYAN));
+            restored.add(COLLEEN);
+        });
+
+        var restoredAgain = new MultiIndexIndexedCollection<>(PersonIndex.class);
+        withJournal(restoredAgain, () -> {
+            assertThat(restoredAgain.list(), contains(CALEB_DOMINGUEZ, JAMES_RYAN, COLLEEN));
+        });
+    }
+
+    @Test
+    void collectionMustBeEmptyAndNotJournaled() throws IOException {
+        var collection = new MultiIndexIndexedCollection<>(PersonIndex.class);
+        withJournal(collection, () -> {
+            assertThrows(IllegalArgumentException.class,
+                    () -> Journal.open(directory.resolve("other"), collection, new PersonCodec()));
+            collection.add(COLLEEN);
+        });
+        assertThrows(IllegalArgumentException.class,
+                () -> Journal.open(directory.resolve("other"), collection, new PersonCodec()));
+    }
+
+    enum NameIndex implements IndexDefinition<Person> {
+        FIRST_NAME(Person::firstName),
+        NAME(person -> new Name(person.firstName(), person.lastName()));
+
+        private final Function<Person, Object> func;
+
+        NameIndex(Function<Person, Object> func) {
+            this.func = func;
+        }
+
+        @Override
+        public Function<Person, Object> getFunc() {
+            return func;
+        }
+    }
+
+    /**
+     * Key that journal cannot write.
+     */
+    record Name(String firstName, String lastName) {
+    }
+
+    @Test
+    void removalThatCannotBeJournaledIsNotApplied() throws IOException {
+        var collection = new MultiIndexIndexedCollection<>(NameIndex.class);
+        try (var journal = Journal.open(directory, collection, new PersonCodec())) {
+            collection.addAll(List.of(CALEB_DOMINGUEZ, JAMES_RYAN));
+            assertThrows(IllegalArgumentException.class,
+                    () -> collection.remove(NameIndex.NAME, new Name("James", "Ryan")));
+            assertThat(collection.list(), contains(CALEB_DOMINGUEZ, JAMES_RYAN));
+            collection.remove(NameIndex.FIRST_NAME, "Caleb");
+            journal.sync();
+        }
+
+        var restored = new MultiIndexIndexedCollection<>(NameIndex.class);
+        try (var journal = Journal.open(directory, restored, new PersonCodec())) {
+            assertThat(restored.list(), contains(JAMES_RYAN));
+            assertThat(restored.searchByProperty(NameIndex.NAME, new Name("James", "Ryan")), contains(JAMES_RYAN));
+            journal.sync();
+        }
+    }
+
+    @Test
+    void elementThatCannotBeEncodedIsNotAdded() throws IOException {
+        var codec = new PersonCodec() {
+            @Override
+            public void encode(Person element, ByteBuffer buffer) {
+                if (element.lastName() == null) {
+                    throw new IllegalStateException("cannot encode");
+                }
+                super.encode(element, buffer);
+            }
+        };
+        var collection = new MultiIndexIndexedCollection<>(PersonIndex.class);
+        withJournal(collection, codec, () -> {
+            collection.add(CALEB_DOMINGUEZ);
+            assertThrows(IllegalStateException.class, () -> collection.add(COLLEEN));
+            assertThrows(IllegalStateException.class, () -> collection.addAll(List.of(JAMES_RYAN, COLLEEN)));
+            assertThrows(IllegalStateException.class, () -> collection.update(CALEB_DOMINGUEZ, COLLEEN));
+            assertThat(collection.list(), contains(CALEB_DOMINGUEZ));
+            assertThat(collection.searchByProperty(FIRST_NAME, "Colleen"), hasSize(0));
+        });
+
+        var restored = new MultiIndexIndexedCollection<>(PersonIndex.class);
+        withJournal(restored, () -> assertEquals(collection, restored));
+    }
+
+    /**
+     * Opens journal of collection, runs action and syncs journal before closing it.
+     */
+    private void withJournal(MultiIndexIndexedCollection<Person> collection, Runnable action) throws IOException {
+        withJournal(collection, new PersonCodec(), action);
+    }
+
+    private void withJournal(MultiIndexIndexedCollection<Person> collection, ElementCodec<Person> codec,
+                             Runnable action) throws IOException {
+        try (var journal = Journal.open(directory, collection, codec)) {
+            action.run();
+            journal.sync();
+        }
+    }
+}
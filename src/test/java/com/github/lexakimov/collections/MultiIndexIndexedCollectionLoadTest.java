@@ -67,6 +67,38 @@ class MultiIndexIndexedCollectionLoadTest {
         performLinearSearch(plainList, FIRST_NAME, "Steven");
     }
 
+    @Test
+    void bulkLoadOfHugeCollection() throws IOException, URISyntaxException {
+        var plainList = readPersons();
+
+        var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+        var start = System.currentTimeMillis();
+        uut.addAll(plainList);
+        out.printf("%s elements added to collection by addAll for %sms%n", uut.size(),
+                System.currentTimeMillis() - start);
+
+        Assertions.assertEquals(plainList.size(), uut.size());
+        performSearchInCollection(uut, FIRST_NAME, "Kristin");
+    }
+
+    private List<Person> readPersons() throws IOException, URISyntaxException {
+        var csvFilePath = Paths.get(getClass().getClassLoader().getResource("500_000_random_names.csv").toURI());
+        var plainList = new ArrayList<Person>();
+        var start = System.currentTimeMillis();
+        for (int i = 0; i < 30; i++) {
+            try (var lines = Files.lines(csvFilePath)) {
+                lines
+                        .map(name -> {
+                            var spaceIndex = name.indexOf(' ');
+                            return new Person(name.substring(0, spaceIndex), name.substring(spaceIndex + 1), 10);
+                        })
+                        .forEach(plainList::add);
+            }
+        }
+        out.printf("%s elements parsed from CSV for %sms%n", plainList.size(), System.currentTimeMillis() - start);
+        return plainList;
+    }
+
     private static void performLinearSearch(
             List<Person> plainList,
             PersonIndex property,
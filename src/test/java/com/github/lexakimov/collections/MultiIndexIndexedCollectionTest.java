@@ -5,20 +5,43 @@ import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.Spliterator;
 import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import static com.github.lexakimov.collections.PersonIndex.AGE;
 import static com.github.lexakimov.collections.PersonIndex.FIRST_NAME;
 import static com.github.lexakimov.collections.PersonIndex.LAST_NAME;
+import static java.util.stream.Collectors.toSet;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -90,6 +113,87 @@ class MultiIndexIndexedCollectionTest {
             var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
             assertThrows(NullPointerException.class, () -> uut.add(null));
         }
+
+        enum LastNameLengthIndex implements IndexDefinition<Person> {
+            FIRST_NAME(Person::firstName),
+            LAST_NAME_LENGTH(person -> person.lastName().length());
+
+            private final Function<Person, Object> func;
+
+            LastNameLengthIndex(Function<Person, Object> func) {
+                this.func = func;
+            }
+
+            @Override
+            public Function<Person, Object> getFunc() {
+                return func;
+            }
+        }
+
+        @Test
+        void failedIndexLeavesCollectionUnchanged() {
+            var uut = new MultiIndexIndexedCollection<>(LastNameLengthIndex.class);
+            uut.add(new Person("Caleb", "Dominguez", 1));
+            var largeBatch = new ArrayList<Person>();
+            for (int i = 0; i < 10_000; i++) {
+                largeBatch.add(new Person("Caleb", i == 5_000 ? null : "Ryan", i));
+            }
+
+            assertThrows(NullPointerException.class, () -> uut.add(new Person("Caleb", null, 2)));
+            assertThrows(NullPointerException.class, () -> uut.addAll(largeBatch));
+
+            assertThat(uut.list(), contains(new Person("Caleb", "Dominguez", 1)));
+            assertThat(uut.searchByProperty(LastNameLengthIndex.FIRST_NAME, "Caleb"),
+                    contains(new Person("Caleb", "Dominguez", 1)));
+            assertThat(uut.searchByProperty(LastNameLengthIndex.LAST_NAME_LENGTH, 4), empty());
+            uut.add(new Person("Caleb", "Ryan", 2));
+            assertThat(uut.searchByProperty(LastNameLengthIndex.FIRST_NAME, "Caleb"), hasSize(2));
+        }
+    }
+
+    @Nested
+    @DisplayName("add elements in bulk")
+    class AddAll {
+
+        @Test
+        void addAllIsEqualToSequentialAdd() {
+            var persons = new ArrayList<Person>();
+            for (int i = 0; i < 50_000; i++) {
+                persons.add(new Person("name" + i % 1000, "surname" + i % 7, i % 100));
+            }
+            var expected = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            expected.add(new Person("Caleb", "Dominguez", 1));
+            persons.forEach(expected::add);
+
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            uut.add(new Person("Caleb", "Dominguez", 1));
+            assertTrue(uut.addAll(persons));
+
+            assertEquals(expected, uut);
+            assertThat(uut.searchByProperty(FIRST_NAME, "name7"),
+                    equalTo(expected.searchByProperty(FIRST_NAME, "name7")));
+            assertThat(uut.searchByProperty(LAST_NAME, "surname3"),
+                    equalTo(expected.searchByProperty(LAST_NAME, "surname3")));
+            assertThat(uut.searchRange(AGE, 1, true, 2, true), equalTo(expected.searchRange(AGE, 1, true, 2, true)));
+        }
+
+        @Test
+        void addAllFromStream() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            assertTrue(uut.addAll(Stream.of(new Person("Caleb", "Dominguez", 1), new Person("James", "Ryan", 2))));
+            assertFalse(uut.addAll(Stream.empty()));
+            assertThat(uut.size(), equalTo(2));
+            assertThat(uut.searchByProperty(LAST_NAME, "Ryan"), hasSize(1));
+        }
+
+        @Test
+        void addAllWithNullElement() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            var persons = Arrays.asList(new Person("Caleb", "Dominguez", 1), null);
+            assertThrows(NullPointerException.class, () -> uut.addAll(persons));
+            assertTrue(uut.isEmpty());
+            assertFalse(uut.contains(FIRST_NAME, "Caleb"));
+        }
     }
 
     @Nested
@@ -114,6 +218,15 @@ class MultiIndexIndexedCollectionTest {
 
             assertThat(uut.size(FIRST_NAME, null), equalTo(2));
         }
+
+        @Test
+        void sizeByMissingValue() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElementsWithIntersection(uut));
+
+            assertThat(uut.size(FIRST_NAME, "Lex"), equalTo(0));
+            assertThat(uut.size(AGE, (Object) 11), equalTo(0));
+        }
     }
 
     @Test
@@ -177,6 +290,131 @@ class MultiIndexIndexedCollectionTest {
             assertFalse(uut.remove(FIRST_NAME, "Jacob"));
             assertThat(uut.size(), equalTo(9));
         }
+
+        @Test
+        void removeByPropertyUpdatesOtherIndices() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElementsWithIntersection(uut));
+
+            assertTrue(uut.remove(FIRST_NAME, "Jacob"));
+            assertThat(uut.size(), equalTo(7));
+            assertThat(uut.size(LAST_NAME, "Dominguez"), equalTo(2));
+            assertFalse(uut.contains(LAST_NAME, "Smith"));
+            assertFalse(uut.contains(LAST_NAME, "Fuller"));
+
+            var result = uut.searchByProperty(LAST_NAME, "Dominguez");
+            assertThat(result.stream().map(Person::age).toList(), equalTo(List.of(1, 6)));
+        }
+
+        @Test
+        void removeAndAddAfterCompaction() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElementsWithIntersection(uut));
+
+            assertTrue(uut.remove(LAST_NAME, "Dominguez"));
+            assertTrue(uut.remove(FIRST_NAME, "Kelsey"));
+            uut.add(new Person("Caleb", "Hawkins", 11));
+
+            assertThat(uut.size(), equalTo(7));
+            assertThat(uut.list(), hasSize(7));
+            var result = uut.searchByProperty(FIRST_NAME, "Caleb");
+            assertThat(result.stream().map(Person::age).toList(), equalTo(List.of(5, 11)));
+            assertThat(uut.searchByProperty(FIRST_NAME, "Jacob").stream().map(Person::age).toList(),
+                    equalTo(List.of(3, 10)));
+        }
+
+        @Test
+        void iteratorSkipsRemovedElements() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElements(uut));
+            assertTrue(uut.remove(FIRST_NAME, "James"));
+
+            var ages = new ArrayList<Integer>();
+            uut.iterator().forEachRemaining(person -> ages.add(person.age()));
+            assertThat(ages, equalTo(List.of(1, 3, 4, 5, 6, 7, 8, 9, 10)));
+        }
+    }
+
+    @Nested
+    @DisplayName("update element")
+    class Update {
+
+        @Test
+        void updateMovesElementToNewKeys() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElementsWithIntersection(uut));
+
+            assertTrue(uut.update(new Person("Jacob", "Fuller", 10), new Person("Jacob", "Dominguez", 2)));
+            assertThat(uut.size(), equalTo(10));
+            assertFalse(uut.contains(LAST_NAME, "Fuller"));
+            assertThat(uut.searchByProperty(LAST_NAME, "Dominguez").stream().map(Person::age).toList(),
+                    equalTo(List.of(1, 6, 9, 2)));
+            assertThat(uut.searchByProperty(AGE, 2).stream().map(Person::lastName).toList(),
+                    equalTo(List.of("Ryan", "Dominguez")));
+            assertThat(uut.searchByProperty(FIRST_NAME, "Jacob").stream().map(Person::age).toList(),
+                    equalTo(List.of(3, 9, 2)));
+            assertThat(uut.list().get(9), equalTo(new Person("Jacob", "Dominguez", 2)));
+        }
+
+        @Test
+        void updateKeepsPositionsOrderedInPostingLists() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElementsWithIntersection(uut));
+
+            assertTrue(uut.update(new Person("Caleb", "Dominguez", 1), new Person("Jacob", "Fuller", 1)));
+            assertThat(uut.searchByProperty(FIRST_NAME, "Jacob").stream().map(Person::age).toList(),
+                    equalTo(List.of(1, 3, 9, 10)));
+            assertThat(uut.count(Query.and(Query.eq(FIRST_NAME, "Jacob"), Query.eq(LAST_NAME, "Fuller"))),
+                    equalTo(2));
+            assertThat(uut.search(Query.and(Query.eq(FIRST_NAME, "Jacob"), Query.not(Query.eq(LAST_NAME, "Fuller"))))
+                    .stream().map(Person::age).toList(), equalTo(List.of(3, 9)));
+        }
+
+        @Test
+        void updateOfAbsentElement() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElementsWithIntersection(uut));
+            assertThrows(NullPointerException.class, () -> uut.update(null, new Person("Jacob", "Fuller", 1)));
+
+            assertFalse(uut.update(new Person("Jacob", "Fuller", 11), new Person("Jacob", "Fuller", 12)));
+            assertFalse(uut.update(new Person("Ann", "Fuller", 10), new Person("Jacob", "Fuller", 12)));
+            assertThat(uut.size(AGE, 10), equalTo(1));
+        }
+
+        @Test
+        void replaceByUniqueProperty() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElementsWithIntersection(uut));
+
+            assertTrue(uut.replace(AGE, 4, new Person("Kelsey", "King", 4)));
+            assertThat(uut.searchByProperty(LAST_NAME, "King").stream().map(Person::age).toList(),
+                    equalTo(List.of(4, 8)));
+            assertFalse(uut.contains(LAST_NAME, "Hawkins"));
+            assertFalse(uut.replace(AGE, 11, new Person("Kelsey", "King", 11)));
+            assertThrows(IllegalArgumentException.class,
+                    () -> uut.replace(LAST_NAME, "Dominguez", new Person("Kelsey", "King", 1)));
+        }
+
+        @Test
+        void updateFailsStream() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElementsWithIntersection(uut));
+            var iterator = uut.stream().iterator();
+            iterator.next();
+
+            uut.replace(AGE, 1, new Person("Caleb", "Dominguez", 11));
+            assertThrows(ConcurrentModificationException.class, iterator::next);
+        }
+
+        @Test
+        void updateOffHeap() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class, new PersonCodec());
+            assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElementsWithIntersection(uut));
+
+            assertTrue(uut.update(new Person("Crystal", "Carey", 7), new Person("Crystal", "O".repeat(100), 7)));
+            assertThat(uut.search(LAST_NAME, "O".repeat(100)), contains(new Person("Crystal", "O".repeat(100), 7)));
+            assertThat(uut.list().get(6), equalTo(new Person("Crystal", "O".repeat(100), 7)));
+        }
     }
 
     @Nested
@@ -257,55 +495,1391 @@ class MultiIndexIndexedCollectionTest {
     }
 
     @Nested
-    @DisplayName("iterate over elements")
-    class Iteration {
+    @DisplayName("search elements without copying")
+    class SearchView {
 
         @Test
-        void iteratorTest() {
+        void viewMatchesCopy() {
             var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElementsWithIntersection(uut));
 
-            var iterator = uut.iterator();
-            assertThat(iterator, notNullValue());
-            assertFalse(iterator.hasNext());
+            var result = uut.search(FIRST_NAME, "Jacob");
+            assertThat(result, equalTo(uut.searchByProperty(FIRST_NAME, "Jacob")));
+            assertThat(result, instanceOf(RandomAccess.class));
+            assertThat(result.get(2).age(), equalTo(10));
+            assertThat(uut.search(AGE, 4), hasSize(1));
+            assertThrows(UnsupportedOperationException.class, () -> result.add(new Person("Jacob", "King", 11)));
+        }
 
-            assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElements(uut));
+        @Test
+        void viewReadsByIndexPastRemovedElements() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            for (int i = 0; i < 10; i++) {
+                uut.add(new Person("Jacob", "King", i));
+            }
+            uut.remove(AGE, 1);
+            uut.remove(AGE, 4);
+
+            var result = uut.search(FIRST_NAME, "Jacob");
+            assertThat(result, hasSize(8));
+            assertThat(result.get(0).age(), equalTo(0));
+            assertThat(result.get(3).age(), equalTo(5));
+            assertThat(result.get(7).age(), equalTo(9));
+            assertThat(result, equalTo(uut.searchByProperty(FIRST_NAME, "Jacob")));
+        }
 
-            iterator = uut.iterator();
-            assertThat(iterator, notNullValue());
-            for (int i = 0; i < uut.size() - 1; i++) {
-                assertTrue(iterator.hasNext());
-                assertThat(iterator.next(), notNullValue());
+        @Test
+        void viewReadsByIndexFromBothEndsPastRemovedElements() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            for (int i = 0; i < 40; i++) {
+                uut.add(new Person("Jacob", "King", i));
             }
+            uut.remove(AGE, 3);
+            uut.remove(AGE, 30);
+
+            var result = uut.search(FIRST_NAME, "Jacob");
+            var expected = uut.searchByProperty(FIRST_NAME, "Jacob");
+            assertThat(result, hasSize(38));
+            for (int i = 0; i < expected.size(); i++) {
+                assertThat(result.get(i), equalTo(expected.get(i)));
+            }
+        }
 
-            assertThat(iterator.next(), notNullValue());
-            assertFalse(iterator.hasNext());
+        @Test
+        void emptyView() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElements(uut));
+
+            var result = uut.search(FIRST_NAME, "test");
+            assertThat(result, empty());
+            assertThrows(IndexOutOfBoundsException.class, () -> result.get(0));
+            assertThrows(NullPointerException.class, () -> uut.search(null, "test"));
         }
 
         @Test
-        void iteratorByNullProperty() {
+        void viewIsInvalidatedByModification() {
             var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
-            assertThrows(NullPointerException.class, () -> uut.iterator(null));
+            assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElementsWithIntersection(uut));
+
+            var result = uut.search(LAST_NAME, "Dominguez");
+            var iterator = result.iterator();
+            iterator.next();
+            uut.remove(FIRST_NAME, "Caleb");
+
+            assertThrows(ConcurrentModificationException.class, iterator::next);
+            assertThrows(ConcurrentModificationException.class, result::size);
+            assertThat(uut.search(LAST_NAME, "Dominguez"), hasSize(2));
         }
+    }
+
+    @Nested
+    @DisplayName("search elements by query")
+    class SearchByQuery {
 
         @Test
-        void listByNullProperty() {
+        void searchByNullQuery() {
             var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
-            assertThrows(NullPointerException.class, () -> uut.list(null));
+            assertThrows(NullPointerException.class, () -> uut.search(null));
         }
 
         @Test
-        void streamByNullProperty() {
+        void conjunction() {
             var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
-            assertThrows(NullPointerException.class, () -> uut.stream(null));
+            assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElementsWithIntersection(uut));
+
+            var result = uut.search(Query.and(Query.eq(FIRST_NAME, "Jacob"), Query.eq(LAST_NAME, "Dominguez")));
+            assertThat(ages(result), equalTo(List.of(9)));
+            assertThat(uut.count(Query.and(Query.eq(FIRST_NAME, "Jacob"), Query.eq(LAST_NAME, "Ryan"))), equalTo(0));
+            assertThat(uut.count(Query.and(Query.eq(FIRST_NAME, "Jacob"), Query.eq(LAST_NAME, "Lex"))), equalTo(0));
         }
 
         @Test
-        void listIsUnmodifiable() {
+        void disjunction() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElementsWithIntersection(uut));
+
+            var result = uut.search(Query.or(Query.eq(FIRST_NAME, "Caleb"), Query.eq(LAST_NAME, "Dominguez")));
+            assertThat(ages(result), equalTo(List.of(1, 5, 6, 9)));
+        }
+
+        @Test
+        void negation() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElementsWithIntersection(uut));
+
+            var result = uut.search(
+                    Query.and(Query.eq(LAST_NAME, "Dominguez"), Query.not(Query.eq(FIRST_NAME, "Jacob"))));
+            assertThat(ages(result), equalTo(List.of(1, 6)));
+
+            result = uut.search(Query.not(Query.or(Query.eq(FIRST_NAME, "Jacob"), Query.eq(FIRST_NAME, "Caleb"))));
+            assertThat(ages(result), equalTo(List.of(2, 4, 6, 7, 8)));
+        }
+
+        @Test
+        void searchAfterRemove() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElementsWithIntersection(uut));
+            assertTrue(uut.remove(LAST_NAME, "Smith"));
+
+            var result = uut.search(Query.and(Query.eq(FIRST_NAME, "Jacob"), Query.not(Query.eq(LAST_NAME, "Fuller"))));
+            assertThat(ages(result), equalTo(List.of(9)));
+            assertThat(uut.count(Query.not(Query.eq(FIRST_NAME, "Jacob"))), equalTo(7));
+        }
+
+        private static List<Integer> ages(List<Person> persons) {
+            return persons.stream().map(Person::age).toList();
+        }
+    }
+
+    @Nested
+    @DisplayName("search elements by ordered index")
+    class SearchByOrderedIndex {
+
+        @Test
+        void searchRange() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            addElementsInRandomOrder(uut);
+
+            var result = uut.searchRange(AGE, 3, true, 7, false);
+            assertThat(result.stream().map(Person::age).toList(), equalTo(List.of(3, 4, 5, 6)));
+            assertThat(uut.searchRange(AGE, 11, true, 20, true), empty());
+        }
+
+        @Test
+        void searchGreaterAndLessThan() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            addElementsInRandomOrder(uut);
+
+            assertThat(uut.searchGreaterThan(AGE, 8, false).stream().map(Person::age).toList(),
+                    equalTo(List.of(9, 10)));
+            assertThat(uut.searchGreaterThan(AGE, 8, true).stream().map(Person::age).toList(),
+                    equalTo(List.of(8, 9, 10)));
+            assertThat(uut.searchLessThan(AGE, 2, true).stream().map(Person::age).toList(),
+                    equalTo(List.of(1, 2)));
+        }
+
+        @Test
+        void minAndMax() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            assertTrue(uut.min(AGE).isEmpty());
+
+            addElementsInRandomOrder(uut);
+            uut.add(new Person("Caleb", "Hawkins", 1));
+
+            assertThat(uut.min(AGE).orElseThrow(), equalTo(new Person("Caleb", "Dominguez", 1)));
+            assertThat(uut.max(AGE).orElseThrow().age(), equalTo(10));
+
+            uut.remove(LAST_NAME, "Dominguez");
+            assertThat(uut.min(AGE).orElseThrow(), equalTo(new Person("Caleb", "Hawkins", 1)));
+        }
+
+        @Test
+        void iterateInIndexOrder() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            addElementsInRandomOrder(uut);
+            uut.remove(FIRST_NAME, "Karen");
+
+            var expected = List.of(1, 2, 3, 4, 6, 7, 8, 9, 10);
+            var ages = new ArrayList<Integer>();
+            uut.iterator(AGE).forEachRemaining(person -> ages.add(person.age()));
+            assertThat(ages, equalTo(expected));
+            assertThat(uut.list(AGE).stream().map(Person::age).toList(), equalTo(expected));
+            assertThat(uut.stream(AGE).map(Person::age).toList(), equalTo(expected));
+        }
+
+        @Test
+        void notOrderedIndex() {
             var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            assertThrows(IllegalArgumentException.class, () -> uut.searchRange(FIRST_NAME, "A", true, "B", true));
+            assertThrows(IllegalArgumentException.class, () -> uut.iterator(FIRST_NAME));
+            assertThrows(IllegalArgumentException.class, () -> uut.list(LAST_NAME));
+        }
+
+        private static void addElementsInRandomOrder(MultiIndexIndexedCollection<Person> uut) {
+            uut.add(new Person("Stephanie", "Chen", 9));
+            uut.add(new Person("James", "Ryan", 2));
+            uut.add(new Person("Karen", "Mcguire", 5));
+            uut.add(new Person("Justin", "Fuller", 10));
+            uut.add(new Person("Caleb", "Dominguez", 1));
+            uut.add(new Person("Crystal", "Carey", 7));
+            uut.add(new Person("Jacob", "Smith", 3));
+            uut.add(new Person("John", "King", 8));
+            uut.add(new Person("Kelsey", "Hawkins", 4));
+            uut.add(new Person("Colleen", null, 6));
+        }
+    }
+
+    @Nested
+    @DisplayName("search elements by primitive keys")
+    class SearchByPrimitiveKeys {
+
+        enum PrimitivePersonIndex implements IndexDefinition<Person> {
+            AGE {
+                @Override
+                public ToIntFunction<Person> getIntFunc() {
+                    return Person::age;
+                }
+            },
+            AGE_IN_MILLIS {
+                @Override
+                public ToLongFunction<Person> getLongFunc() {
+                    return person -> person.age() * 31_536_000_000L;
+                }
+            };
+
+            @Override
+            public Function<Person, Object> getFunc() {
+                throw new UnsupportedOperationException("keys of %s are primitive".formatted(this));
+            }
+        }
+
+        @Test
+        void searchByIntKey() {
+            var uut = new MultiIndexIndexedCollection<>(PrimitivePersonIndex.class);
             assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElements(uut));
-            var list = uut.list();
-            assertThat(list, hasSize(10));
-            assertThrows(UnsupportedOperationException.class, list::clear);
+            uut.add(new Person("Caleb", "Hawkins", 3));
+
+            assertThat(uut.searchByProperty(PrimitivePersonIndex.AGE, 3), hasSize(2));
+            assertThat(uut.size(PrimitivePersonIndex.AGE, 3), equalTo(2));
+            assertTrue(uut.contains(PrimitivePersonIndex.AGE, 10));
+            assertFalse(uut.contains(PrimitivePersonIndex.AGE, 11));
+            assertThat(uut.count(Query.eq(PrimitivePersonIndex.AGE, 3)), equalTo(2));
+        }
+
+        @Test
+        void searchByLongKey() {
+            var uut = new MultiIndexIndexedCollection<>(PrimitivePersonIndex.class);
+            assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElements(uut));
+
+            var result = uut.searchByProperty(PrimitivePersonIndex.AGE_IN_MILLIS, 2 * 31_536_000_000L);
+            assertThat(result, equalTo(List.of(new Person("James", "Ryan", 2))));
+            assertThat(uut.size(PrimitivePersonIndex.AGE_IN_MILLIS, 0L), equalTo(0));
+        }
+
+        @Test
+        void removeByIntKey() {
+            var uut = new MultiIndexIndexedCollection<>(PrimitivePersonIndex.class);
+            assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElements(uut));
+
+            assertTrue(uut.remove(PrimitivePersonIndex.AGE, 2));
+            assertFalse(uut.contains(PrimitivePersonIndex.AGE, 2));
+            assertFalse(uut.contains(PrimitivePersonIndex.AGE_IN_MILLIS, 2 * 31_536_000_000L));
+            assertThat(uut.size(), equalTo(9));
+        }
+    }
+
+    @Nested
+    @DisplayName("store positions in different posting lists")
+    class PostingLists {
+
+        enum ArrayPersonIndex implements IndexDefinition<Person> {
+            FIRST_NAME(Person::firstName),
+            AGE(Person::age);
+
+            private final Function<Person, Object> func;
+
+            ArrayPersonIndex(Function<Person, Object> func) {
+                this.func = func;
+            }
+
+            @Override
+            public Function<Person, Object> getFunc() {
+                return func;
+            }
+
+            @Override
+            public PostingListType getPostingListType() {
+                return PostingListType.ARRAY;
+            }
+        }
+
+        enum BitmapPersonIndex implements IndexDefinition<Person> {
+            FIRST_NAME(Person::firstName),
+            AGE(Person::age);
+
+            private final Function<Person, Object> func;
+
+            BitmapPersonIndex(Function<Person, Object> func) {
+                this.func = func;
+            }
+
+            @Override
+            public Function<Person, Object> getFunc() {
+                return func;
+            }
+
+            @Override
+            public PostingListType getPostingListType() {
+                return PostingListType.BITMAP;
+            }
+        }
+
+        @Test
+        void arrayPostingLists() {
+            checkQueries(new MultiIndexIndexedCollection<>(ArrayPersonIndex.class),
+                    ArrayPersonIndex.FIRST_NAME, ArrayPersonIndex.AGE);
+        }
+
+        @Test
+        void bitmapPostingLists() {
+            checkQueries(new MultiIndexIndexedCollection<>(BitmapPersonIndex.class),
+                    BitmapPersonIndex.FIRST_NAME, BitmapPersonIndex.AGE);
+        }
+
+        @Test
+        void autoPostingLists() {
+            checkQueries(new MultiIndexIndexedCollection<>(PersonIndex.class), FIRST_NAME, AGE);
+        }
+
+        /**
+         * Ages are dense (bitmap chunks), first names are sparse (array chunks), so all combinations of chunks
+         * are intersected and united.
+         */
+        private static void checkQueries(
+                MultiIndexIndexedCollection<Person> uut,
+                IndexDefinition<Person> firstName,
+                IndexDefinition<Person> age
+        ) {
+            var persons = new ArrayList<Person>();
+            for (int i = 0; i < 200_000; i++) {
+                var person = new Person("name" + (i % 1000 == 0 ? i % 3 : i % 97), "Smith", i % 5);
+                persons.add(person);
+                uut.add(person);
+            }
+
+            assertQuery(uut, persons, Query.eq(age, 3), p -> p.age() == 3);
+            assertQuery(uut, persons, Query.and(Query.eq(age, 1), Query.eq(firstName, "name1")),
+                    p -> p.age() == 1 && p.firstName().equals("name1"));
+            assertQuery(uut, persons, Query.and(Query.eq(age, 1), Query.not(Query.eq(age, 1))), p -> false);
+            assertQuery(uut, persons, Query.or(Query.eq(age, 0), Query.eq(age, 4), Query.eq(firstName, "name2")),
+                    p -> p.age() == 0 || p.age() == 4 || p.firstName().equals("name2"));
+
+            assertTrue(uut.remove(firstName, "name0"));
+            persons.removeIf(p -> p.firstName().equals("name0"));
+            assertTrue(uut.remove(age, 2));
+            persons.removeIf(p -> p.age() == 2);
+
+            assertThat(uut.size(), equalTo(persons.size()));
+            assertQuery(uut, persons, Query.eq(age, 0), p -> p.age() == 0);
+            assertQuery(uut, persons, Query.and(Query.eq(age, 0), Query.eq(age, 0)), p -> p.age() == 0);
+            assertQuery(uut, persons, Query.and(Query.eq(firstName, "name1"), Query.not(Query.eq(age, 3))),
+                    p -> p.firstName().equals("name1") && p.age() != 3);
+            assertThat(uut.searchByProperty(firstName, "name1"), equalTo(persons.stream()
+                    .filter(p -> p.firstName().equals("name1")).toList()));
+
+            var view = uut.search(age, 0);
+            var expected = persons.stream().filter(p -> p.age() == 0).toList();
+            assertThat(view.size(), equalTo(expected.size()));
+            for (int i = 0; i < expected.size(); i += 97) {
+                assertThat(view.get(i), equalTo(expected.get(i)));
+            }
+            assertThat(view.get(expected.size() - 1), equalTo(expected.get(expected.size() - 1)));
+
+            uut.compact();
+            assertQuery(uut, persons, Query.or(Query.eq(age, 1), Query.eq(age, 3)),
+                    p -> p.age() == 1 || p.age() == 3);
+            assertQuery(uut, persons, Query.and(Query.eq(age, 4), Query.eq(firstName, "name5")),
+                    p -> p.age() == 4 && p.firstName().equals("name5"));
+        }
+
+        private static void assertQuery(
+                MultiIndexIndexedCollection<Person> uut,
+                List<Person> persons,
+                Query<Person> query,
+                Predicate<Person> predicate
+        ) {
+            var expected = persons.stream().filter(predicate).toList();
+            assertThat(uut.search(query), equalTo(expected));
+            assertThat(uut.count(query), equalTo(expected.size()));
+        }
+    }
+
+    @Nested
+    @DisplayName("composite indexes")
+    class CompositeIndex {
+
+        @Test
+        void searchByAllComponents() {
+            var uut = new MultiIndexIndexedCollection<>(CompositePersonIndex.class);
+            assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElementsWithIntersection(uut));
+
+            assertThat(uut.searchByProperty(CompositePersonIndex.FULL_NAME, Tuple.of("Jacob", "Dominguez")),
+                    contains(new Person("Jacob", "Dominguez", 9)));
+            assertThat(uut.size(CompositePersonIndex.FULL_NAME, Tuple.of("Jacob", "Smith")), equalTo(1));
+            assertFalse(uut.contains(CompositePersonIndex.FULL_NAME, Tuple.of("Jacob", "Ryan")));
+            assertFalse(uut.contains(CompositePersonIndex.FULL_NAME, Tuple.of("Jacob")));
+            assertThat(uut.count(Query.eq(CompositePersonIndex.LAST_NAME_AND_AGE, Tuple.of("Dominguez", 6))),
+                    equalTo(1));
+
+            assertTrue(uut.remove(CompositePersonIndex.FULL_NAME, Tuple.of("Caleb", "Mcguire")));
+            assertThat(uut.size(), equalTo(9));
+            assertThat(uut.searchPrefix(CompositePersonIndex.LAST_NAME_AND_AGE, "Mcguire"), empty());
+        }
+
+        @Test
+        void searchByLeadingComponents() {
+            var uut = new MultiIndexIndexedCollection<>(CompositePersonIndex.class);
+            assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElementsWithIntersection(uut));
+            uut.add(new Person("Ann", "Dominguez", 0));
+            uut.add(new Person("Ann", "Domingue", 0));
+
+            var result = uut.searchPrefix(CompositePersonIndex.LAST_NAME_AND_AGE, "Dominguez");
+            assertThat(result.stream().map(Person::age).toList(), equalTo(List.of(0, 1, 6, 9)));
+            assertThat(uut.searchPrefix(CompositePersonIndex.LAST_NAME_AND_AGE, "Dominguez", 6),
+                    contains(new Person("Colleen", "Dominguez", 6)));
+            assertThat(uut.searchPrefix(CompositePersonIndex.LAST_NAME_AND_AGE), hasSize(12));
+            assertThat(uut.searchRange(CompositePersonIndex.LAST_NAME_AND_AGE, Tuple.of("Dominguez", 1), true,
+                    Tuple.of("Dominguez", 9), false).stream().map(Person::age).toList(), equalTo(List.of(1, 6)));
+            assertThrows(IllegalArgumentException.class,
+                    () -> uut.searchPrefix(CompositePersonIndex.FULL_NAME, "Jacob"));
+        }
+
+        @Test
+        void updateMovesCompositeKey() {
+            var uut = new MultiIndexIndexedCollection<>(CompositePersonIndex.class);
+            assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElementsWithIntersection(uut));
+
+            assertTrue(uut.update(new Person("Jacob", "Smith", 3), new Person("Jacob", "Dominguez", 3)));
+            assertThat(uut.searchByProperty(CompositePersonIndex.FULL_NAME, Tuple.of("Jacob", "Dominguez"))
+                    .stream().map(Person::age).toList(), equalTo(List.of(3, 9)));
+            assertThat(uut.searchPrefix(CompositePersonIndex.LAST_NAME_AND_AGE, "Smith"), empty());
+        }
+    }
+
+    @Nested
+    @DisplayName("search by prefix of string property")
+    class PrefixSearch {
+
+        enum LastNameIndex implements IndexDefinition<Person> {
+            LAST_NAME,
+            LAST_NAME_IGNORING_CASE {
+                @Override
+                public Comparator<?> getComparator() {
+                    return String.CASE_INSENSITIVE_ORDER;
+                }
+            };
+
+            @Override
+            public Function<Person, Object> getFunc() {
+                return Person::lastName;
+            }
+
+            @Override
+            public boolean isOrdered() {
+                return true;
+            }
+        }
+
+        private MultiIndexIndexedCollection<Person> collection() {
+            var uut = new MultiIndexIndexedCollection<>(LastNameIndex.class);
+            assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElementsWithIntersection(uut));
+            uut.add(new Person("Ann", "dominguez", 11));
+            uut.add(new Person("Ann", null, 12));
+            uut.add(new Person("Ann", "Do", 13));
+            return uut;
+        }
+
+        @Test
+        void searchStartsWith() {
+            var uut = collection();
+
+            var result = uut.searchStartsWith(LastNameIndex.LAST_NAME, "Do");
+            assertThat(result.stream().map(Person::age).toList(), equalTo(List.of(13, 1, 6, 9)));
+            assertThat(uut.searchStartsWith(LastNameIndex.LAST_NAME, "C"), contains(new Person("Crystal", "Carey", 7)));
+            assertThat(uut.searchStartsWith(LastNameIndex.LAST_NAME, "Dx"), empty());
+            assertThat(uut.searchStartsWith(LastNameIndex.LAST_NAME, ""), hasSize(12));
+        }
+
+        @Test
+        void searchStartsWithLimit() {
+            var uut = collection();
+
+            var result = uut.searchStartsWith(LastNameIndex.LAST_NAME, "Dom", 2);
+            assertThat(result.stream().map(Person::age).toList(), equalTo(List.of(1, 6)));
+            assertThat(uut.searchStartsWith(LastNameIndex.LAST_NAME, "Do", 0), empty());
+            assertThrows(IllegalArgumentException.class, () -> uut.searchStartsWith(LastNameIndex.LAST_NAME, "D", -1));
+            assertThrows(NullPointerException.class, () -> uut.searchStartsWith(LastNameIndex.LAST_NAME, null, 1));
+        }
+
+        @Test
+        void searchStartsWithIgnoringCase() {
+            var uut = collection();
+
+            var result = uut.searchStartsWith(LastNameIndex.LAST_NAME_IGNORING_CASE, "dOM");
+            assertThat(result.stream().map(Person::age).toList(), equalTo(List.of(1, 6, 9, 11)));
+            assertThrows(IllegalArgumentException.class, () -> new MultiIndexIndexedCollection<>(PersonIndex.class)
+                    .searchStartsWith(FIRST_NAME, "Ja"));
+        }
+
+        @Test
+        void frozenSearchStartsWith() {
+            var uut = collection().freeze();
+
+            var result = uut.searchStartsWith(LastNameIndex.LAST_NAME, "Do");
+            assertThat(result.stream().map(Person::age).toList(), equalTo(List.of(13, 1, 6, 9)));
+            assertThat(uut.searchStartsWith(LastNameIndex.LAST_NAME, "Do", 3).stream().map(Person::age).toList(),
+                    equalTo(List.of(13, 1, 6)));
+            assertThat(uut.searchStartsWith(LastNameIndex.LAST_NAME_IGNORING_CASE, "DOMINGUEZ"), hasSize(4));
+            assertThat(uut.searchStartsWith(LastNameIndex.LAST_NAME, "Z"), empty());
+        }
+    }
+
+    @Nested
+    @DisplayName("aggregate values of properties")
+    class Aggregation {
+
+        @Test
+        void countByValues() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElementsWithIntersection(uut));
+            uut.add(new Person("Ann", null, 5));
+
+            var counts = uut.countBy(LAST_NAME);
+            assertThat(counts.size(), equalTo(9));
+            assertThat(counts.get("Dominguez"), equalTo(3));
+            assertThat(counts.get("Smith"), equalTo(1));
+            assertThat(counts.get(null), equalTo(1));
+            assertThat(new ArrayList<>(uut.countBy(AGE).keySet()), equalTo(List.of(1, 2, 3, 4, 5, 6, 7, 8, 9, 10)));
+            assertThat(uut.countBy(AGE).get(5), equalTo(2));
+        }
+
+        @Test
+        void countByValuesOfFilteredElements() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            uut.addAll(IntStream.range(0, 1_000)
+                    .mapToObj(i -> new Person("name" + i % 7, "surname" + i % 10, i % 100))
+                    .toList());
+
+            var filter = Query.and(Query.eq(FIRST_NAME, "name3"), Query.not(Query.eq(AGE, 3)));
+            var counts = uut.countBy(LAST_NAME, filter);
+            assertThat(counts.size(), equalTo(10));
+            for (var entry : counts.entrySet()) {
+                var expected = uut.count(Query.and(filter, Query.eq(LAST_NAME, entry.getKey())));
+                assertThat(entry.getValue(), equalTo(expected));
+            }
+            assertThat(counts.values().stream().mapToInt(Integer::intValue).sum(), equalTo(uut.count(filter)));
+            assertThat(uut.countBy(AGE, Query.eq(LAST_NAME, "surname3")).keySet(),
+                    equalTo(uut.distinctValues(AGE).stream().filter(age -> (int) age % 10 == 3).collect(toSet())));
+            assertThat(uut.countBy(LAST_NAME, Query.eq(FIRST_NAME, "Lex")), equalTo(Map.of()));
+        }
+
+        @Test
+        void distinctValues() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElementsWithIntersection(uut));
+            assertTrue(uut.remove(LAST_NAME, "Smith"));
+
+            assertThat(uut.distinctValues(FIRST_NAME),
+                    equalTo(Set.of("Caleb", "James", "Kelsey", "Colleen", "Crystal", "John", "Jacob")));
+            assertThat(new ArrayList<>(uut.distinctValues(AGE)), equalTo(List.of(1, 2, 4, 5, 6, 7, 8, 9, 10)));
+        }
+
+        @Test
+        void mostFrequentValues() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElementsWithIntersection(uut));
+
+            var result = uut.mostFrequentValues(FIRST_NAME, 2);
+            assertThat(result, equalTo(List.of(Map.entry("Jacob", 3), Map.entry("Caleb", 2))));
+            assertThat(uut.mostFrequentValues(LAST_NAME, 1), equalTo(List.of(Map.entry("Dominguez", 3))));
+            assertThat(uut.mostFrequentValues(LAST_NAME, Integer.MAX_VALUE), hasSize(8));
+            assertThat(uut.mostFrequentValues(LAST_NAME, 0), empty());
+            assertThrows(IllegalArgumentException.class, () -> uut.mostFrequentValues(LAST_NAME, -1));
+        }
+    }
+
+    @Nested
+    @DisplayName("search one page of elements")
+    class Pagination {
+
+        @Test
+        void searchByPropertyPage() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElementsWithIntersection(uut));
+            assertTrue(uut.remove(FIRST_NAME, "Colleen"));
+
+            var page = uut.searchByProperty(LAST_NAME, "Dominguez", 1, 1);
+            assertThat(page, contains(new Person("Jacob", "Dominguez", 9)));
+            assertThat(uut.searchByProperty(LAST_NAME, "Dominguez", 0, 5).stream().map(Person::age).toList(),
+                    equalTo(List.of(1, 9)));
+            assertThat(uut.searchByProperty(LAST_NAME, "Dominguez", 2, 5), empty());
+            assertThat(uut.searchByProperty(LAST_NAME, "Lex", 0, 5), empty());
+            assertThat(uut.searchByProperty(LAST_NAME, "Dominguez", 0, 0), empty());
+            assertThrows(IllegalArgumentException.class, () -> uut.searchByProperty(LAST_NAME, "Smith", -1, 1));
+            assertThrows(IllegalArgumentException.class, () -> uut.searchByProperty(LAST_NAME, "Smith", 0, -1));
+        }
+
+        @Test
+        void searchQueryPage() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElementsWithIntersection(uut));
+            var query = Query.or(Query.eq(FIRST_NAME, "Jacob"), Query.eq(LAST_NAME, "Dominguez"));
+
+            assertThat(uut.search(query, 2, 3).stream().map(Person::age).toList(), equalTo(List.of(6, 9, 10)));
+            assertThat(uut.search(query, 4, 3).stream().map(Person::age).toList(), equalTo(List.of(10)));
+            assertThat(uut.search(query, 5, 3), empty());
+            assertThat(uut.search(query, Integer.MAX_VALUE, Integer.MAX_VALUE), empty());
+        }
+
+        @Test
+        void searchTopK() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElementsWithIntersection(uut));
+            var query = Query.not(Query.eq(FIRST_NAME, "Jacob"));
+            var byAgeDescending = Comparator.comparingInt(Person::age).reversed();
+
+            assertThat(uut.search(query, byAgeDescending, 0, 3).stream().map(Person::age).toList(),
+                    equalTo(List.of(8, 7, 6)));
+            assertThat(uut.search(query, byAgeDescending, 5, 3).stream().map(Person::age).toList(),
+                    equalTo(List.of(2, 1)));
+            assertThat(uut.search(query, byAgeDescending, 7, 3), empty());
+
+            var byFirstName = Comparator.comparing(Person::firstName);
+            assertThat(uut.search(query, byFirstName, 0, 2).stream().map(Person::age).toList(),
+                    equalTo(List.of(1, 5)));
+            assertThat(uut.search(query, byFirstName, 1, 2).stream().map(Person::age).toList(),
+                    equalTo(List.of(5, 6)));
+        }
+
+        @Test
+        void listPageInOrderOfIndex() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            uut.addAll(List.of(new Person("A", "A", 3), new Person("B", "B", 1), new Person("C", "C", 3),
+                    new Person("D", "D", 2), new Person("E", "E", 3)));
+
+            assertThat(uut.list(AGE, 0, 2).stream().map(Person::firstName).toList(), equalTo(List.of("B", "D")));
+            assertThat(uut.list(AGE, 1, 3).stream().map(Person::firstName).toList(), equalTo(List.of("D", "A", "C")));
+            assertThat(uut.list(AGE, 3, 3).stream().map(Person::firstName).toList(), equalTo(List.of("C", "E")));
+            assertThat(uut.list(AGE, 5, 3), empty());
+            assertThrows(IllegalArgumentException.class, () -> uut.list(FIRST_NAME, 0, 1));
+        }
+    }
+
+    @Nested
+    @DisplayName("cache query results")
+    class ResultCaching {
+
+        private MultiIndexIndexedCollection<Person> collection() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElementsWithIntersection(uut));
+            uut.enableResultCache(10);
+            return uut;
+        }
+
+        @Test
+        void repeatedSearchIsServedFromCache() {
+            var uut = collection();
+
+            var result = uut.searchByProperty(FIRST_NAME, "Jacob");
+            assertSame(result, uut.searchByProperty(FIRST_NAME, "Jacob"));
+            assertThat(result.stream().map(Person::age).toList(), equalTo(List.of(3, 9, 10)));
+            assertThrows(UnsupportedOperationException.class, () -> result.remove(0));
+            var query = Query.and(Query.eq(FIRST_NAME, "Jacob"), Query.eq(LAST_NAME, "Dominguez"));
+            assertSame(uut.search(query), uut.search(query));
+            assertThat(uut.count(query), equalTo(1));
+            assertThat(uut.count(Query.eq(LAST_NAME, "Dominguez")), equalTo(3));
+            assertThat(uut.count(Query.eq(LAST_NAME, "Dominguez")), equalTo(3));
+            assertThat(uut.cachedResults(), equalTo(3));
+        }
+
+        @Test
+        void modificationDropsOnlyResultsOfTouchedKeys() {
+            var uut = collection();
+            var jacobs = uut.searchByProperty(FIRST_NAME, "Jacob");
+            var calebs = uut.searchByProperty(FIRST_NAME, "Caleb");
+            var jacobsOrSmiths = uut.search(Query.or(Query.eq(FIRST_NAME, "Jacob"), Query.eq(LAST_NAME, "Smith")));
+
+            uut.add(new Person("Jacob", "Ryan", 11));
+            assertSame(calebs, uut.searchByProperty(FIRST_NAME, "Caleb"));
+            assertThat(uut.searchByProperty(FIRST_NAME, "Jacob").stream().map(Person::age).toList(),
+                    equalTo(List.of(3, 9, 10, 11)));
+            assertThat(jacobs, hasSize(3));
+            assertThat(uut.search(Query.or(Query.eq(FIRST_NAME, "Jacob"), Query.eq(LAST_NAME, "Smith"))),
+                    hasSize(jacobsOrSmiths.size() + 1));
+
+            assertTrue(uut.remove(LAST_NAME, "Mcguire"));
+            assertThat(uut.searchByProperty(FIRST_NAME, "Caleb"), contains(new Person("Caleb", "Dominguez", 1)));
+            assertThat(uut.count(Query.eq(AGE, 5)), equalTo(0));
+
+            assertTrue(uut.update(new Person("Caleb", "Dominguez", 1), new Person("Caleb", "Dominguez", 12)));
+            assertThat(uut.searchByProperty(FIRST_NAME, "Caleb"), contains(new Person("Caleb", "Dominguez", 12)));
+
+            uut.clear();
+            assertThat(uut.cachedResults(), equalTo(0));
+            assertThat(uut.searchByProperty(FIRST_NAME, "Jacob"), empty());
+        }
+
+        @Test
+        void additionDropsResultsOfNegation() {
+            var uut = collection();
+            var query = Query.not(Query.eq(FIRST_NAME, "Jacob"));
+            assertThat(uut.count(query), equalTo(7));
+
+            uut.add(new Person("Ann", "Ryan", 11));
+            assertThat(uut.count(query), equalTo(8));
+            uut.update(new Person("Ann", "Ryan", 11), new Person("Jacob", "Ryan", 11));
+            assertThat(uut.count(query), equalTo(7));
+        }
+
+        @Test
+        void updateDropsResultsOfNegation() {
+            var uut = collection();
+            var query = Query.not(Query.eq(FIRST_NAME, "Jacob"));
+            assertThat(uut.search(query), hasItem(new Person("John", "King", 8)));
+
+            assertTrue(uut.update(new Person("John", "King", 8), new Person("John", "King", 1)));
+            assertThat(uut.search(query), allOf(hasItem(new Person("John", "King", 1)),
+                    not(hasItem(new Person("John", "King", 8)))));
+            assertTrue(uut.replace(LAST_NAME, "King", new Person("John", "King", 2)));
+            assertThat(uut.search(query), hasItem(new Person("John", "King", 2)));
+        }
+
+        @Test
+        void leastRecentlyUsedResultIsEvicted() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElementsWithIntersection(uut));
+            uut.enableResultCache(2);
+
+            var jacobs = uut.searchByProperty(FIRST_NAME, "Jacob");
+            var calebs = uut.searchByProperty(FIRST_NAME, "Caleb");
+            uut.searchByProperty(FIRST_NAME, "Jacob");
+            uut.searchByProperty(FIRST_NAME, "John");
+            assertThat(uut.cachedResults(), equalTo(2));
+            assertSame(jacobs, uut.searchByProperty(FIRST_NAME, "Jacob"));
+            assertNotSame(calebs, uut.searchByProperty(FIRST_NAME, "Caleb"));
+
+            assertThrows(IllegalArgumentException.class, () -> uut.enableResultCache(0));
+            uut.disableResultCache();
+            assertNotSame(jacobs, uut.searchByProperty(FIRST_NAME, "Jacob"));
+        }
+
+        @Test
+        void ignoringCaseIndexDropsResultsOfEqualKeys() {
+            var uut = new MultiIndexIndexedCollection<>(PrefixSearch.LastNameIndex.class);
+            assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElementsWithIntersection(uut));
+            uut.enableResultCache(10);
+            assertThat(uut.searchByProperty(PrefixSearch.LastNameIndex.LAST_NAME_IGNORING_CASE, "smith"), hasSize(1));
+
+            uut.add(new Person("Ann", "SMITH", 11));
+            assertThat(uut.searchByProperty(PrefixSearch.LastNameIndex.LAST_NAME_IGNORING_CASE, "smith"), hasSize(2));
+        }
+    }
+
+    @Nested
+    @DisplayName("register indexes at runtime")
+    class RuntimeIndexes {
+
+        private static final IndexDefinition<Person> AGE_GROUP = () -> person -> person.age() / 5;
+
+        private static final IndexDefinition<Person> LAZY_LAST_NAME = new IndexDefinition<>() {
+            @Override
+            public Function<Person, Object> getFunc() {
+                return Person::lastName;
+            }
+
+            @Override
+            public boolean isLazy() {
+                return true;
+            }
+        };
+
+        @Test
+        void addIndexOverExistingElements() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            addElements(uut);
+            assertThat(uut.searchByProperty(AGE_GROUP, 1), empty());
+
+            uut.addIndex(AGE_GROUP);
+            assertTrue(uut.isBuilt(AGE_GROUP));
+            assertThat(uut.searchByProperty(AGE_GROUP, 1), hasSize(5));
+            uut.add(new Person("Bob", "Smith", 7));
+            assertThat(uut.searchByProperty(AGE_GROUP, 1), hasSize(6));
+            assertThat(uut.search(Query.and(Query.eq(AGE_GROUP, 1), Query.eq(LAST_NAME, "Smith"))),
+                    contains(new Person("Bob", "Smith", 7)));
+            assertThrows(IllegalArgumentException.class, () -> uut.addIndex(AGE_GROUP));
+            assertThrows(IllegalArgumentException.class, () -> uut.addIndex(FIRST_NAME));
+        }
+
+        @Test
+        void collectionWithoutIndices() {
+            var uut = new MultiIndexIndexedCollection<Person>();
+            uut.add(new Person("Caleb", "Dominguez", 1));
+            uut.add(new Person("James", "Ryan", 2));
+            assertThat(uut.searchByProperty(LAST_NAME, "Ryan"), empty());
+            assertTrue(uut.update(new Person("James", "Ryan", 2), new Person("James", "Ryan", 3)));
+
+            uut.addIndex(LAST_NAME);
+            assertThat(uut.searchByProperty(LAST_NAME, "Ryan"), contains(new Person("James", "Ryan", 3)));
+        }
+
+        @Test
+        void dropIndex() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            addElements(uut);
+            uut.enableResultCache(10);
+            assertThat(uut.searchByProperty(LAST_NAME, "Smith"), hasSize(1));
+
+            assertTrue(uut.dropIndex(LAST_NAME));
+            assertFalse(uut.dropIndex(LAST_NAME));
+            assertThat(uut.searchByProperty(LAST_NAME, "Smith"), empty());
+            assertFalse(uut.contains(LAST_NAME, "Smith"));
+            assertThat(uut.properties(), contains(FIRST_NAME, AGE));
+
+            assertTrue(uut.remove(FIRST_NAME, "Jacob"));
+            assertThat(uut.size(), equalTo(9));
+            assertThrows(IllegalArgumentException.class, () -> uut.rebuildIndex(LAST_NAME));
+        }
+
+        @Test
+        void lazyIndexIsBuiltByFirstQuery() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            uut.addIndex(LAZY_LAST_NAME);
+            addElementsWithIntersection(uut);
+            uut.remove(FIRST_NAME, "Caleb");
+            assertFalse(uut.isBuilt(LAZY_LAST_NAME));
+
+            assertThat(uut.searchByProperty(LAZY_LAST_NAME, "Dominguez"), contains(
+                    new Person("Colleen", "Dominguez", 6),
+                    new Person("Jacob", "Dominguez", 9)));
+            assertTrue(uut.isBuilt(LAZY_LAST_NAME));
+            uut.add(new Person("Bob", "Dominguez", 11));
+            assertThat(uut.size(LAZY_LAST_NAME, "Dominguez"), equalTo(3));
+        }
+
+        @Test
+        void statisticsDoNotBuildLazyIndex() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            uut.addIndex(LAZY_LAST_NAME);
+            addElements(uut);
+
+            assertThat(uut.statistics().indices().keySet(), contains(FIRST_NAME, LAST_NAME, AGE));
+            assertFalse(uut.isBuilt(LAZY_LAST_NAME));
+        }
+
+        @Test
+        void lazyIndexOfLargeCollectionIsBuiltInParallel() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            uut.addIndex(LAZY_LAST_NAME);
+            uut.addAll(IntStream.range(0, 50_000)
+                    .mapToObj(i -> new Person("name" + i, "lastName" + i % 100, i))
+                    .toList());
+            uut.remove(LAST_NAME, "lastName0");
+
+            assertThat(uut.searchByProperty(LAZY_LAST_NAME, "lastName7"),
+                    equalTo(uut.searchByProperty(LAST_NAME, "lastName7")));
+            assertThat(uut.searchByProperty(LAZY_LAST_NAME, "lastName0"), empty());
+            assertThat(uut.countBy(LAZY_LAST_NAME), equalTo(uut.countBy(LAST_NAME)));
+        }
+
+        @Test
+        void idleLazyIndexIsReleased() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            uut.addIndex(LAZY_LAST_NAME);
+            addElements(uut);
+            uut.enableIdleIndexRelease(Duration.ZERO);
+            assertThat(uut.searchByProperty(LAZY_LAST_NAME, "Smith"), hasSize(1));
+            assertTrue(uut.isBuilt(LAZY_LAST_NAME));
+
+            uut.add(new Person("Bob", "Smith", 11));
+            assertFalse(uut.isBuilt(LAZY_LAST_NAME));
+            assertTrue(uut.isBuilt(LAST_NAME));
+            assertThat(uut.searchByProperty(LAZY_LAST_NAME, "Smith"), hasSize(2));
+
+            uut.enableIdleIndexRelease(Duration.ofHours(1));
+            uut.add(new Person("Tom", "Smith", 12));
+            assertTrue(uut.isBuilt(LAZY_LAST_NAME));
+            assertThat(uut.searchByProperty(LAZY_LAST_NAME, "Smith"), hasSize(3));
+        }
+    }
+
+    @Nested
+    @DisplayName("index several keys of element")
+    class MultiValuedIndex {
+
+        private static final IndexDefinition<Person> NAME_PARTS = new IndexDefinition<>() {
+            @Override
+            public Function<Person, Object> getFunc() {
+                return person -> Arrays.asList(person.firstName(), person.lastName());
+            }
+
+            @Override
+            public boolean isMultiValued() {
+                return true;
+            }
+        };
+
+        private static MultiIndexIndexedCollection<Person> collectionWithNameParts() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            uut.addIndex(NAME_PARTS);
+            addElementsWithIntersection(uut);
+            return uut;
+        }
+
+        @Test
+        void searchByAnyKey() {
+            var uut = collectionWithNameParts();
+            assertThat(uut.searchByProperty(NAME_PARTS, "Jacob"), contains(
+                    new Person("Jacob", "Smith", 3),
+                    new Person("Jacob", "Dominguez", 9),
+                    new Person("Jacob", "Fuller", 10)));
+            assertThat(uut.searchByProperty(NAME_PARTS, "Dominguez"), hasSize(3));
+            assertThat(uut.search(Query.and(Query.eq(NAME_PARTS, "Jacob"), Query.eq(NAME_PARTS, "Dominguez"))),
+                    contains(new Person("Jacob", "Dominguez", 9)));
+            assertThat(uut.countBy(NAME_PARTS).get("Caleb"), equalTo(2));
+        }
+
+        @Test
+        void duplicateKeysOfElementArePostedOnce() {
+            var uut = collectionWithNameParts();
+            uut.add(new Person("Morgan", "Morgan", 11));
+
+            assertThat(uut.size(NAME_PARTS, "Morgan"), equalTo(1));
+            assertTrue(uut.remove(NAME_PARTS, "Morgan"));
+            assertThat(uut.size(), equalTo(10));
+        }
+
+        @Test
+        void removeByMultiValuedKey() {
+            var uut = collectionWithNameParts();
+            assertTrue(uut.remove(NAME_PARTS, "Jacob"));
+
+            assertThat(uut.size(), equalTo(7));
+            assertThat(uut.searchByProperty(NAME_PARTS, "Dominguez"), contains(
+                    new Person("Caleb", "Dominguez", 1),
+                    new Person("Colleen", "Dominguez", 6)));
+            assertFalse(uut.contains(NAME_PARTS, "Fuller"));
+            assertFalse(uut.contains(LAST_NAME, "Smith"));
+        }
+
+        @Test
+        void removeByOtherProperty() {
+            var uut = collectionWithNameParts();
+            assertTrue(uut.remove(LAST_NAME, "Dominguez"));
+
+            assertThat(uut.searchByProperty(NAME_PARTS, "Jacob"), hasSize(2));
+            assertFalse(uut.contains(NAME_PARTS, "Colleen"));
+            assertFalse(uut.contains(NAME_PARTS, "Dominguez"));
+        }
+
+        @Test
+        void updateMovesChangedKeysOnly() {
+            var uut = collectionWithNameParts();
+            assertTrue(uut.update(new Person("Jacob", "Smith", 3), new Person("Jacob", "Fuller", 3)));
+
+            assertFalse(uut.contains(NAME_PARTS, "Smith"));
+            assertThat(uut.size(NAME_PARTS, "Jacob"), equalTo(3));
+            assertThat(uut.searchByProperty(NAME_PARTS, "Fuller"), contains(
+                    new Person("Jacob", "Fuller", 3),
+                    new Person("Jacob", "Fuller", 10)));
+        }
+
+        @Test
+        void cachedResultsAreDroppedByAnyKey() {
+            var uut = collectionWithNameParts();
+            uut.enableResultCache(10);
+            assertThat(uut.searchByProperty(NAME_PARTS, "Smith"), hasSize(1));
+
+            uut.add(new Person("Anna", "Smith", 11));
+            assertThat(uut.searchByProperty(NAME_PARTS, "Smith"), hasSize(2));
+        }
+
+        @Test
+        void frozenCollectionSearchesByAnyKey() {
+            var uut = collectionWithNameParts();
+            var frozen = uut.freeze();
+
+            assertThat(frozen.searchByProperty(NAME_PARTS, "Jacob"), hasSize(3));
+            assertThat(frozen.count(Query.and(Query.eq(NAME_PARTS, "Caleb"), Query.eq(NAME_PARTS, "Mcguire"))),
+                    equalTo(1));
+        }
+
+        @Test
+        void extractorMustReturnCollection() {
+            var collection = new MultiIndexIndexedCollection<Person>();
+            collection.addIndex(new IndexDefinition<>() {
+                @Override
+                public Function<Person, Object> getFunc() {
+                    return Person::firstName;
+                }
+
+                @Override
+                public boolean isMultiValued() {
+                    return true;
+                }
+            });
+
+            assertThrows(IllegalArgumentException.class, () -> collection.add(new Person("Caleb", "Dominguez", 1)));
+        }
+    }
+
+    @Nested
+    @DisplayName("store elements off heap")
+    class OffHeapStorage {
+
+        @Test
+        void behavesLikeCollectionOnHeap() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class, new PersonCodec());
+            var onHeap = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElementsWithIntersection(uut));
+            assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElementsWithIntersection(onHeap));
+            var longName = "L" + "o".repeat(1_000) + "ng";
+            uut.add(new Person(longName, null, 11));
+            onHeap.add(new Person(longName, null, 11));
+
+            assertEquals(onHeap, uut);
+            assertThat(uut.searchByProperty(FIRST_NAME, "Jacob"),
+                    equalTo(onHeap.searchByProperty(FIRST_NAME, "Jacob")));
+            assertThat(uut.search(FIRST_NAME, longName), contains(new Person(longName, null, 11)));
+            assertThat(uut.count(Query.eq(LAST_NAME, "Dominguez")), equalTo(3));
+            assertTrue(uut.contains(new Person("John", "King", 8)));
+            assertThat(uut.list(AGE), equalTo(onHeap.list(AGE)));
+
+            uut.remove(LAST_NAME, "Dominguez");
+            onHeap.remove(LAST_NAME, "Dominguez");
+            assertThat(uut.list(), equalTo(onHeap.list()));
+            assertThat(uut.stream().toList(), equalTo(onHeap.stream().toList()));
+            assertThat(uut.searchByProperty(FIRST_NAME, "Caleb"),
+                    equalTo(onHeap.searchByProperty(FIRST_NAME, "Caleb")));
+        }
+
+        @Test
+        void failedEncodingLeavesCollectionUnchanged() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class, new PersonCodec() {
+                @Override
+                public void encode(Person element, ByteBuffer buffer) {
+                    if (element.firstName().equals("Broken")) {
+                        throw new IllegalStateException("cannot encode");
+                    }
+                    super.encode(element, buffer);
+                }
+            });
+            assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElements(uut));
+            var expected = uut.list().stream().toList();
+            var largeBatch = new ArrayList<Person>();
+            for (int i = 0; i < 10_000; i++) {
+                largeBatch.add(new Person(i == 100 ? "Broken" : "name" + i, "Dominguez", i));
+            }
+
+            assertThrows(IllegalStateException.class, () -> uut.add(new Person("Broken", "Dominguez", 11)));
+            assertThrows(IllegalStateException.class,
+                    () -> uut.addAll(List.of(new Person("Jacob", "Dominguez", 12), new Person("Broken", null, 13))));
+            assertThrows(IllegalStateException.class, () -> uut.addAll(largeBatch));
+
+            assertThat(uut.list(), equalTo(expected));
+            assertThat(uut.searchByProperty(LAST_NAME, "Dominguez"), contains(new Person("Caleb", "Dominguez", 1)));
+            assertThat(uut.searchByProperty(AGE, 11), empty());
+            uut.add(new Person("Jacob", "Dominguez", 11));
+            assertThat(uut.searchByProperty(AGE, 11), contains(new Person("Jacob", "Dominguez", 11)));
+        }
+
+        @Test
+        void compactionCopiesEncodedElements() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class, new PersonCodec());
+            for (int i = 0; i < 1_000; i++) {
+                uut.add(new Person("name" + i, "surname" + i % 10, i));
+            }
+            var elementsBytes = uut.footprint().elements();
+            assertTrue(elementsBytes > OffHeapElementStore.CHUNK_SIZE);
+
+            for (int i = 0; i < 4; i++) {
+                uut.remove(LAST_NAME, "surname" + i);
+            }
+            uut.compact();
+            assertThat(uut.size(), equalTo(600));
+            assertThat(uut.searchByProperty(FIRST_NAME, "name999"), contains(new Person("name999", "surname9", 999)));
+            assertThat(uut.searchRange(AGE, 4, true, 6, true), contains(new Person("name4", "surname4", 4),
+                    new Person("name5", "surname5", 5), new Person("name6", "surname6", 6)));
+            assertTrue(uut.footprint().elements() < elementsBytes);
+
+            uut.clear();
+            assertTrue(uut.isEmpty());
+            assertTrue(uut.footprint().elements() < OffHeapElementStore.CHUNK_SIZE);
+        }
+
+        @Test
+        void spaceOfReplacedElementsIsReclaimed() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class, new PersonCodec());
+            for (int i = 0; i < 1_000; i++) {
+                uut.add(new Person("name" + i, "surname" + i, i));
+            }
+            var elementsBytes = uut.footprint().elements();
+
+            for (int i = 0; i < 200_000; i++) {
+                var j = i % 1_000;
+                assertTrue(uut.replace(FIRST_NAME, "name" + j, new Person("name" + j, "surname" + j, i)));
+            }
+            assertTrue(uut.footprint().elements() <= elementsBytes + 2L * OffHeapElementStore.CHUNK_SIZE);
+            uut.compact();
+            assertThat(uut.footprint().elements(), equalTo(elementsBytes));
+            assertThat(uut.searchByProperty(FIRST_NAME, "name7"), contains(new Person("name7", "surname7", 199_007)));
+        }
+    }
+
+    @Nested
+    @DisplayName("estimate memory footprint")
+    class MemoryFootprint {
+
+        enum UpperCaseNameIndex implements IndexDefinition<Person> {
+            FIRST_NAME,
+            // the same keys as in FIRST_NAME, but distinct instances
+            NICKNAME;
+
+            @Override
+            public Function<Person, Object> getFunc() {
+                return person -> person.firstName().toUpperCase();
+            }
+        }
+
+        @Test
+        void footprintGrowsWithElements() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            var empty = uut.footprint();
+            assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElementsWithIntersection(uut));
+
+            var footprint = uut.footprint();
+            assertTrue(footprint.elements() > empty.elements());
+            assertTrue(footprint.maps() > empty.maps());
+            assertTrue(footprint.keys() > empty.keys());
+            assertTrue(footprint.postingLists() > empty.postingLists());
+            assertThat(footprint.total(), equalTo(footprint.elements() + footprint.maps() + footprint.keys()
+                    + footprint.postingLists()));
+            assertThat(footprint.maps() + footprint.postingLists(),
+                    equalTo(uut.statistics().estimatedIndicesBytes()));
+        }
+
+        @Test
+        void keyInterning() {
+            var uut = new MultiIndexIndexedCollection<>(UpperCaseNameIndex.class);
+            assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElementsWithIntersection(uut));
+            var keysBytes = uut.footprint().keys();
+            var calebUpper = new String("CALEB");
+            assertSame(calebUpper, uut.intern(calebUpper));
+
+            uut.enableKeyInterning();
+            assertThat(uut.footprint().keys(), equalTo(keysBytes / 2));
+            assertNotSame(calebUpper, uut.intern(calebUpper));
+            assertThat(uut.intern(calebUpper), equalTo(calebUpper));
+            var person = new Person("Caleb", "Rivera", 11);
+            assertSame(person, uut.intern(person));
+
+            uut.add(person);
+            assertThat(uut.footprint().keys(), equalTo(keysBytes / 2));
+            assertThat(uut.searchByProperty(UpperCaseNameIndex.NICKNAME, "JACOB"), hasSize(3));
+            assertThat(uut.searchByProperty(UpperCaseNameIndex.FIRST_NAME, "CALEB"), hasSize(3));
+        }
+    }
+
+    @Nested
+    @DisplayName("collect statistics")
+    class Statistics {
+
+        @Test
+        void shapeOfIndices() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElementsWithIntersection(uut));
+
+            var statistics = uut.statistics();
+            assertThat(statistics.size(), equalTo(10));
+            assertThat(statistics.indices().keySet(), contains(FIRST_NAME, LAST_NAME, AGE));
+
+            var firstNames = statistics.indices().get(FIRST_NAME);
+            assertThat(firstNames.distinctKeys(), equalTo(7));
+            assertThat(firstNames.maxPostingListSize(), equalTo(3));
+            // 5 names with 1 element, Caleb with 2 and Jacob with 3
+            assertThat(firstNames.postingListSizeHistogram()[0], equalTo(5L));
+            assertThat(firstNames.postingListSizeHistogram()[1], equalTo(2L));
+            assertThat(firstNames.p99PostingListSize(), equalTo(3));
+            assertTrue(firstNames.estimatedBytes() > 0);
+            assertTrue(statistics.estimatedIndicesBytes() > firstNames.estimatedBytes());
+            assertThat(firstNames.lookups(), equalTo(0L));
+        }
+
+        @Test
+        void countersAreCollectedOnlyWhenEnabled() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElements(uut));
+            uut.searchByProperty(FIRST_NAME, "Caleb");
+
+            var lookups = new ArrayList<String>();
+            uut.enableStatistics(new StatisticsListener<>() {
+                @Override
+                public void onLookup(IndexDefinition<Person> property, boolean hit) {
+                    lookups.add(property + ":" + hit);
+                }
+            });
+            uut.searchByProperty(FIRST_NAME, "Caleb");
+            uut.search(FIRST_NAME, "Jacob");
+            uut.contains(LAST_NAME, "Unknown");
+            uut.size(AGE, 3);
+            uut.count(Query.eq(AGE, 3));
+            uut.add(new Person("Caleb", "Hawkins", 11));
+
+            var statistics = uut.statistics();
+            assertThat(statistics.indices().get(FIRST_NAME).hits(), equalTo(2L));
+            assertThat(statistics.indices().get(FIRST_NAME).lookupLatency().count(), equalTo(2L));
+            assertThat(statistics.indices().get(LAST_NAME).misses(), equalTo(1L));
+            assertThat(statistics.indices().get(AGE).hits(), equalTo(2L));
+            // lookup by condition of query is timed as part of query
+            assertThat(statistics.indices().get(AGE).lookupLatency().count(), equalTo(1L));
+            assertThat(lookups, contains("FIRST_NAME:true", "FIRST_NAME:true", "LAST_NAME:false", "AGE:true",
+                    "AGE:true"));
+            assertThat(statistics.queries().count(), equalTo(1L));
+            assertThat(statistics.adds().count(), equalTo(1L));
+            assertTrue(statistics.adds().percentileNanos(99) >= statistics.adds().percentileNanos(50));
+
+            uut.disableStatistics();
+            uut.searchByProperty(FIRST_NAME, "Caleb");
+            assertThat(uut.statistics().indices().get(FIRST_NAME).lookups(), equalTo(0L));
+            assertThat(lookups, hasSize(5));
+        }
+
+        @Test
+        void cachedResultsAreCountedAsEvaluatedOnes() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElements(uut));
+            uut.enableResultCache(10);
+            uut.enableStatistics();
+            var query = Query.and(Query.eq(FIRST_NAME, "Caleb"), Query.not(Query.eq(LAST_NAME, "Unknown")));
+
+            for (int i = 0; i < 2; i++) {
+                uut.search(query);
+                uut.searchByProperty(LAST_NAME, "Dominguez");
+            }
+
+            var statistics = uut.statistics();
+            assertThat(uut.cachedResults(), equalTo(2));
+            assertThat(statistics.indices().get(FIRST_NAME).hits(), equalTo(2L));
+            assertThat(statistics.indices().get(LAST_NAME).misses(), equalTo(2L));
+            assertThat(statistics.indices().get(LAST_NAME).hits(), equalTo(2L));
+            assertThat(statistics.indices().get(LAST_NAME).lookupLatency().count(), equalTo(2L));
+            assertThat(statistics.queries().count(), equalTo(2L));
+        }
+
+        @Test
+        void latencyPercentiles() {
+            // 3 operations of 0 ns, 1 of 5 ns (bucket up to 7 ns) and 1 of 1000 ns (bucket up to 1023 ns)
+            var histogram = new long[LatencyStatistics.BUCKETS];
+            histogram[0] = 3;
+            histogram[3] = 1;
+            histogram[10] = 1;
+            var uut = new LatencyStatistics(5, 1005, histogram);
+
+            assertThat(uut.meanNanos(), equalTo(201.0));
+            assertThat(uut.percentileNanos(50), equalTo(0L));
+            assertThat(uut.percentileNanos(80), equalTo(7L));
+            assertThat(uut.percentileNanos(100), equalTo(1023L));
+            assertThrows(IllegalArgumentException.class, () -> uut.percentileNanos(101));
+        }
+    }
+
+    @Nested
+    @DisplayName("iterate over elements")
+    class Iteration {
+
+        @Test
+        void iteratorTest() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+
+            var iterator = uut.iterator();
+            assertThat(iterator, notNullValue());
+            assertFalse(iterator.hasNext());
+
+            assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElements(uut));
+
+            iterator = uut.iterator();
+            assertThat(iterator, notNullValue());
+            for (int i = 0; i < uut.size() - 1; i++) {
+                assertTrue(iterator.hasNext());
+                assertThat(iterator.next(), notNullValue());
+            }
+
+            assertThat(iterator.next(), notNullValue());
+            assertFalse(iterator.hasNext());
+        }
+
+        @Test
+        void iteratorByNullProperty() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            assertThrows(NullPointerException.class, () -> uut.iterator(null));
+        }
+
+        @Test
+        void listByNullProperty() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            assertThrows(NullPointerException.class, () -> uut.list(null));
+        }
+
+        @Test
+        void streamByNullProperty() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            assertThrows(NullPointerException.class, () -> uut.stream(null));
+        }
+
+        @Test
+        void listIsUnmodifiable() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElements(uut));
+            var list = uut.list();
+            assertThat(list, hasSize(10));
+            assertThrows(UnsupportedOperationException.class, list::clear);
+        }
+
+        @Test
+        void listSkipsRemovedElementsWithoutInvalidatingViews() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElementsWithIntersection(uut));
+            uut.remove(FIRST_NAME, "Jacob");
+            var view = uut.search(LAST_NAME, "Dominguez");
+
+            var list = uut.list();
+            assertThat(list.stream().map(Person::age).toList(), equalTo(List.of(1, 2, 4, 5, 6, 7, 8)));
+            assertThat(list.get(2).age(), equalTo(4));
+            assertThat(view, hasSize(2));
+
+            uut.add(new Person("Jacob", "King", 11));
+            assertThrows(ConcurrentModificationException.class, () -> list.get(0));
+        }
+
+        @Test
+        void streamSkipsRemovedElements() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElementsWithIntersection(uut));
+            uut.remove(FIRST_NAME, "Jacob");
+
+            assertThat(uut.stream().map(Person::age).toList(), equalTo(List.of(1, 2, 4, 5, 6, 7, 8)));
+            assertThat(uut.stream(AGE).map(Person::age).toList(), equalTo(List.of(1, 2, 4, 5, 6, 7, 8)));
+            assertThat(uut.search(LAST_NAME, "Dominguez").stream().map(Person::age).toList(),
+                    equalTo(List.of(1, 6)));
+        }
+
+        @Test
+        void parallelStreams() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            for (int i = 0; i < 10_000; i++) {
+                uut.add(new Person("name" + i, "surname" + i % 2, 9_999 - i));
+            }
+            uut.remove(LAST_NAME, "surname1");
+
+            var spliterator = uut.stream().spliterator();
+            assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED));
+            assertThat(spliterator.trySplit().estimateSize(), equalTo(2_500L));
+            assertThat(spliterator.estimateSize(), equalTo(2_500L));
+
+            assertThat(uut.stream().parallel().mapToInt(Person::age).sum(),
+                    equalTo(uut.stream().mapToInt(Person::age).sum()));
+            assertThat(uut.stream(AGE).parallel().toList(), equalTo(uut.list(AGE)));
+            var result = uut.search(LAST_NAME, "surname0");
+            assertThat(result.stream().parallel().toList(), equalTo(uut.searchByProperty(LAST_NAME, "surname0")));
+        }
+
+        @Test
+        void streamFailsAfterModification() {
+            var uut = new MultiIndexIndexedCollection<>(PersonIndex.class);
+            assertDoesNotThrow(() -> MultiIndexIndexedCollectionTest.addElements(uut));
+
+            var stream = uut.stream();
+            uut.add(new Person("Caleb", "Hawkins", 11));
+            assertThrows(ConcurrentModificationException.class, stream::toList);
         }
     }
 
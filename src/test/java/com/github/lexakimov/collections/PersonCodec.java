@@ -0,0 +1,41 @@
+package com.github.lexakimov.collections;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Codec of persons for off-heap storage and snapshots.
+ */
+class PersonCodec implements ElementCodec<Person> {
+
+    @Override
+    public void encode(Person element, ByteBuffer buffer) {
+        putString(buffer, element.firstName());
+        putString(buffer, element.lastName());
+        buffer.putInt(element.age());
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length).put(bytes);
+    }
+
+    @Override
+    public Person decode(ByteBuffer buffer) {
+        return new Person(getString(buffer), getString(buffer), buffer.getInt());
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        var length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        var bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -9,12 +9,19 @@ import java.util.function.Function;
 enum PersonIndex implements IndexDefinition<Person> {
     FIRST_NAME(Person::firstName),
     LAST_NAME(Person::lastName),
-    AGE(Person::age);
+    AGE(Person::age, true);
 
     private final Function<Person, Object> func;
 
+    private final boolean ordered;
+
     PersonIndex(Function<Person, Object> func) {
+        this(func, false);
+    }
+
+    PersonIndex(Function<Person, Object> func, boolean ordered) {
         this.func = func;
+        this.ordered = ordered;
     }
 
     @Override
@@ -22,4 +29,9 @@ enum PersonIndex implements IndexDefinition<Person> {
         return func;
     }
 
+    @Override
+    public boolean isOrdered() {
+        return ordered;
+    }
+
 }
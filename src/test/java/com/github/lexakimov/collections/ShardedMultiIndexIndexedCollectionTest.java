@@ -0,0 +1,120 @@
+package com.github.lexakimov.collections;
+
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+import static com.github.lexakimov.collections.PersonIndex.AGE;
+import static com.github.lexakimov.collections.PersonIndex.FIRST_NAME;
+import static com.github.lexakimov.collections.PersonIndex.LAST_NAME;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardedMultiIndexIndexedCollectionTest {
+
+    @Test
+    void addSearchAndRemove() {
+        var uut = new ShardedMultiIndexIndexedCollection<>(PersonIndex.class, 4);
+        uut.add(new Person("Caleb", "Dominguez", 1));
+        uut.add(new Person("James", "Ryan", 2));
+        uut.add(new Person("Caleb", "Hawkins", 3));
+
+        assertThat(uut.size(), equalTo(3));
+        assertThat(uut.searchByProperty(FIRST_NAME, "Caleb"), equalTo(List.of(
+                new Person("Caleb", "Dominguez", 1),
+                new Person("Caleb", "Hawkins", 3))));
+        assertThat(uut.count(Query.or(Query.eq(AGE, 2), Query.eq(AGE, 3))), equalTo(2));
+        assertThat(uut.size(LAST_NAME, "Ryan"), equalTo(1));
+
+        assertTrue(uut.remove(LAST_NAME, "Ryan"));
+        assertFalse(uut.remove(LAST_NAME, "Ryan"));
+        assertFalse(uut.contains(FIRST_NAME, "James"));
+        assertThat(uut.list(), hasSize(2));
+        assertThrows(NullPointerException.class, () -> uut.add(null));
+
+        uut.clear();
+        assertTrue(uut.isEmpty());
+        assertThat(uut.list(), hasSize(0));
+    }
+
+    @Test
+    void shardCountMustBePositive() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new ShardedMultiIndexIndexedCollection<>(PersonIndex.class, 0));
+    }
+
+    @Test
+    void resultsMatchSingleCollectionInInsertionOrder() {
+        var uut = new ShardedMultiIndexIndexedCollection<>(PersonIndex.class, 3);
+        var expected = new MultiIndexIndexedCollection<>(PersonIndex.class);
+        var batch = new ArrayList<Person>();
+        for (int i = 0; i < 1_000; i++) {
+            var person = new Person("name" + i, "lastName" + i % 7, i % 10);
+            if (i % 3 == 0) {
+                uut.add(person);
+                expected.add(person);
+            } else {
+                batch.add(person);
+            }
+            if (batch.size() == 50) {
+                uut.addAll(batch);
+                expected.addAll(batch);
+                batch.clear();
+            }
+        }
+        uut.addAll(batch);
+        expected.addAll(batch);
+
+        for (int age = 0; age < 10; age += 3) {
+            uut.remove(AGE, age);
+            expected.remove(AGE, age);
+        }
+        var query = Query.and(Query.not(Query.eq(LAST_NAME, "lastName2")), Query.eq(AGE, 5));
+
+        assertThat(uut.list(), equalTo(expected.list()));
+        assertThat(uut.stream().toList(), equalTo(expected.list()));
+        assertThat(uut.searchByProperty(LAST_NAME, "lastName3"),
+                equalTo(expected.searchByProperty(LAST_NAME, "lastName3")));
+        assertThat(uut.search(query), equalTo(expected.search(query)));
+        assertThat(uut.count(query), equalTo(expected.count(query)));
+
+        uut.compact();
+        assertThat(uut.list(), equalTo(expected.list()));
+        assertThat(uut.search(query), equalTo(expected.search(query)));
+    }
+
+    @Test
+    void addFromSeveralThreads() {
+        var uut = new ShardedMultiIndexIndexedCollection<>(PersonIndex.class, 4);
+        var writers = new ArrayList<CompletableFuture<Void>>();
+        for (int w = 0; w < 4; w++) {
+            var writer = w;
+            writers.add(CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < 500; i++) {
+                    var person = new Person("name" + i, "writer" + writer, i);
+                    if (i % 2 == 0) {
+                        uut.add(person);
+                    } else {
+                        uut.addAll(List.of(person));
+                    }
+                }
+            }));
+        }
+        writers.forEach(CompletableFuture::join);
+
+        assertThat(uut.size(), equalTo(2_000));
+        for (int w = 0; w < 4; w++) {
+            var added = uut.searchByProperty(LAST_NAME, "writer" + w);
+            assertThat(added, hasSize(500));
+            // elements of one writer are merged in order they were added
+            assertThat(added.stream().mapToInt(Person::age).boxed().toList(),
+                    is(IntStream.range(0, 500).boxed().toList()));
+        }
+    }
+}
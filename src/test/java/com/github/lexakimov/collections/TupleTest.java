@@ -0,0 +1,50 @@
+package com.github.lexakimov.collections;
+
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class TupleTest {
+
+    @Test
+    void equalTuples() {
+        var tuple = Tuple.of("Caleb", null, 3);
+        assertEquals(Tuple.of("Caleb", null, 3), tuple);
+        assertEquals(Tuple.of("Caleb", null, 3).hashCode(), tuple.hashCode());
+        assertNotEquals(Tuple.of("Caleb", null), tuple);
+        assertNotEquals(Tuple.of("Caleb", null, 3).prefixEnd(), tuple);
+        assertThat(tuple.toString(), equalTo("(Caleb, null, 3)"));
+    }
+
+    @Test
+    void valuesAreCopied() {
+        var values = new Object[]{"Caleb", "Smith"};
+        var tuple = Tuple.of(values);
+        values[1] = "Ryan";
+        assertThat(tuple.get(1), equalTo("Smith"));
+    }
+
+    @Test
+    void lexicographicOrderWithNullsAndPrefixesFirst() {
+        var tuples = new ArrayList<>(List.of(Tuple.of("b"), Tuple.of("a", 2), Tuple.of("a", null), Tuple.of("a"),
+                Tuple.of("a", 1)));
+        Collections.sort(tuples);
+        assertThat(tuples, equalTo(List.of(Tuple.of("a"), Tuple.of("a", null), Tuple.of("a", 1), Tuple.of("a", 2),
+                Tuple.of("b"))));
+    }
+
+    @Test
+    void prefixEndFollowsAllTuplesWithPrefix() {
+        var end = Tuple.of("a").prefixEnd();
+        assertThat(Tuple.of("a").compareTo(end), lessThan(0));
+        assertThat(Tuple.of("a", 100).compareTo(end), lessThan(0));
+        assertThat(end.compareTo(Tuple.of("b")), lessThan(0));
+        assertThat(end.compareTo(Tuple.of("a\0")), lessThan(0));
+    }
+}